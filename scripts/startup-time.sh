@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+# Time from launching the application to its first successful request (GET v1/drone/view), for
+#   baseline  - java -jar with the default configuration: ddl-auto=update, data.sql, seeding before startup ends
+#   faststart - java -jar with the faststart profile
+#   aot-cds   - the faststart profile on the AOT-processed beans, with a class-data-sharing archive
+# Each variant gets its own database, created by an unmeasured first start, so the measured starts are
+# restarts as in a rolling deployment. Build the jar first:
+#
+#   mvn -Pfaststart package -DskipTests
+#   scripts/startup-time.sh [runs]        (5 by default; prints every run and the median per variant)
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+JAR=$(ls target/drone-*.jar | grep -v '\.original$' | head -1)
+WORK=target/startup-time
+URL="http://localhost:$PORT/v1/drone/view"
+
+rm -rf "$WORK"
+mkdir -p "$WORK"
+
+common_args() {
+    echo "--server.port=$PORT --management.server.port=-1 --logging.level.root=WARN" \
+         "--spring.datasource.url=jdbc:h2:file:./$WORK/$1/db" \
+         "--drone.journal.dir=./$WORK/$1/journal --drone.write-behind.log-dir=./$WORK/$1/wal"
+}
+
+command_for() {
+    case "$1" in
+        baseline)  echo "$JAVA -jar $JAR $(common_args baseline)" ;;
+        faststart) echo "$JAVA -jar $JAR --spring.profiles.active=faststart $(common_args faststart)" ;;
+        aot-cds)   echo "$JAVA -XX:SharedArchiveFile=$WORK/app.jsa -Dspring.aot.enabled=true" \
+                        "-jar $WORK/app/$(basename "$JAR") --spring.profiles.active=faststart $(common_args aot-cds)" ;;
+    esac
+}
+
+# milliseconds from launch until the first 200, then stops the application
+first_request_millis() {
+    local start end pid
+    start=$(date +%s%N)
+    $(command_for "$1") > "$WORK/$1.log" 2>&1 &
+    pid=$!
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' "$URL" || true)" = "200" ]; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "$1 exited before serving a request, see $WORK/$1.log" >&2
+            exit 1
+        fi
+        sleep 0.01
+    done
+    end=$(date +%s%N)
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    echo $(( (end - start) / 1000000 ))
+}
+
+# the AOT variant runs from the extracted jar, and the archive is recorded by a training run that stops
+# right after the context refreshed
+"$JAVA" -Djarmode=tools -jar "$JAR" extract --destination "$WORK/app" > /dev/null
+"$JAVA" -XX:ArchiveClassesAtExit="$WORK/app.jsa" -Dspring.aot.enabled=true -Dspring.context.exit=onRefresh \
+    -jar "$WORK/app/$(basename "$JAR")" --spring.profiles.active=faststart $(common_args aot-cds) \
+    > "$WORK/training.log" 2>&1
+
+for variant in baseline faststart aot-cds; do
+    first_request_millis "$variant" > /dev/null
+    times=()
+    for ((run = 1; run <= RUNS; run++)); do
+        times+=("$(first_request_millis "$variant")")
+    done
+    median=$(printf '%s\n' "${times[@]}" | sort -n | sed -n "$(( (RUNS + 1) / 2 ))p")
+    printf '%-10s median %5d ms   runs: %s\n' "$variant" "$median" "${times[*]}"
+done
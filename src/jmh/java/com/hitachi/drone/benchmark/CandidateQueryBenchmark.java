@@ -0,0 +1,61 @@
+package com.hitachi.drone.benchmark;
+
+import com.hitachi.drone.dto.DroneCandidate;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+* The 10 best-fit drones for a 250 g payload: FleetStateRegistry.candidates against scanning the
+* whole registry and sorting what fits, which is what a client polling every drone amounts to.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CandidateQueryBenchmark {
+
+    private static final Drone.DroneState[] STATES = Drone.DroneState.values();
+    private static final double WEIGHT = 250;
+    private static final int LIMIT = 10;
+
+    @Param({"1000", "100000"})
+    private int fleetSize;
+
+    private FleetStateRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(7);
+        registry = new FleetStateRegistry();
+        for (int id = 1; id <= fleetSize; id++) {
+            registry.put(id, STATES[random.nextInt(STATES.length)], random.nextInt(101), 500, random.nextInt(50) * 10);
+        }
+    }
+
+    @Benchmark
+    public List<DroneCandidate> capacityIndex() {
+        return registry.candidates(WEIGHT, LIMIT, FleetStateRegistry.Fit.BEST);
+    }
+
+    @Benchmark
+    public List<DroneCandidate> scanAndSort() {
+        List<DroneCandidate> fitting = new ArrayList<>();
+        registry.forEach((droneId, state, batteryCapacity, weightLimit, payloadWeight) -> {
+            boolean loadable = state == Drone.DroneState.IDLE || state == Drone.DroneState.LOADING;
+            if (loadable && batteryCapacity > 25 && weightLimit - payloadWeight >= WEIGHT) {
+                fitting.add(new DroneCandidate(droneId, state, batteryCapacity, weightLimit, weightLimit - payloadWeight));
+            }
+        });
+        fitting.sort(Comparator.comparingDouble(DroneCandidate::getRemainingCapacity)
+                .thenComparingLong(DroneCandidate::getDroneId));
+        return fitting.subList(0, Math.min(LIMIT, fitting.size()));
+    }
+}
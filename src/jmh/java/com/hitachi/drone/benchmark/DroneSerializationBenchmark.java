@@ -0,0 +1,48 @@
+package com.hitachi.drone.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hitachi.drone.model.Drone;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+* Jackson serialization of a Drone and its payload lines, with the same ObjectMapper defaults
+* Spring MVC uses for the controller responses.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DroneSerializationBenchmark {
+
+    @Param({"0", "10", "100"})
+    private int medications;
+
+    private ObjectMapper objectMapper;
+    private Drone drone;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        drone = new Drone();
+        drone.setId(1L);
+        drone.setSerialNumber("SERIAL-0001");
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(Double.MAX_VALUE);
+        drone.setBatteryCapacity(80);
+        drone.setState(Drone.DroneState.LOADING);
+        for (int i = 0; i < medications; i++) {
+            drone.addItem((long) i, 10, 1);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeDrone() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(drone);
+    }
+}
@@ -0,0 +1,136 @@
+package com.hitachi.drone.benchmark;
+
+import com.hitachi.drone.DroneApplication;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.PayloadItem;
+import com.hitachi.drone.repository.MedicationIdSequence;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+* The same burst of concurrent GET v1/drone/{id}/load requests (a JDBC read each) against the
+* application served on platform threads (Tomcat pool, 200 threads) and on virtual threads.
+* One operation is the whole burst, so the score is the time until the slowest request returns.
+* Client and server share the JVM: run with "-prof gc" and divide gc.alloc.rate.norm by the
+* concurrency to get the bytes allocated per request. Peak live threads are printed after each trial.*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    private static final int FLEET_SIZE = 100;
+    private static final int MEDICATIONS_PER_DRONE = 5;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"50", "500"})
+    private int concurrency;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private List<HttpRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DroneApplication.class)
+                .run("--server.port=0",
+                        "--management.server.port=-1",
+                        "--spring.datasource.url=jdbc:h2:mem:execution-benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.sql.init.mode=never",
+                        "--logging.level.com.hitachi.drone=WARN",
+                        // the whole burst is meant to reach the handlers
+                        "--drone.admission.enabled=false",
+                        "--spring.threads.virtual.enabled=" + "virtual".equals(threads));
+        List<Long> droneIds = seed(context.getBean(JdbcTemplate.class));
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        // the client always waits on virtual threads, so only the server side differs between the runs
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientExecutor).build();
+        requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            requests.add(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + port + "/v1/drone/" + droneIds.get(i % droneIds.size()) + "/load")).build());
+        }
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println("Peak live threads (" + threads + ", " + concurrency + " concurrent): "
+                + ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        clientExecutor.close();
+        context.close();
+    }
+
+    @Benchmark
+    public int burst() {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(concurrency);
+        for (HttpRequest request : requests) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        int bytes = 0;
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            HttpResponse<String> result = response.join();
+            if (result.statusCode() != 200) {
+                throw new IllegalStateException("Request failed with " + result.statusCode());
+            }
+            bytes += result.body().length();
+        }
+        return bytes;
+    }
+
+    // returns the ids of the seeded drones; MedicationService already registers a few of its own on startup
+    private static List<Long> seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> drones = new ArrayList<>(FLEET_SIZE);
+        for (int i = 0; i < FLEET_SIZE; i++) {
+            drones.add(new Object[]{"EXEC-" + i, Drone.DroneModel.HEAVYWEIGHT.name(), 500.0, 100,
+                    Drone.DroneState.LOADING.name(), 50.0 * MEDICATIONS_PER_DRONE, MEDICATIONS_PER_DRONE});
+        }
+        jdbcTemplate.batchUpdate(
+                "insert into drone (serial_number, model, weight_limit, battery_capacity, state, " +
+                        "payload_weight, payload_item_count, version) values (?, ?, ?, ?, ?, ?, ?, 0)", drones);
+        List<Long> ids = jdbcTemplate.queryForList(
+                "select id from drone where serial_number like 'EXEC-%' order by id", Long.class);
+
+        List<Object[]> catalog = new ArrayList<>(MEDICATIONS_PER_DRONE);
+        for (int j = 0; j < MEDICATIONS_PER_DRONE; j++) {
+            catalog.add(new Object[]{"Med-" + j, 50.0, 1, "EXEC_MED_" + j});
+        }
+        jdbcTemplate.batchUpdate("insert into medication (id, name, weight, quantity, code) " +
+                "values (next value for " + MedicationIdSequence.NAME + ", ?, ?, ?, ?)", catalog);
+        List<Long> medicationIds = jdbcTemplate.queryForList(
+                "select id from medication where code like 'EXEC_MED_%' order by id", Long.class);
+
+        List<Object[]> lines = new ArrayList<>(FLEET_SIZE * MEDICATIONS_PER_DRONE);
+        for (Long id : ids) {
+            for (Long medicationId : medicationIds) {
+                lines.add(new Object[]{id, medicationId});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into payload_item (id, drone_id, medication_id, quantity, weight) " +
+                "values (next value for " + PayloadItem.SEQUENCE + ", ?, ?, 1, 50.0)", lines);
+        return ids;
+    }
+}
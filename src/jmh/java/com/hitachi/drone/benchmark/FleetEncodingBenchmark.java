@@ -0,0 +1,73 @@
+package com.hitachi.drone.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hitachi.drone.config.BinaryFormatsConfig;
+import com.hitachi.drone.model.Drone;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+* A GET v1/drone/view response (the whole fleet, three payload lines per drone) encoded as JSON,
+* Smile and CBOR with the mappers the application registers. The encoded size is printed once
+* per trial next to the timing.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FleetEncodingBenchmark {
+
+    private static final Drone.DroneState[] STATES = Drone.DroneState.values();
+    private static final Drone.DroneModel[] MODELS = Drone.DroneModel.values();
+    private static final int LINES_PER_DRONE = 3;
+
+    @Param({"1000", "10000", "100000"})
+    private int fleetSize;
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    private ObjectMapper mapper;
+    private List<Drone> fleet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        switch (format) {
+            case "smile":
+                mapper = BinaryFormatsConfig.smileMapper(new Jackson2ObjectMapperBuilder());
+                break;
+            case "cbor":
+                mapper = BinaryFormatsConfig.cborMapper(new Jackson2ObjectMapperBuilder());
+                break;
+            default:
+                mapper = Jackson2ObjectMapperBuilder.json().build();
+        }
+
+        fleet = new ArrayList<>(fleetSize);
+        for (int i = 0; i < fleetSize; i++) {
+            Drone drone = new Drone();
+            drone.setId((long) i + 1);
+            drone.setSerialNumber(String.format("SN-%08d", i));
+            drone.setModel(MODELS[i % MODELS.length]);
+            drone.setWeightLimit(500);
+            drone.setBatteryCapacity(20 + i % 80);
+            drone.setState(STATES[i % STATES.length]);
+            for (long medicationId = 1; medicationId <= LINES_PER_DRONE; medicationId++) {
+                drone.addItem(medicationId, 50, 1);
+            }
+            fleet.add(drone);
+        }
+        System.out.println("\n" + format + ", " + fleetSize + " drones: " + mapper.writeValueAsBytes(fleet).length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encodeFleet() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(fleet);
+    }
+}
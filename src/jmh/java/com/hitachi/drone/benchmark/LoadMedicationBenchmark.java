@@ -0,0 +1,67 @@
+package com.hitachi.drone.benchmark;
+
+import com.hitachi.drone.exception.BatterLevelLowException;
+import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.catalog.MedicationCatalogCache;
+import com.hitachi.drone.metrics.DroneMetrics;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.service.DroneMutationLocks;
+import com.hitachi.drone.service.DroneServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/*
+* DroneServiceImpl.loadMedication on a drone that already carries existingItems payload lines.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadMedicationBenchmark {
+
+    @Param({"0", "10", "100"})
+    private int existingItems;
+
+    private DroneServiceImpl droneService;
+    private Drone drone;
+    private Medication medication;
+    private double basePayloadWeight;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FleetStateRegistry fleetStateRegistry = new FleetStateRegistry();
+        MedicationCatalogCache catalogCache = new MedicationCatalogCache();
+        droneService = new DroneServiceImpl(RepositoryStubs.droneRepository(Collections.emptyList()),
+                RepositoryStubs.medicationRepository(), RepositoryStubs.payloadItemRepository(), catalogCache, fleetStateRegistry, new DroneMutationLocks(16),
+                new DroneMetrics(new SimpleMeterRegistry(), fleetStateRegistry, catalogCache), null, null);
+
+        drone = new Drone();
+        drone.setSerialNumber("BENCH");
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(Double.MAX_VALUE);
+        drone.setBatteryCapacity(100);
+        drone.setState(Drone.DroneState.IDLE);
+        for (int i = 0; i < existingItems; i++) {
+            drone.addItem(1000L + i, 10, 1);
+        }
+        basePayloadWeight = drone.getPayloadWeight();
+
+        medication = new Medication(1L, "Biogesic", 100, 1, "MED01", "images/pain_relief.png");
+    }
+
+    @Benchmark
+    public Drone loadMedication() throws WeightLimitExceededException, BatterLevelLowException {
+        // back to the starting payload, so every invocation does the same work
+        drone.getPayloadItems().subList(existingItems, drone.getPayloadItems().size()).clear();
+        drone.setPayloadWeight(basePayloadWeight);
+        drone.setPayloadItemCount(existingItems);
+        drone.setState(Drone.DroneState.IDLE);
+        return droneService.loadMedication(drone, medication);
+    }
+}
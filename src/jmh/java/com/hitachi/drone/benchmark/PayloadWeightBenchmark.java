@@ -0,0 +1,43 @@
+package com.hitachi.drone.benchmark;
+
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.PayloadItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+* Drone.getTotalMedicationWeight (running total) against summing the payload lines,
+* which is what it used to do.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadWeightBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int payloadSize;
+
+    private Drone drone;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        drone = new Drone();
+        drone.setWeightLimit(Double.MAX_VALUE);
+        for (int i = 0; i < payloadSize; i++) {
+            drone.addItem((long) i, 1 + i % 50, 1);
+        }
+    }
+
+    @Benchmark
+    public double totalMedicationWeight() {
+        return drone.getTotalMedicationWeight();
+    }
+
+    @Benchmark
+    public double streamedMedicationWeight() {
+        return drone.getPayloadItems().stream().mapToDouble(PayloadItem::getWeight).sum();
+    }
+}
@@ -0,0 +1,70 @@
+package com.hitachi.drone.benchmark;
+
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/*
+* In-memory stand-ins for the Spring Data repositories, so the service benchmarks measure the
+* service code itself and not Mockito or a database.*/
+final class RepositoryStubs {
+
+    private RepositoryStubs() {
+    }
+
+    static DroneRepository droneRepository(List<Drone> fleet) {
+        return stub(DroneRepository.class, fleet);
+    }
+
+    static MedicationRepository medicationRepository() {
+        return stub(MedicationRepository.class, Collections.emptyList());
+    }
+
+    static PayloadItemRepository payloadItemRepository() {
+        return stub(PayloadItemRepository.class, Collections.emptyList());
+    }
+
+    private static <T> T stub(Class<T> type, List<?> findAllResult) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "save":
+                case "saveAndFlush":
+                case "saveAll":
+                    return args[0];
+                case "findAll":
+                    return findAllResult;
+                case "hashCode":
+                    return System.identityHashCode(self);
+                case "equals":
+                    return self == args[0];
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+        return type.cast(proxy);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == Optional.class) {
+            return Optional.empty();
+        }
+        if (type == List.class) {
+            return Collections.emptyList();
+        }
+        if (type == int.class || type == long.class) {
+            return type == int.class ? (Object) 0 : (Object) 0L;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.hitachi.drone.benchmark;
+
+import com.hitachi.drone.DroneApplication;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateRegistryLoader;
+import com.hitachi.drone.service.DroneStateScheduler;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+* One full DroneStateScheduler.updateDroneStates tick against an in-memory H2 fleet,
+* for both scheduler modes, with the persistence work on the scheduler thread or spread over
+* virtual threads. Before every measured tick the drones are spread evenly over
+* all states again, so each tick moves five sixths of the fleet.*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SchedulerTickBenchmark {
+
+    @Param({"1000", "10000"})
+    private int fleetSize;
+
+    @Param({"ENTITY", "BULK", "WRITE_BEHIND"})
+    private String mode;
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    private ConfigurableApplicationContext context;
+    private DroneStateScheduler scheduler;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DroneApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:tick-benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.sql.init.mode=never",
+                        "--logging.level.com.hitachi.drone=WARN",
+                        "--drone.scheduler.mode=" + mode,
+                        "--drone.write-behind.log-dir=target/tick-benchmark-wal",
+                        "--spring.threads.virtual.enabled=" + virtualThreads);
+        scheduler = context.getBean(DroneStateScheduler.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        Drone.DroneState[] states = Drone.DroneState.values();
+        List<Object[]> rows = new ArrayList<>(fleetSize);
+        for (int i = 0; i < fleetSize; i++) {
+            rows.add(new Object[]{"TICK-" + i, Drone.DroneModel.MIDDLEWEIGHT.name(), 500.0, 100,
+                    states[i % states.length].name()});
+        }
+        jdbcTemplate.batchUpdate(
+                "insert into drone (serial_number, model, weight_limit, battery_capacity, state, " +
+                        "payload_weight, payload_item_count, version) values (?, ?, ?, ?, ?, 0, 0, 0)", rows);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetFleet() {
+        jdbcTemplate.update("update drone set state = case mod(id, 6) " +
+                "when 0 then 'IDLE' when 1 then 'LOADING' when 2 then 'LOADED' " +
+                "when 3 then 'DELIVERING' when 4 then 'DELIVERED' else 'RETURNING' end, battery_capacity = 100");
+        context.getBean(FleetStateRegistryLoader.class).load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void tick() {
+        scheduler.updateDroneStates();
+    }
+}
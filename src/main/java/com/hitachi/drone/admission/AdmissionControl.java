@@ -0,0 +1,156 @@
+package com.hitachi.drone.admission;
+
+import com.hitachi.drone.metrics.DroneMetrics;
+import com.hitachi.drone.service.DroneServiceImpl;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/*
+* Admission control for the v1/drone API (drone.admission.enabled). Writes (register, load, dispatch)
+* and reads each go through their own AdmissionGate, so a burst of writes holding database connections
+* cannot starve the status reads, and the other way round. A request the gate turns away gets a 429 with
+* Retry-After right away.
+* In GROUP_COMMIT mode single-medication loads have a gate of their own: they wait for their batch without
+* a connection, so a whole batch of them is let in while the other writes stay under the pool size.
+* Left out: telemetry, which has its own bounded buffer, and the long-lived event and fleet streams,
+* which would hold a read permit for their whole lifetime.*/
+@Component
+public class AdmissionControl extends OncePerRequestFilter {
+
+    private static final String API_PREFIX = "/v1/drone/";
+    // POST v1/drone/{droneId}/{medicationId}/load, the load that goes through the LoadBatcher
+    private static final Pattern BATCHED_LOAD = Pattern.compile("[^/]+/[^/]+/load");
+    private static final int DEFAULT_WRITE_MAX_IN_FLIGHT = 6;
+
+    private final DroneMetrics droneMetrics;
+
+    @Value("${drone.admission.enabled:true}")
+    private boolean enabled = true;
+
+    // writes hold a database connection for their whole transaction, keep them under the pool size
+    @Value("${drone.admission.write.max-in-flight:6}")
+    private int writeMaxInFlight = DEFAULT_WRITE_MAX_IN_FLIGHT;
+
+    // GROUP_COMMIT mode only; blank: a whole batch
+    @Value("${drone.admission.batched-load.max-in-flight:}")
+    private Integer batchedLoadMaxInFlight;
+
+    @Value("${drone.concurrency.mode:STRIPED}")
+    private DroneServiceImpl.ConcurrencyMode concurrencyMode = DroneServiceImpl.ConcurrencyMode.STRIPED;
+
+    @Value("${drone.concurrency.group-commit.max-batch:64}")
+    private int groupCommitMaxBatch = 64;
+
+    @Value("${drone.admission.write.max-queued:32}")
+    private int writeMaxQueued = 32;
+
+    @Value("${drone.admission.write.max-wait:PT0.2S}")
+    private Duration writeMaxWait = Duration.ofMillis(200);
+
+    @Value("${drone.admission.read.max-in-flight:64}")
+    private int readMaxInFlight = 64;
+
+    @Value("${drone.admission.read.max-queued:256}")
+    private int readMaxQueued = 256;
+
+    @Value("${drone.admission.read.max-wait:PT0.1S}")
+    private Duration readMaxWait = Duration.ofMillis(100);
+
+    private AdmissionGate writeGate;
+    private AdmissionGate batchedLoadGate;
+    private AdmissionGate readGate;
+
+    public AdmissionControl(DroneMetrics droneMetrics) {
+        this.droneMetrics = droneMetrics;
+    }
+
+    @PostConstruct
+    public void start() {
+        writeGate = new AdmissionGate("write", writeMaxInFlight, writeMaxQueued, writeMaxWait);
+        readGate = new AdmissionGate("read", readMaxInFlight, readMaxQueued, readMaxWait);
+        droneMetrics.admissionGate(writeGate);
+        droneMetrics.admissionGate(readGate);
+        if (concurrencyMode == DroneServiceImpl.ConcurrencyMode.GROUP_COMMIT) {
+            int maxInFlight = batchedLoadMaxInFlight != null ? batchedLoadMaxInFlight
+                    : Math.max(writeMaxInFlight, groupCommitMaxBatch);
+            batchedLoadGate = new AdmissionGate("batched-load", maxInFlight, writeMaxQueued, writeMaxWait);
+            droneMetrics.admissionGate(batchedLoadGate);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || gateFor(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AdmissionGate gate = gateFor(request);
+        long begin = System.nanoTime();
+        boolean admitted;
+        try {
+            admitted = gate.enter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        droneMetrics.admissionWait(gate.name(), System.nanoTime() - begin, admitted);
+        if (!admitted) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(gate.retryAfterSeconds()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"message\":\"Too many " + gate.name() + " requests in progress, retry later.\"}");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            gate.leave();
+        }
+    }
+
+    AdmissionGate gateFor(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(API_PREFIX)) {
+            return null;
+        }
+        String endpoint = path.substring(API_PREFIX.length());
+        if (endpoint.equals("telemetry") || endpoint.equals("events") || endpoint.equals("view/stream")) {
+            return null;
+        }
+        if (HttpMethod.GET.matches(request.getMethod())) {
+            return readGate;
+        }
+        if (!HttpMethod.POST.matches(request.getMethod())) {
+            return null;
+        }
+        return batchedLoadGate != null && BATCHED_LOAD.matcher(endpoint).matches() ? batchedLoadGate : writeGate;
+    }
+
+    AdmissionGate writeGate() {
+        return writeGate;
+    }
+
+    AdmissionGate batchedLoadGate() {
+        return batchedLoadGate;
+    }
+
+    AdmissionGate readGate() {
+        return readGate;
+    }
+}
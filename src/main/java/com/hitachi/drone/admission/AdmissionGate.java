@@ -0,0 +1,83 @@
+package com.hitachi.drone.admission;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* At most maxInFlight requests at a time, and at most maxQueued more waiting up to maxWait for one of
+* them to finish. Anything beyond that is turned away at once instead of piling up on the servlet pool
+* and the database connections.*/
+public class AdmissionGate {
+
+    private final String name;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdmissionGate(String name, int maxInFlight, int maxQueued, Duration maxWait) {
+        this.name = name;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWait.toNanos();
+        // fair, so the queue is served in arrival order and nobody waits out maxWait behind newcomers
+        this.permits = new Semaphore(maxInFlight, true);
+    }
+
+    /*
+    * Takes a permit, waiting for one if the queue has room. False when the request is rejected;
+    * every true must be paired with a leave().*/
+    public boolean enter() throws InterruptedException {
+        if (queued.get() == 0 && permits.tryAcquire()) {
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            if (permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+            rejected.incrementAndGet();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    public void leave() {
+        permits.release();
+    }
+
+    // a rejected client should come back once the queue had time to drain
+    public long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(maxWaitNanos + 999_999_999));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int queued() {
+        return queued.get();
+    }
+
+    public long rejectedCount() {
+        return rejected.get();
+    }
+}
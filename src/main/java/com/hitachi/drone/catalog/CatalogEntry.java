@@ -0,0 +1,26 @@
+package com.hitachi.drone.catalog;
+
+import com.hitachi.drone.model.Medication;
+
+/*
+* Immutable snapshot of a catalog medication. The cache only ever hands these out, never the
+* managed Medication it was read from, so a cached value cannot end up attached to a drone.*/
+public record CatalogEntry(long id, String name, String code, String image, double weight, int quantity) {
+
+    public static CatalogEntry of(Medication medication) {
+        return new CatalogEntry(medication.getId(), medication.getName(), medication.getCode(), medication.getImage(),
+                medication.getWeight(), medication.getQuantity());
+    }
+
+    // a new, unmanaged Medication with the catalog values, for code that works on entities
+    public Medication toMedication() {
+        Medication medication = new Medication();
+        medication.setId(id);
+        medication.setName(name);
+        medication.setCode(code);
+        medication.setImage(image);
+        medication.setWeight(weight);
+        medication.setQuantity(quantity);
+        return medication;
+    }
+}
@@ -0,0 +1,158 @@
+package com.hitachi.drone.catalog;
+
+import com.hitachi.drone.model.Medication;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+* Read-through cache of the medication catalog, keyed by medication id.
+* Bounded by drone.catalog.cache.max-size (least recently used entry goes first) and
+* drone.catalog.cache.ttl. Misses are read with the loader the caller passes in, so the cache
+* itself never talks to the database. Unknown ids are not cached.*/
+@Component
+public class MedicationCatalogCache {
+
+    @Value("${drone.catalog.cache.max-size:1000}")
+    private int maxSize = 1000;
+
+    @Value("${drone.catalog.cache.ttl:PT10M}")
+    private Duration ttl = Duration.ofMinutes(10);
+
+    private final LinkedHashMap<Long, Slot> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Slot> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    // bumped by every invalidation, so a load that started before it is not stored afterwards
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public Optional<CatalogEntry> get(long id, Function<Long, Optional<Medication>> loader) {
+        long loadGeneration;
+        synchronized (entries) {
+            CatalogEntry cached = lookup(id);
+            if (cached != null) {
+                hits.increment();
+                return Optional.of(cached);
+            }
+            loadGeneration = generation;
+        }
+        misses.increment();
+        Optional<CatalogEntry> loaded = loader.apply(id).map(CatalogEntry::of);
+        loaded.ifPresent(entry -> store(List.of(entry), loadGeneration));
+        return loaded;
+    }
+
+    /*
+    * All ids that are in the catalog, mapped to their entry. The misses are read with a single loader call.*/
+    public Map<Long, CatalogEntry> getAll(Collection<Long> ids, Function<List<Long>, List<Medication>> loader) {
+        Map<Long, CatalogEntry> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long loadGeneration;
+        synchronized (entries) {
+            for (Long id : ids) {
+                CatalogEntry cached = lookup(id);
+                if (cached != null) {
+                    found.put(id, cached);
+                } else if (!missing.contains(id)) {
+                    missing.add(id);
+                }
+            }
+            loadGeneration = generation;
+        }
+        hits.add(found.size());
+        if (missing.isEmpty()) {
+            return found;
+        }
+        misses.add(missing.size());
+        List<CatalogEntry> loaded = new ArrayList<>(missing.size());
+        for (Medication medication : loader.apply(missing)) {
+            CatalogEntry entry = CatalogEntry.of(medication);
+            loaded.add(entry);
+            found.put(entry.id(), entry);
+        }
+        store(loaded, loadGeneration);
+        return found;
+    }
+
+    public void warm(Collection<Medication> medications) {
+        List<CatalogEntry> warmed = new ArrayList<>(medications.size());
+        for (Medication medication : medications) {
+            warmed.add(CatalogEntry.of(medication));
+        }
+        synchronized (entries) {
+            store(warmed, generation);
+        }
+    }
+
+    public void invalidate(long id) {
+        synchronized (entries) {
+            entries.remove(id);
+            generation++;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            generation++;
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // caller holds the entries monitor
+    private CatalogEntry lookup(long id) {
+        Slot slot = entries.get(id);
+        if (slot == null) {
+            return null;
+        }
+        if (System.nanoTime() - slot.expiresAtNanos() >= 0) {
+            entries.remove(id);
+            return null;
+        }
+        return slot.entry();
+    }
+
+    private void store(List<CatalogEntry> loaded, long loadGeneration) {
+        long expiresAt = System.nanoTime() + ttl.toNanos();
+        synchronized (entries) {
+            if (loadGeneration != generation) {
+                return;
+            }
+            for (CatalogEntry entry : loaded) {
+                entries.put(entry.id(), new Slot(entry, expiresAt));
+            }
+        }
+    }
+
+    private record Slot(CatalogEntry entry, long expiresAtNanos) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.hitachi.drone.config;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*
+* Runs the faststart migrations. A database with a drone table but no Flyway history was kept by
+* ddl-auto=update, and how far its schema got depends on the version that last ran on it. It is baselined
+* at the newest migration whose tables and constraints it already has, so the ones after it still run:
+* V1 for a database from before payload lines, V4 for one the default profile keeps today.
+* A drone table from before V1 (no version or payload totals) cannot be baselined; startup stops and
+* says how to bring it up to date.*/
+@Component
+public class FlywayBaseline implements FlywayMigrationStrategy {
+    private static final Logger logger = LoggerFactory.getLogger(FlywayBaseline.class);
+
+    // the drone columns V1 created that the first versions of the application did not have
+    private static final List<String> V1_DRONE_COLUMNS =
+            List.of("STATE_CHANGED_AT", "PAYLOAD_WEIGHT", "PAYLOAD_ITEM_COUNT", "VERSION");
+
+    @Override
+    public void migrate(Flyway flyway) {
+        if (flyway.info().applied().length == 0) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(flyway.getConfiguration().getDataSource());
+            if (hasTable(jdbcTemplate, "DRONE")) {
+                int version = baselineVersion(jdbcTemplate);
+                logger.info("Baselining the schema kept by ddl-auto=update at version {}", version);
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .baselineVersion(String.valueOf(version))
+                        .load()
+                        .baseline();
+            }
+        }
+        flyway.migrate();
+    }
+
+    static int baselineVersion(JdbcTemplate jdbcTemplate) {
+        List<String> missing = V1_DRONE_COLUMNS.stream()
+                .filter(column -> !hasColumn(jdbcTemplate, "DRONE", column))
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("The drone table predates the versioned schema, it has no "
+                    + String.join(", ", missing).toLowerCase() + " column. Start the application once without "
+                    + "the faststart profile, so ddl-auto=update brings the schema up to date, then use faststart.");
+        }
+        if (!hasTable(jdbcTemplate, "PAYLOAD_ITEM")) {
+            return 1;
+        }
+        if (!hasConstraint(jdbcTemplate, "UK_DRONE_SERIAL_NUMBER")) {
+            return 2;
+        }
+        return hasTable(jdbcTemplate, "SCHEDULER_LEASE") ? 4 : 3;
+    }
+
+    private static boolean hasTable(JdbcTemplate jdbcTemplate, String table) {
+        return count(jdbcTemplate, "select count(*) from information_schema.tables "
+                + "where table_schema = current_schema and upper(table_name) = ?", table) > 0;
+    }
+
+    private static boolean hasColumn(JdbcTemplate jdbcTemplate, String table, String column) {
+        return count(jdbcTemplate, "select count(*) from information_schema.columns "
+                + "where table_schema = current_schema and upper(table_name) = ? and upper(column_name) = ?",
+                table, column) > 0;
+    }
+
+    private static boolean hasConstraint(JdbcTemplate jdbcTemplate, String constraint) {
+        return count(jdbcTemplate, "select count(*) from information_schema.table_constraints "
+                + "where constraint_schema = current_schema and upper(constraint_name) = ?", constraint) > 0;
+    }
+
+    private static int count(JdbcTemplate jdbcTemplate, String sql, Object... args) {
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, args);
+        return count == null ? 0 : count;
+    }
+}
@@ -1,16 +1,43 @@
 package com.hitachi.drone.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.hitachi.drone.dto.BatteryReading;
+import com.hitachi.drone.dto.BatterySample;
+import com.hitachi.drone.dto.DispatchResult;
+import com.hitachi.drone.dto.DroneCandidate;
+import com.hitachi.drone.dto.DroneFilter;
+import com.hitachi.drone.dto.DronePage;
+import com.hitachi.drone.dto.DroneTransition;
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.events.DroneEventStream;
 import com.hitachi.drone.exception.BatterLevelLowException;
 import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.journal.TransitionJournal;
 import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.service.DispatchService;
 import com.hitachi.drone.service.DroneService;
+import com.hitachi.drone.telemetry.BatteryTelemetry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("v1/drone")
@@ -19,6 +46,21 @@ public class DroneController {
     @Autowired
     private DroneService droneService;
 
+    @Autowired
+    private DispatchService dispatchService;
+
+    @Autowired
+    private TransitionJournal transitionJournal;
+
+    @Autowired
+    private BatteryTelemetry batteryTelemetry;
+
+    @Autowired
+    private DroneEventStream droneEventStream;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping("/register")
     public ResponseEntity<Drone> registerDrone(@RequestBody Drone drone){
         return ResponseEntity.ok(droneService.registerDrone(drone));
@@ -37,20 +79,166 @@ public class DroneController {
         }
     }
 
+    @PostMapping("/{droneId}/load")
+    public ResponseEntity<?> loadDroneBulk(@PathVariable String droneId,
+                                           @RequestBody List<LoadItem> items) {
+        try {
+            Optional<Drone> updatedDrone = droneService.loadDrone(droneId, items);
+            if (updatedDrone.isPresent()) {
+                return ResponseEntity.ok(updatedDrone.get());
+            }
+            // nothing loaded: either there is no such drone, or it is past LOADING
+            if (droneService.droneVersion(droneId).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Collections.singletonMap("message", "Drone is not IDLE or LOADING."));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        } catch (WeightLimitExceededException e) {
+            return ResponseEntity.ok(Collections.singletonMap("message",e.getMessage()));
+        } catch (BatterLevelLowException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/dispatch")
+    public ResponseEntity<?> dispatch(@RequestBody List<LoadItem> orders) {
+        try {
+            DispatchResult result = dispatchService.dispatch(orders);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        } catch (ConcurrencyFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
+
+    /*
+    * The ETag is the drone's version, which every load and state change bumps: a poller sending it
+    * back in If-None-Match gets a 304 after a single-column lookup, without the medications being read.
+    * JSON, Smile and CBOR bodies of one version differ byte for byte, so the ETag is weak, with Vary: Accept.*/
     @GetMapping("{id}/load")
-    public ResponseEntity<?> viewDroneLoad(@PathVariable String id){
-        return ResponseEntity.ok(droneService.viewDroneLoadMedication(id));
+    public ResponseEntity<?> viewDroneLoad(@PathVariable String id, WebRequest request){
+        Optional<Long> version = droneService.droneVersion(id);
+        if (version.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = "W/\"" + version.get() + "\"";
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(droneService.viewDroneLoadMedication(id));
     }
 
+    // the answer is a single flag, so it is its own (weak, as above) ETag
     @GetMapping("{id}/status")
-    public ResponseEntity<?> viewDroneStats(@PathVariable String id){
-        return ResponseEntity.ok(Collections.singletonMap("is_available_for_loading", droneService.viewDroneStatus(id)));
-       
+    public ResponseEntity<?> viewDroneStats(@PathVariable String id, WebRequest request){
+        Boolean available = droneService.viewDroneStatus(id);
+        String etag = "W/\"available-" + available + "\"";
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT)
+                .body(Collections.singletonMap("is_available_for_loading", available));
+    }
+
+    @PostMapping("/telemetry")
+    public ResponseEntity<?> ingestTelemetry(@RequestBody List<BatteryReading> readings) {
+        try {
+            if (!batteryTelemetry.accept(readings)) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(batteryTelemetry.retryAfterSeconds()))
+                        .body(Collections.singletonMap("message", "Telemetry buffer is full, retry later."));
+            }
+            return ResponseEntity.accepted().body(Collections.singletonMap("accepted", readings.size()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("{id}/battery")
+    public ResponseEntity<List<BatterySample>> viewBatteryHistory(@PathVariable Long id) {
+        return ResponseEntity.ok(batteryTelemetry.history(id));
+    }
+
+    /*
+    * Server-sent "state" and "payload" events of the matching drones, e.g.
+    * /events?droneId=1&droneId=2 or /events?state=LOADED; no parameter means every change.*/
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToEvents(@RequestParam(required = false) Set<Long> droneId,
+                                                        @RequestParam(required = false) Set<Drone.DroneState> state) {
+        try {
+            return ResponseEntity.ok(droneEventStream.subscribe(droneId, state));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
     }
 
+    // from and to are ISO-8601 instants, both inclusive and optional
+    @GetMapping("{id}/history")
+    public ResponseEntity<List<DroneTransition>> viewDroneHistory(@PathVariable Long id,
+                                                                  @RequestParam(required = false) Instant from,
+                                                                  @RequestParam(required = false) Instant to,
+                                                                  @RequestParam(defaultValue = "1000") int limit){
+        return ResponseEntity.ok(transitionJournal.history(id, from, to, limit));
+    }
+
+    @GetMapping("/transitions")
+    public ResponseEntity<List<DroneTransition>> viewTransitions(@RequestParam(required = false) Instant from,
+                                                                 @RequestParam(required = false) Instant to,
+                                                                 @RequestParam(defaultValue = "1000") int limit){
+        return ResponseEntity.ok(transitionJournal.range(from, to, limit));
+    }
+
+    // the drones that can take weight grams right now, e.g. /candidates?weight=250&limit=5&fit=FIRST
+    @GetMapping("/candidates")
+    public ResponseEntity<?> viewCandidates(@RequestParam double weight,
+                                            @RequestParam(defaultValue = "10") int limit,
+                                            @RequestParam(defaultValue = "BEST") FleetStateRegistry.Fit fit){
+        try {
+            List<DroneCandidate> candidates = droneService.findCandidates(weight, limit, fit);
+            return ResponseEntity.ok(candidates);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
+
+    // e.g. /view?state=IDLE&minBattery=30&model=HEAVYWEIGHT; without parameters, the whole fleet
     @GetMapping("/view")
-    public ResponseEntity<List<Drone>> viewDrone(){
-        return ResponseEntity.ok(droneService.viewDrones());
+    public ResponseEntity<List<Drone>> viewDrone(@RequestParam(required = false) Drone.DroneState state,
+                                                 @RequestParam(required = false) Integer minBattery,
+                                                 @RequestParam(required = false) Drone.DroneModel model,
+                                                 @RequestParam(required = false) String serialNumber){
+        DroneFilter filter = new DroneFilter(state, minBattery, model, serialNumber);
+        return ResponseEntity.ok(filter.isEmpty() ? droneService.viewDrones() : droneService.viewDrones(filter));
+    }
+
+    @GetMapping("/view/page")
+    public ResponseEntity<DronePage> viewDronePage(@RequestParam(required = false) Long after,
+                                                   @RequestParam(defaultValue = "100") int limit,
+                                                   @RequestParam(required = false) Drone.DroneState state,
+                                                   @RequestParam(required = false) Integer minBattery,
+                                                   @RequestParam(required = false) Drone.DroneModel model,
+                                                   @RequestParam(required = false) String serialNumber){
+        DroneFilter filter = new DroneFilter(state, minBattery, model, serialNumber);
+        return ResponseEntity.ok(filter.isEmpty() ? droneService.viewDrones(after, limit)
+                : droneService.viewDrones(filter, after, limit));
+    }
+
+    // Newline-delimited JSON, one drone per line, written while the fleet is still being read.
+    @GetMapping(value = "/view/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamDrones(){
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = out -> droneService.streamDrones(drone -> {
+            try {
+                writer.writeValue(out, drone);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
 }
@@ -0,0 +1,22 @@
+package com.hitachi.drone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/*
+* A battery level reported by a drone. at is when it was measured; readings without it are
+* stamped when they are received.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatteryReading {
+
+    private Long droneId;
+
+    private int batteryCapacity;
+
+    private Instant at;
+}
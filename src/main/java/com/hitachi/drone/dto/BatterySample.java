@@ -0,0 +1,25 @@
+package com.hitachi.drone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/*
+* The battery readings of one drone within one history bucket, starting at "from".*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatterySample {
+
+    private Instant from;
+
+    private int min;
+
+    private int max;
+
+    private double average;
+
+    private int readings;
+}
@@ -0,0 +1,20 @@
+package com.hitachi.drone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/*
+* Outcome of one dispatch wave: the committed assignments per drone, and the orders no eligible
+* drone had room for (heaviest first). Unassigned orders were not loaded anywhere.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DispatchResult {
+
+    private List<DroneAssignment> assignments;
+
+    private List<LoadItem> unassigned;
+}
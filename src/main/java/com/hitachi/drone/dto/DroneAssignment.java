@@ -0,0 +1,21 @@
+package com.hitachi.drone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/*
+* The orders a dispatch loaded onto one drone, and the weight they added to its payload.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DroneAssignment {
+
+    private Long droneId;
+
+    private List<LoadItem> items;
+
+    private double payloadWeight;
+}
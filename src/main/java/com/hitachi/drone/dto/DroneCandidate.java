@@ -0,0 +1,25 @@
+package com.hitachi.drone.dto;
+
+import com.hitachi.drone.model.Drone;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+* A drone that can take a payload right now, as GET v1/drone/candidates returns it.
+* remainingCapacity is weightLimit minus the payload already loaded, in grams.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DroneCandidate {
+
+    private long droneId;
+
+    private Drone.DroneState state;
+
+    private int batteryCapacity;
+
+    private double weightLimit;
+
+    private double remainingCapacity;
+}
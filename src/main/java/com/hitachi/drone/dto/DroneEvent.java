@@ -0,0 +1,33 @@
+package com.hitachi.drone.dto;
+
+import com.hitachi.drone.model.Drone;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/*
+* A change pushed to the v1/drone/events subscribers. type is "state" when the drone moved from
+* previousState to state, "payload" when only its payload weight changed.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DroneEvent {
+
+    private long sequence;
+
+    private String type;
+
+    private Long droneId;
+
+    private Drone.DroneState previousState;
+
+    private Drone.DroneState state;
+
+    private Integer batteryCapacity;
+
+    private Double payloadWeight;
+
+    private Instant at;
+}
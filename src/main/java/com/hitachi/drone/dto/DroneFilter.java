@@ -0,0 +1,27 @@
+package com.hitachi.drone.dto;
+
+import com.hitachi.drone.model.Drone;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+* Query parameters of GET v1/drone/view and v1/drone/view/page. Every criterion is optional, the ones
+* given must all match.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DroneFilter {
+
+    private Drone.DroneState state;
+
+    private Integer minBattery;
+
+    private Drone.DroneModel model;
+
+    private String serialNumber;
+
+    public boolean isEmpty() {
+        return state == null && minBattery == null && model == null && serialNumber == null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.hitachi.drone.dto;
+
+import com.hitachi.drone.model.Drone;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/*
+* One keyset page of the fleet. nextCursor is the id to pass as "after" for the next page,
+* or null when this is the last page.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DronePage {
+
+    private List<Drone> drones;
+
+    private Long nextCursor;
+}
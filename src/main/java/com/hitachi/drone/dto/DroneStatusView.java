@@ -0,0 +1,24 @@
+package com.hitachi.drone.dto;
+
+import com.hitachi.drone.model.Drone;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+* The columns of one drone FleetStateRegistry keeps, read without hydrating the entity.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DroneStatusView {
+
+    private Long id;
+
+    private Drone.DroneState state;
+
+    private int batteryCapacity;
+
+    private double weightLimit;
+
+    private double payloadWeight;
+}
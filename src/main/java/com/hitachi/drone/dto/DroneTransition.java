@@ -0,0 +1,27 @@
+package com.hitachi.drone.dto;
+
+import com.hitachi.drone.model.Drone;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/*
+* One state change of a drone as the transition journal recorded it.
+* from is null when the drone had no state before.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DroneTransition {
+
+    private Long droneId;
+
+    private Drone.DroneState from;
+
+    private Drone.DroneState to;
+
+    private int batteryCapacity;
+
+    private Instant at;
+}
@@ -0,0 +1,17 @@
+package com.hitachi.drone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+* One line of a bulk load request: a catalog medication and how many units of it to load.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoadItem {
+
+    private Long medicationId;
+
+    private int quantity = 1;
+}
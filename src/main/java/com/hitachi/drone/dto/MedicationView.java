@@ -0,0 +1,26 @@
+package com.hitachi.drone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+* A medication line loaded on a drone, as GET v1/drone/{id}/load returns it.
+* Selected column by column, so neither the drone nor the Medication entity is loaded.*/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MedicationView {
+
+    private Long id;
+
+    private String name;
+
+    private double weight;
+
+    private int quantity;
+
+    private String code;
+
+    private String image;
+}
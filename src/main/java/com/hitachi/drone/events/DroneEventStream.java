@@ -0,0 +1,196 @@
+package com.hitachi.drone.events;
+
+import com.hitachi.drone.dto.DroneEvent;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateListener;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* Pushes drone state and payload changes to SSE subscribers, filtered by drone id and/or state.
+* Changes come from FleetStateRegistry's listener, so the thread that made them (scheduler tick,
+* load request) only appends to a bounded queue and never waits on a client. One dispatcher thread
+* fans each event out to the matching subscribers, indexed by drone id, and every subscriber has its
+* own bounded buffer drained on a virtual thread; a slow client loses its oldest events (and is told
+* how many) or is disconnected, per drone.events.overflow, without holding anyone else up.*/
+@Component
+public class DroneEventStream implements FleetStateListener {
+    private static final Logger logger = LoggerFactory.getLogger(DroneEventStream.class);
+
+    private final FleetStateRegistry fleetStateRegistry;
+
+    @Value("${drone.events.buffer-size:256}")
+    private int bufferSize = 256;
+
+    @Value("${drone.events.overflow:DROP_OLDEST}")
+    private Overflow overflow = Overflow.DROP_OLDEST;
+
+    @Value("${drone.events.max-subscribers:10000}")
+    private int maxSubscribers = 10000;
+
+    // the connection is closed after this long, EventSource clients reconnect on their own
+    @Value("${drone.events.timeout:PT30M}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    @Value("${drone.events.queue-size:65536}")
+    private int queueSize = 65536;
+
+    private final ConcurrentHashMap<Long, Set<EventSubscriber>> byDrone = new ConcurrentHashMap<>();
+    private final Set<EventSubscriber> anyDrone = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private BlockingQueue<DroneEvent> published;
+    private ExecutorService senders;
+    private Thread dispatcher;
+
+    public DroneEventStream(FleetStateRegistry fleetStateRegistry) {
+        this.fleetStateRegistry = fleetStateRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        published = new ArrayBlockingQueue<>(queueSize);
+        senders = Executors.newVirtualThreadPerTaskExecutor();
+        dispatcher = Thread.ofPlatform().name("drone-events").daemon().start(this::dispatchLoop);
+        fleetStateRegistry.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.interrupt();
+        senders.shutdownNow();
+    }
+
+    /*
+    * Empty sets mean no filter. Throws IllegalStateException when drone.events.max-subscribers are connected.*/
+    public SseEmitter subscribe(Set<Long> droneIds, Set<Drone.DroneState> states) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("Too many event subscribers, retry later.");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        EventSubscriber subscriber = new EventSubscriber(emitter, droneIds, states, bufferSize, overflow);
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unregister(subscriber));
+        if (subscriber.droneIds().isEmpty()) {
+            anyDrone.add(subscriber);
+        } else {
+            for (Long droneId : subscriber.droneIds()) {
+                byDrone.compute(droneId, (id, subscribers) -> {
+                    Set<EventSubscriber> forDrone = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+                    forDrone.add(subscriber);
+                    return forDrone;
+                });
+            }
+        }
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    // events lost because the dispatcher fell behind, on top of what single subscribers dropped
+    public long droppedEvents() {
+        return droppedEvents.get();
+    }
+
+    @Override
+    public void stateChanged(long droneId, Drone.DroneState from, Drone.DroneState to, int batteryCapacity) {
+        publish("state", droneId, from, to, batteryCapacity, null);
+    }
+
+    @Override
+    public void payloadChanged(long droneId, Drone.DroneState state, double payloadWeight) {
+        publish("payload", droneId, state, state, null, payloadWeight);
+    }
+
+    private void publish(String type, long droneId, Drone.DroneState from, Drone.DroneState to,
+                         Integer batteryCapacity, Double payloadWeight) {
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+        if (payloadWeight == null) {
+            payloadWeight = currentPayload(droneId);
+        }
+        DroneEvent event = new DroneEvent(sequence.incrementAndGet(), type, droneId, from, to, batteryCapacity,
+                payloadWeight, Instant.now());
+        if (!published.offer(event)) {
+            droppedEvents.incrementAndGet();
+        }
+    }
+
+    void fanOut(DroneEvent event) {
+        Set<EventSubscriber> forDrone = byDrone.get(event.getDroneId());
+        if (forDrone != null) {
+            forDrone.forEach(subscriber -> deliver(subscriber, event));
+        }
+        anyDrone.forEach(subscriber -> deliver(subscriber, event));
+    }
+
+    private void deliver(EventSubscriber subscriber, DroneEvent event) {
+        if (subscriber.accepts(event) && subscriber.offer(event)) {
+            senders.execute(subscriber::drain);
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                fanOut(published.take());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Could not dispatch a drone event", e);
+            }
+        }
+    }
+
+    private void unregister(EventSubscriber subscriber) {
+        subscriber.close();
+        boolean removed = anyDrone.remove(subscriber);
+        for (Long droneId : subscriber.droneIds()) {
+            boolean[] found = new boolean[1];
+            byDrone.computeIfPresent(droneId, (id, forDrone) -> {
+                found[0] = forDrone.remove(subscriber);
+                return forDrone.isEmpty() ? null : forDrone;
+            });
+            removed |= found[0];
+        }
+        if (removed) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private Double currentPayload(long droneId) {
+        try {
+            return fleetStateRegistry.getPayloadWeight(droneId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public enum Overflow {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+}
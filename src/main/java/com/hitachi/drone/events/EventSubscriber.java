@@ -0,0 +1,112 @@
+package com.hitachi.drone.events;
+
+import com.hitachi.drone.dto.DroneEvent;
+import com.hitachi.drone.model.Drone;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+
+/*
+* One SSE subscription: its filter and a bounded buffer between the dispatcher and the connection.
+* The dispatcher only ever appends to the buffer; one drain task at a time writes it to the emitter.*/
+final class EventSubscriber {
+
+    private final SseEmitter emitter;
+    private final Set<Long> droneIds;
+    private final Set<Drone.DroneState> states;
+    private final int capacity;
+    private final DroneEventStream.Overflow overflow;
+    private final ArrayDeque<DroneEvent> buffer;
+    private int dropped;
+    private boolean draining;
+    private boolean closed;
+
+    EventSubscriber(SseEmitter emitter, Set<Long> droneIds, Set<Drone.DroneState> states, int capacity,
+                    DroneEventStream.Overflow overflow) {
+        this.emitter = emitter;
+        this.droneIds = droneIds == null ? Collections.emptySet() : droneIds;
+        this.states = states == null ? Collections.emptySet() : states;
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.buffer = new ArrayDeque<>(Math.min(capacity, 16));
+    }
+
+    Set<Long> droneIds() {
+        return droneIds;
+    }
+
+    boolean accepts(DroneEvent event) {
+        return (droneIds.isEmpty() || droneIds.contains(event.getDroneId()))
+                && (states.isEmpty() || states.contains(event.getState()));
+    }
+
+    /*
+    * Buffers the event. A full buffer drops its oldest event or, with Overflow.DISCONNECT, closes the
+    * subscription. Returns true when the caller has to start a drain.*/
+    synchronized boolean offer(DroneEvent event) {
+        if (closed) {
+            return false;
+        }
+        if (buffer.size() == capacity) {
+            if (overflow == DroneEventStream.Overflow.DISCONNECT) {
+                closed = true;
+                buffer.clear();
+            } else {
+                buffer.poll();
+                dropped++;
+                buffer.add(event);
+            }
+        } else {
+            buffer.add(event);
+        }
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    // writes out everything buffered; a subscriber that lost events is told how many first
+    void drain() {
+        while (true) {
+            DroneEvent next;
+            int lost;
+            boolean close;
+            synchronized (this) {
+                close = closed;
+                next = buffer.poll();
+                lost = dropped;
+                dropped = 0;
+                if (!close && next == null && lost == 0) {
+                    draining = false;
+                    return;
+                }
+            }
+            if (close) {
+                emitter.complete();
+                return;
+            }
+            try {
+                if (lost > 0) {
+                    emitter.send(SseEmitter.event().name("dropped").data(Collections.singletonMap("dropped", lost)));
+                }
+                if (next != null) {
+                    emitter.send(SseEmitter.event().id(String.valueOf(next.getSequence())).name(next.getType()).data(next));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client is gone; the emitter's completion callback unregisters the subscriber
+                close();
+                emitter.completeWithError(e);
+                return;
+            }
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        buffer.clear();
+    }
+}
@@ -0,0 +1,344 @@
+package com.hitachi.drone.journal;
+
+import com.hitachi.drone.dto.DroneTransition;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateListener;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+* Append-only history of every drone state change, one 24-byte record per transition:
+* timestamp, drone id, from state, to state, battery, CRC32 of the rest.
+* It listens to FleetStateRegistry, which hears every committed transition whichever path made it
+* (loads, dispatch, each scheduler mode), so neither the scheduler nor the service writes here directly.
+* Records go into preallocated segment files mapped into memory; a segment is named after the time
+* of its first record, which lets queries skip segments outside their range. Reads map the segment
+* files again and never touch JPA. A process crash loses nothing that was appended (the pages belong
+* to the OS); segments are forced to disk when they are closed.
+* Segments whose every record is older than drone.journal.retention are deleted.*/
+@Component
+public class TransitionJournal implements FleetStateListener {
+    private static final Logger logger = LoggerFactory.getLogger(TransitionJournal.class);
+
+    static final int RECORD_SIZE = 24;
+    private static final int CHECKED_BYTES = 20;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+    private static final Drone.DroneState[] STATES = Drone.DroneState.values();
+
+    private final FleetStateRegistry fleetStateRegistry;
+
+    @Value("${drone.journal.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${drone.journal.dir:./data/journal}")
+    private String journalDir = "./data/journal";
+
+    // 65536 records make a 1.5 MB segment
+    @Value("${drone.journal.segment-records:65536}")
+    private int segmentRecords = 65536;
+
+    @Value("${drone.journal.retention:P7D}")
+    private Duration retention = Duration.ofDays(7);
+
+    @Value("${drone.journal.max-query-records:10000}")
+    private int maxQueryRecords = 10000;
+
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+    private Path directory;
+    private FileChannel lockChannel;
+    private Segment active;
+    private volatile boolean open;
+
+    public TransitionJournal(FleetStateRegistry fleetStateRegistry) {
+        this.fleetStateRegistry = fleetStateRegistry;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Path.of(journalDir);
+        Files.createDirectories(directory);
+        // a second instance on the same directory would interleave its records with ours
+        lockChannel = FileChannel.open(directory.resolve("journal.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock directoryLock;
+        try {
+            directoryLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            directoryLock = null;
+        }
+        if (directoryLock == null) {
+            logger.warn("Transition journal {} is used by another instance, transitions are not journaled", directory);
+            lockChannel.close();
+            return;
+        }
+
+        synchronized (lock) {
+            List<Path> segments = segments();
+            if (!segments.isEmpty()) {
+                active = Segment.reopen(segments.get(segments.size() - 1));
+            }
+            if (active == null || active.full()) {
+                rotate(System.currentTimeMillis());
+            }
+        }
+        applyRetention(System.currentTimeMillis());
+        open = true;
+        fleetStateRegistry.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!open) {
+            return;
+        }
+        synchronized (lock) {
+            open = false;
+            active.close();
+        }
+        lockChannel.close();
+    }
+
+    @Override
+    public void stateChanged(long droneId, Drone.DroneState from, Drone.DroneState to, int batteryCapacity) {
+        append(droneId, from, to, batteryCapacity, System.currentTimeMillis());
+    }
+
+    void append(long droneId, Drone.DroneState from, Drone.DroneState to, int batteryCapacity, long atMillis) {
+        synchronized (lock) {
+            if (!open) {
+                return;
+            }
+            try {
+                if (active.full()) {
+                    rotate(atMillis);
+                }
+            } catch (IOException e) {
+                // the journal is a record of what happened, it must not fail the transition itself
+                logger.error("Could not start a new journal segment, transition of drone {} not journaled", droneId, e);
+                return;
+            }
+            MappedByteBuffer buffer = active.buffer;
+            int offset = active.records * RECORD_SIZE;
+            buffer.putLong(offset, atMillis);
+            buffer.putLong(offset + 8, droneId);
+            buffer.put(offset + 16, encode(from));
+            buffer.put(offset + 17, encode(to));
+            buffer.putShort(offset + 18, (short) batteryCapacity);
+            crc.reset();
+            crc.update(buffer.slice(offset, CHECKED_BYTES));
+            buffer.putInt(offset + CHECKED_BYTES, (int) crc.getValue());
+            active.records++;
+        }
+    }
+
+    // transitions of one drone in [from, to], oldest first
+    public List<DroneTransition> history(long droneId, Instant from, Instant to, int limit) {
+        return query(droneId, from, to, limit);
+    }
+
+    // transitions of every drone in [from, to], oldest first
+    public List<DroneTransition> range(Instant from, Instant to, int limit) {
+        return query(-1, from, to, limit);
+    }
+
+    @Scheduled(fixedDelayString = "${drone.journal.retention-check-ms:3600000}")
+    public void enforceRetention() {
+        if (!open) {
+            return;
+        }
+        try {
+            applyRetention(System.currentTimeMillis());
+        } catch (IOException e) {
+            logger.warn("Could not apply the journal retention", e);
+        }
+    }
+
+    /*
+    * A segment only holds records older than the start of the next one, so it can go once the next
+    * one started before the cutoff. The active segment is never deleted. Returns the number deleted.*/
+    int applyRetention(long nowMillis) throws IOException {
+        long cutoff = nowMillis - retention.toMillis();
+        List<Path> segments = segments();
+        int deleted = 0;
+        for (int i = 0; i + 1 < segments.size() && startOf(segments.get(i + 1)) <= cutoff; i++) {
+            synchronized (lock) {
+                if (active != null && segments.get(i).equals(active.path)) {
+                    break;
+                }
+            }
+            if (Files.deleteIfExists(segments.get(i))) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            logger.info("Deleted {} journal segments older than {}", deleted, retention);
+        }
+        return deleted;
+    }
+
+    private List<DroneTransition> query(long droneId, Instant from, Instant to, int limit) {
+        if (!open) {
+            return Collections.emptyList();
+        }
+        long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+        long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+        int max = Math.max(1, Math.min(limit, maxQueryRecords));
+        List<DroneTransition> found = new ArrayList<>();
+        try {
+            List<Path> segments = segments();
+            for (int i = 0; i < segments.size() && found.size() < max; i++) {
+                if (i + 1 < segments.size() && startOf(segments.get(i + 1)) < fromMillis) {
+                    continue;
+                }
+                if (startOf(segments.get(i)) > toMillis) {
+                    break;
+                }
+                scan(segments.get(i), droneId, fromMillis, toMillis, max, found);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the transition journal", e);
+        }
+        return found;
+    }
+
+    /*
+    * Reads records up to the first one that does not check out: the unwritten (zeroed) tail of the
+    * segment, or a record the writer is still filling in.*/
+    private static void scan(Path segment, long droneId, long fromMillis, long toMillis, int max,
+                             List<DroneTransition> found) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            // removed by the retention since it was listed
+            return;
+        }
+        CRC32 check = new CRC32();
+        int records = buffer.capacity() / RECORD_SIZE;
+        for (int i = 0; i < records && found.size() < max; i++) {
+            int offset = i * RECORD_SIZE;
+            if (!valid(buffer, offset, check)) {
+                return;
+            }
+            long at = buffer.getLong(offset);
+            long id = buffer.getLong(offset + 8);
+            if (at < fromMillis || at > toMillis || (droneId >= 0 && id != droneId)) {
+                continue;
+            }
+            found.add(new DroneTransition(id, decode(buffer.get(offset + 16)), decode(buffer.get(offset + 17)),
+                    buffer.getShort(offset + 18), Instant.ofEpochMilli(at)));
+        }
+    }
+
+    private void rotate(long nowMillis) throws IOException {
+        long start = nowMillis;
+        if (active != null) {
+            // names must sort in write order, even when segments fill up within one millisecond
+            start = Math.max(start, active.startMillis + 1);
+            active.close();
+        }
+        active = Segment.create(directory.resolve(String.format(PREFIX + "%019d" + SUFFIX, start)), start, segmentRecords);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long startOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static boolean valid(ByteBuffer buffer, int offset, CRC32 check) {
+        check.reset();
+        check.update(buffer.slice(offset, CHECKED_BYTES));
+        return buffer.getInt(offset + CHECKED_BYTES) == (int) check.getValue();
+    }
+
+    private static byte encode(Drone.DroneState state) {
+        return state == null ? 0 : (byte) (state.ordinal() + 1);
+    }
+
+    private static Drone.DroneState decode(byte code) {
+        return code <= 0 || code > STATES.length ? null : STATES[code - 1];
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long startMillis;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int records;
+
+        private Segment(Path path, long startMillis, FileChannel channel, int capacity) throws IOException {
+            this.path = path;
+            this.startMillis = startMillis;
+            this.channel = channel;
+            this.capacity = capacity;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        }
+
+        private static Segment create(Path path, long startMillis, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            return new Segment(path, startMillis, channel, capacity);
+        }
+
+        // continues the last segment of an earlier run after its last intact record
+        private static Segment reopen(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(path, startOf(path), channel, (int) (channel.size() / RECORD_SIZE));
+            CRC32 check = new CRC32();
+            while (segment.records < segment.capacity && valid(segment.buffer, segment.records * RECORD_SIZE, check)) {
+                segment.records++;
+            }
+            return segment;
+        }
+
+        private boolean full() {
+            return records >= capacity;
+        }
+
+        private void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.hitachi.drone.lease;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/*
+* A row of scheduler_lease. ShardLeases works on the table with plain SQL; the entity is what
+* ddl-auto creates it from, and what the faststart profile's migration is validated against.*/
+@Entity
+@Table(name = "scheduler_lease")
+class SchedulerLease {
+
+    @Id
+    private int shard;
+
+    // null while nobody holds the shard
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+}
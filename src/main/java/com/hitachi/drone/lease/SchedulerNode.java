@@ -0,0 +1,20 @@
+package com.hitachi.drone.lease;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/*
+* A row of scheduler_node, one per live instance; see SchedulerLease for why it is an entity.*/
+@Entity
+@Table(name = "scheduler_node")
+class SchedulerNode {
+
+    @Id
+    @Column(name = "node_id")
+    private String nodeId;
+
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+}
@@ -0,0 +1,210 @@
+package com.hitachi.drone.lease;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+* Splits the scheduler's work between instances that share one database (drone.scheduler.lease.enabled).
+* The drone ids are cut into chunks of drone.scheduler.chunk-size and chunk k belongs to shard
+* k % drone.scheduler.shards; an instance only ticks the shards it holds a lease on in scheduler_lease.
+* Every renewal heartbeats the instance in scheduler_node, extends its leases and evens out ownership:
+* with n live instances each holds at most ceil(shards / n), releasing the rest and claiming shards that
+* are free or whose owner stopped renewing. Claims are conditional updates, so no two instances hold a
+* shard at the same time as long as their clocks agree to well within drone.scheduler.lease.ttl.
+* An instance that could not renew before its leases ran out owns nothing until it can.
+* Both tables are part of the schema (SchedulerLease, SchedulerNode and V4__scheduler_leases.sql).*/
+@Component
+public class ShardLeases {
+    private static final Logger logger = LoggerFactory.getLogger(ShardLeases.class);
+
+    private static final String CLAIMABLE = "(owner is null or expires_at <= ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${drone.scheduler.lease.enabled:false}")
+    private boolean enabled;
+
+    @Value("${drone.scheduler.shards:64}")
+    private int shards = 64;
+
+    // several renewals should fit in one ttl, and a tick should take well under it
+    @Value("${drone.scheduler.lease.ttl:PT30S}")
+    private Duration ttl = Duration.ofSeconds(30);
+
+    // blank: process name plus a random suffix, so a restarted instance never inherits its old leases
+    @Value("${drone.scheduler.lease.node-id:}")
+    private String nodeId = "";
+
+    private final Object renewLock = new Object();
+    private volatile Ownership ownership = new Ownership(new BitSet(), 0);
+    // shards claimed since the last takeAcquired(), guarded by renewLock
+    private final BitSet acquired = new BitSet();
+
+    public ShardLeases(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        Set<Integer> existing = new HashSet<>(jdbcTemplate.queryForList("select shard from scheduler_lease", Integer.class));
+        for (int shard = 0; shard < shards; shard++) {
+            if (existing.contains(shard)) {
+                continue;
+            }
+            try {
+                jdbcTemplate.update("insert into scheduler_lease (shard, owner, expires_at) values (?, null, 0)", shard);
+            } catch (DataIntegrityViolationException e) {
+                // inserted by an instance starting at the same time
+            }
+        }
+        renew();
+        logger.info("Scheduler node {} holds shards {} of {}", nodeId, ownedShards(), shards);
+    }
+
+    // hands the shards over right away instead of letting the others wait for the leases to run out
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (renewLock) {
+            ownership = new Ownership(new BitSet(), 0);
+            try {
+                jdbcTemplate.update("update scheduler_lease set owner = null where owner = ?", nodeId);
+                jdbcTemplate.update("delete from scheduler_node where node_id = ?", nodeId);
+            } catch (DataAccessException e) {
+                logger.warn("Could not release the shards of scheduler node {}, they expire on their own", nodeId, e);
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${drone.scheduler.lease.renew-ms:10000}")
+    public void renewQuietly() {
+        renew();
+    }
+
+    /*
+    * Heartbeats this instance, extends its leases and claims or releases shards towards its fair share.
+    * Returns false when the database could not be reached; the shards held stay owned until their leases expire.*/
+    public boolean renew() {
+        if (!enabled) {
+            return true;
+        }
+        synchronized (renewLock) {
+            long now = System.currentTimeMillis();
+            long expiresAt = now + ttl.toMillis();
+            try {
+                if (jdbcTemplate.update("update scheduler_node set expires_at = ? where node_id = ?", expiresAt, nodeId) == 0) {
+                    jdbcTemplate.update("insert into scheduler_node (node_id, expires_at) values (?, ?)", nodeId, expiresAt);
+                }
+                jdbcTemplate.update("delete from scheduler_node where expires_at <= ?", now - ttl.toMillis());
+                Integer live = jdbcTemplate.queryForObject(
+                        "select count(*) from scheduler_node where expires_at > ?", Integer.class, now);
+                int liveNodes = live == null ? 1 : Math.max(1, live);
+                int fairShare = (shards + liveNodes - 1) / liveNodes;
+
+                jdbcTemplate.update("update scheduler_lease set expires_at = ? where owner = ? and shard < ?",
+                        expiresAt, nodeId, shards);
+                List<Integer> held = jdbcTemplate.queryForList(
+                        "select shard from scheduler_lease where owner = ? and shard < ? order by shard",
+                        Integer.class, nodeId, shards);
+                BitSet owned = new BitSet(shards);
+                held.forEach(owned::set);
+
+                // more than the fair share once other instances joined: the highest shards go back
+                for (int i = held.size() - 1; i >= fairShare; i--) {
+                    jdbcTemplate.update("update scheduler_lease set owner = null where shard = ? and owner = ?",
+                            held.get(i), nodeId);
+                    owned.clear(held.get(i));
+                }
+                if (owned.cardinality() < fairShare) {
+                    List<Integer> claimable = jdbcTemplate.queryForList(
+                            "select shard from scheduler_lease where shard < ? and " + CLAIMABLE + " order by shard",
+                            Integer.class, shards, now);
+                    for (Integer shard : claimable) {
+                        if (owned.cardinality() >= fairShare) {
+                            break;
+                        }
+                        if (jdbcTemplate.update("update scheduler_lease set owner = ?, expires_at = ? " +
+                                "where shard = ? and " + CLAIMABLE, nodeId, expiresAt, shard, now) == 1) {
+                            owned.set(shard);
+                            acquired.set(shard);
+                        }
+                    }
+                }
+                if (!owned.equals(ownership.shards())) {
+                    logger.info("Scheduler node {} now holds {} of {} shards ({} live nodes)",
+                            nodeId, owned.cardinality(), shards, liveNodes);
+                }
+                ownership = new Ownership(owned, expiresAt);
+                return true;
+            } catch (DataAccessException e) {
+                logger.warn("Could not renew the shard leases of scheduler node {}", nodeId, e);
+                return false;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int shardOf(long chunk) {
+        return (int) Math.floorMod(chunk, (long) shards);
+    }
+
+    // true for every chunk when leases are off
+    public boolean ownsChunk(long chunk) {
+        return !enabled || ownership.owns(shardOf(chunk), System.currentTimeMillis());
+    }
+
+    public BitSet ownedShards() {
+        Ownership current = ownership;
+        return current.validUntil() > System.currentTimeMillis() ? (BitSet) current.shards().clone() : new BitSet();
+    }
+
+    /*
+    * The shards claimed since the previous call. Their drones may have been changed by another instance
+    * while it held them, so state cached in memory about them is stale.*/
+    public BitSet takeAcquired() {
+        synchronized (renewLock) {
+            BitSet taken = (BitSet) acquired.clone();
+            acquired.clear();
+            return taken;
+        }
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    // never modified once published
+    private record Ownership(BitSet shards, long validUntil) {
+
+        private boolean owns(int shard, long now) {
+            return now < validUntil && shards.get(shard);
+        }
+    }
+}
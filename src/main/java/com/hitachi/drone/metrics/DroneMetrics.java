@@ -0,0 +1,140 @@
+package com.hitachi.drone.metrics;
+
+import com.hitachi.drone.admission.AdmissionGate;
+import com.hitachi.drone.catalog.MedicationCatalogCache;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* Application meters on top of what Spring Boot already records (http.server.requests per endpoint).
+* Scraped from the actuator prometheus endpoint on the management port.*/
+@Component
+public class DroneMetrics {
+
+    private final Counter loaded;
+    private final Counter weightLimitExceeded;
+    private final Counter batteryLow;
+    private final DistributionSummary loadBatchSize;
+    private final Timer schedulerTick;
+    private final Counter schedulerTransitions;
+    private final AtomicLong schedulerLagMillis = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+    // per gate and outcome, registered with the gate
+    private final Map<String, Timer> admissionWaits = new ConcurrentHashMap<>();
+
+    public DroneMetrics(MeterRegistry meterRegistry, FleetStateRegistry fleetStateRegistry,
+                        MedicationCatalogCache medicationCatalogCache) {
+        this.meterRegistry = meterRegistry;
+        this.loaded = loadOutcome(meterRegistry, "loaded");
+        this.weightLimitExceeded = loadOutcome(meterRegistry, "weight_limit_exceeded");
+        this.batteryLow = loadOutcome(meterRegistry, "battery_low");
+        this.loadBatchSize = DistributionSummary.builder("drone.loads.batch.size")
+                .description("Loads committed together in one transaction (GROUP_COMMIT mode)")
+                .register(meterRegistry);
+        this.schedulerTick = Timer.builder("drone.scheduler.tick")
+                .description("Duration of one DroneStateScheduler tick")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.schedulerTransitions = Counter.builder("drone.scheduler.transitions")
+                .description("State transitions applied by the scheduler")
+                .register(meterRegistry);
+        Gauge.builder("drone.scheduler.lag", schedulerLagMillis, AtomicLong::get)
+                .description("How late the last scheduler tick started compared to its schedule")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+
+        for (Drone.DroneState state : Drone.DroneState.values()) {
+            Gauge.builder("drone.fleet.drones", fleetStateRegistry, registry -> registry.countInState(state))
+                    .description("Drones per state")
+                    .tag("state", state.name())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("drone.fleet.battery.average", fleetStateRegistry, FleetStateRegistry::averageBatteryCapacity)
+                .description("Average battery capacity across the fleet")
+                .baseUnit("percent")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("drone.catalog.cache.requests", medicationCatalogCache, MedicationCatalogCache::hitCount)
+                .description("Medication catalog lookups by cache result")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("drone.catalog.cache.requests", medicationCatalogCache, MedicationCatalogCache::missCount)
+                .description("Medication catalog lookups by cache result")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("drone.catalog.cache.size", medicationCatalogCache, MedicationCatalogCache::size)
+                .description("Medications held in the catalog cache")
+                .register(meterRegistry);
+    }
+
+    public void loadSucceeded() {
+        loaded.increment();
+    }
+
+    public void weightLimitExceeded() {
+        weightLimitExceeded.increment();
+    }
+
+    public void batteryLow() {
+        batteryLow.increment();
+    }
+
+    public void loadBatch(int size) {
+        loadBatchSize.record(size);
+    }
+
+    public void schedulerTick(long durationNanos, int transitions, long lagMillis) {
+        schedulerTick.record(durationNanos, TimeUnit.NANOSECONDS);
+        schedulerTransitions.increment(transitions);
+        schedulerLagMillis.set(lagMillis);
+    }
+
+    public void admissionGate(AdmissionGate gate) {
+        Gauge.builder("drone.admission.in_flight", gate, AdmissionGate::inFlight)
+                .description("Requests holding a permit of the admission gate")
+                .tag("gate", gate.name())
+                .register(meterRegistry);
+        Gauge.builder("drone.admission.queued", gate, AdmissionGate::queued)
+                .description("Requests waiting for a permit of the admission gate")
+                .tag("gate", gate.name())
+                .register(meterRegistry);
+        FunctionCounter.builder("drone.admission.rejected", gate, AdmissionGate::rejectedCount)
+                .description("Requests turned away with a 429 by the admission gate")
+                .tag("gate", gate.name())
+                .register(meterRegistry);
+        for (boolean admitted : new boolean[]{true, false}) {
+            admissionWaits.put(gate.name() + admitted, Timer.builder("drone.admission.wait")
+                    .description("Time spent waiting for a permit of the admission gate")
+                    .tag("gate", gate.name())
+                    .tag("outcome", admitted ? "admitted" : "rejected")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    public void admissionWait(String gate, long waitNanos, boolean admitted) {
+        Timer timer = admissionWaits.get(gate + admitted);
+        if (timer != null) {
+            timer.record(waitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Counter loadOutcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("drone.loads")
+                .description("Load requests by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
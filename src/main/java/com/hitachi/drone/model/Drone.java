@@ -1,17 +1,32 @@
 package com.hitachi.drone.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.hitachi.drone.registry.FleetStateRegistryListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.ColumnDefault;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 @Data
 @Entity
-@Table(name = "Drone")
+// the fleet filters of GET v1/drone/view (see DroneSpecifications); state leads its index so the
+// scheduler's "where state = ? and id between ..." updates use it too
+@Table(name = "Drone",
+        uniqueConstraints = @UniqueConstraint(name = "uk_drone_serial_number", columnNames = "serial_number"),
+        indexes = {
+                @Index(name = "idx_drone_state_battery", columnList = "state, battery_capacity"),
+                @Index(name = "idx_drone_battery", columnList = "battery_capacity"),
+                @Index(name = "idx_drone_model", columnList = "model")
+        })
+@EntityListeners(FleetStateRegistryListener.class)
 public class Drone {
 
     @Id
@@ -38,12 +53,93 @@ public class Drone {
     @Enumerated(EnumType.STRING)
     private DroneState state;
 
-    @OneToMany(mappedBy = "drone", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    // when the drone entered its current state, the transition timers are rebuilt from it after a restart
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Instant stateChangedAt;
+
+    @ColumnDefault("0")
+    private double payloadWeight; // in grams, running total of the medications currently loaded
+
+    // number of payload lines (distinct medications) loaded
+    // -1 marks rows created before the running totals existed, see DroneRepository.backfillPayloadTotals
+    @ColumnDefault("-1")
+    private int payloadItemCount;
+
+    // optimistic lock: bumped by every entity save and by the bulk scheduler updates
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
+    @OneToMany(mappedBy = "drone", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonManagedReference // Manage serialization from Drone side
-    private List<Medication> medications = new ArrayList<>();
+    private List<PayloadItem> payloadItems = new ArrayList<>();
+
+    public void setState(DroneState state) {
+        if (this.state != state) {
+            stateChangedAt = Instant.now();
+        }
+        this.state = state;
+    }
 
     public double getTotalMedicationWeight() {
-        return medications.stream().mapToDouble(Medication::getWeight).sum();
+        return payloadWeight;
+    }
+
+    /*
+    * Adds units of a catalog medication to the payload and keeps the running totals in step: the line
+    * of that medication grows, or a new line is started (persisted with the drone).
+    * Reads the payload lines, which are bounded by the number of distinct medications.*/
+    public PayloadItem addItem(Long medicationId, double unitWeight, int quantity) {
+        PayloadItem line = null;
+        for (PayloadItem item : payloadItems) {
+            if (Objects.equals(item.getMedicationId(), medicationId)) {
+                line = item;
+                break;
+            }
+        }
+        if (line == null) {
+            line = new PayloadItem(this, medicationId);
+            payloadItems.add(line);
+            payloadItemCount = Math.max(payloadItemCount, 0) + 1;
+        }
+        line.setQuantity(line.getQuantity() + quantity);
+        line.setWeight(line.getWeight() + unitWeight * quantity);
+        payloadWeight += unitWeight * quantity;
+        return line;
+    }
+
+    /*
+    * Delivery finished: nothing is carried anymore. The payload lines themselves are deleted with
+    * PayloadItemRepository (or by DroneWriteBehind), without loading them first.*/
+    public void clearPayload() {
+        payloadWeight = 0;
+        payloadItemCount = 0;
+    }
+
+    /*
+    * A detached copy, payload lines included, for handing the drone to a caller that must not share
+    * the instance with others. The lines must have been read already.*/
+    public Drone snapshot() {
+        Drone copy = new Drone();
+        copy.id = id;
+        copy.serialNumber = serialNumber;
+        copy.model = model;
+        copy.weightLimit = weightLimit;
+        copy.batteryCapacity = batteryCapacity;
+        copy.state = state;
+        copy.stateChangedAt = stateChangedAt;
+        copy.payloadWeight = payloadWeight;
+        copy.payloadItemCount = payloadItemCount;
+        copy.version = version;
+        for (PayloadItem item : payloadItems) {
+            PayloadItem line = new PayloadItem(copy, item.getMedicationId());
+            line.setId(item.getId());
+            line.setQuantity(item.getQuantity());
+            line.setWeight(item.getWeight());
+            copy.payloadItems.add(line);
+        }
+        return copy;
     }
 
     @Override
@@ -54,8 +150,9 @@ public class Drone {
                 ", weightLimit=" + weightLimit +
                 ", batteryCapacity=" + batteryCapacity +
                 ", state='" + state + '\'' +
-                // Avoid printing medications to prevent recursion
-                ", medication=" + medications +
+                // Avoid printing payload lines to prevent recursion and lazy loading
+                ", payloadWeight=" + payloadWeight +
+                ", payloadItemCount=" + payloadItemCount +
                 '}';
     }
 
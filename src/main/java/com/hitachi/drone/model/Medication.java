@@ -1,22 +1,30 @@
 package com.hitachi.drone.model;
 
-import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.hitachi.drone.repository.MedicationIdSequence;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Immutable
 @Table(name = "Medication")
 public class Medication {
 
+    /*
+    * NOTE
+    * Catalog entry only. What a drone carries is a PayloadItem referencing it, loads never write here.*/
+    // sequence instead of IDENTITY so that catalog inserts can be JDBC batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = MedicationIdSequence.NAME)
+    @SequenceGenerator(name = MedicationIdSequence.NAME, sequenceName = MedicationIdSequence.NAME,
+            allocationSize = MedicationIdSequence.ALLOCATION_SIZE)
     private Long id;
 
     @NotNull
@@ -34,11 +42,6 @@ public class Medication {
 
     private String image;
 
-    @ManyToOne
-    @JoinColumn(name = "drone_id")
-    @JsonBackReference // Prevent recursion in JSON
-    private Drone drone;
-
     @Override
     public String toString() {
         return "Medication{" +
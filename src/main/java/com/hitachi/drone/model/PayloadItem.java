@@ -0,0 +1,54 @@
+package com.hitachi.drone.model;
+
+import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/*
+* One line of a drone's payload: how many units of a catalog Medication it carries and what they weigh.
+* A drone has at most one line per medication, loading it again only raises the quantity, and the
+* lines are deleted when the delivery finishes.*/
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "payload_item", uniqueConstraints = @UniqueConstraint(columnNames = {"drone_id", "medication_id"}))
+public class PayloadItem {
+
+    public static final String SEQUENCE = "payload_item_seq";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SEQUENCE)
+    @SequenceGenerator(name = SEQUENCE, sequenceName = SEQUENCE, allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "drone_id", nullable = false)
+    @JsonBackReference
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Drone drone;
+
+    @Column(name = "medication_id", nullable = false)
+    private Long medicationId;
+
+    // only for queries that need the catalog columns, loading a payload never reads the catalog
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "medication_id", insertable = false, updatable = false)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Medication medication;
+
+    private int quantity;
+
+    private double weight; // in grams, all units of the line
+
+    public PayloadItem(Drone drone, Long medicationId) {
+        this.drone = drone;
+        this.medicationId = medicationId;
+    }
+}
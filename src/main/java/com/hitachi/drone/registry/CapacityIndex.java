@@ -0,0 +1,141 @@
+package com.hitachi.drone.registry;
+
+import com.hitachi.drone.model.Drone;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/*
+* Drones that can take a payload right now, by remaining capacity (weight limit minus payload weight).
+* A drone is eligible while it is IDLE or LOADING with more than MIN_BATTERY percent battery.
+* Two views of the same values, both updated in O(log n) per drone:
+* - a sorted set by remaining capacity, for best fit (the tightest drones that still fit)
+* - a max tree over drone ids, for first fit (the lowest ids that fit)
+* Not thread safe: FleetStateRegistry only touches it under its own lock.*/
+class CapacityIndex {
+
+    static final int MIN_BATTERY = 25;
+
+    private static final double NOT_INDEXED = Double.NEGATIVE_INFINITY;
+    private static final Comparator<Slot> TIGHTEST_FIRST =
+            Comparator.comparingDouble(Slot::remaining).thenComparingInt(Slot::droneId);
+
+    private final TreeSet<Slot> byRemaining = new TreeSet<>(TIGHTEST_FIRST);
+    // leaves hold the remaining capacity of each drone id (NOT_INDEXED when ineligible), inner nodes their max
+    private double[] tree;
+    private int leaves;
+
+    CapacityIndex(int capacity) {
+        leaves = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        tree = new double[2 * leaves];
+        Arrays.fill(tree, NOT_INDEXED);
+    }
+
+    static boolean eligible(Drone.DroneState state, int batteryCapacity) {
+        return (state == Drone.DroneState.IDLE || state == Drone.DroneState.LOADING) && batteryCapacity > MIN_BATTERY;
+    }
+
+    void update(int droneId, Drone.DroneState state, int batteryCapacity, double weightLimit, double payloadWeight) {
+        double remaining = eligible(state, batteryCapacity) ? weightLimit - payloadWeight : NOT_INDEXED;
+        if (droneId >= leaves) {
+            if (remaining == NOT_INDEXED) {
+                return;
+            }
+            grow(droneId);
+        }
+        double previous = tree[leaves + droneId];
+        if (previous == remaining) {
+            return;
+        }
+        if (previous != NOT_INDEXED) {
+            byRemaining.remove(new Slot(previous, droneId));
+        }
+        if (remaining != NOT_INDEXED) {
+            byRemaining.add(new Slot(remaining, droneId));
+        }
+        set(droneId, remaining);
+    }
+
+    void remove(int droneId) {
+        if (droneId < leaves && tree[leaves + droneId] != NOT_INDEXED) {
+            byRemaining.remove(new Slot(tree[leaves + droneId], droneId));
+            set(droneId, NOT_INDEXED);
+        }
+    }
+
+    double remaining(int droneId) {
+        return droneId < leaves ? tree[leaves + droneId] : NOT_INDEXED;
+    }
+
+    // up to limit drones with room for weight, least room first
+    int[] bestFit(double weight, int limit) {
+        int[] found = new int[Math.min(limit, byRemaining.size())];
+        int count = 0;
+        Iterator<Slot> fitting = byRemaining.tailSet(new Slot(weight, Integer.MIN_VALUE), true).iterator();
+        while (count < found.length && fitting.hasNext()) {
+            found[count++] = fitting.next().droneId();
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    // up to limit drones with room for weight, lowest id first
+    int[] firstFit(double weight, int limit) {
+        int[] found = new int[Math.min(limit, byRemaining.size())];
+        int count = 0;
+        int from = 0;
+        while (count < found.length) {
+            int droneId = firstAtLeast(1, 0, leaves - 1, from, weight);
+            if (droneId < 0) {
+                break;
+            }
+            found[count++] = droneId;
+            from = droneId + 1;
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    int size() {
+        return byRemaining.size();
+    }
+
+    // lowest id >= from in the subtree of node (covering ids lo..hi) with at least weight left, or -1
+    private int firstAtLeast(int node, int lo, int hi, int from, double weight) {
+        if (hi < from || tree[node] < weight) {
+            return -1;
+        }
+        if (lo == hi) {
+            return lo;
+        }
+        int mid = (lo + hi) >>> 1;
+        int left = firstAtLeast(2 * node, lo, mid, from, weight);
+        return left >= 0 ? left : firstAtLeast(2 * node + 1, mid + 1, hi, from, weight);
+    }
+
+    private void set(int droneId, double remaining) {
+        int node = leaves + droneId;
+        tree[node] = remaining;
+        for (node >>= 1; node > 0; node >>= 1) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    private void grow(int droneId) {
+        int newLeaves = leaves;
+        while (newLeaves <= droneId) {
+            newLeaves <<= 1;
+        }
+        double[] newTree = new double[2 * newLeaves];
+        Arrays.fill(newTree, NOT_INDEXED);
+        System.arraycopy(tree, leaves, newTree, newLeaves, leaves);
+        for (int node = newLeaves - 1; node > 0; node--) {
+            newTree[node] = Math.max(newTree[2 * node], newTree[2 * node + 1]);
+        }
+        tree = newTree;
+        leaves = newLeaves;
+    }
+
+    private record Slot(double remaining, int droneId) {
+    }
+}
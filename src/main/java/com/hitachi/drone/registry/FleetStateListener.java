@@ -0,0 +1,19 @@
+package com.hitachi.drone.registry;
+
+import com.hitachi.drone.model.Drone;
+
+/*
+* Notified by FleetStateRegistry after a known drone moved to another state, on the thread that
+* applied the change (after commit for entity writes). Drones the registry sees for the first
+* time, e.g. while it is being loaded, do not produce a notification, and neither does a drone
+* reconciled with its database row.
+* batteryCapacity is the drone's battery as the change left it.*/
+@FunctionalInterface
+public interface FleetStateListener {
+
+    void stateChanged(long droneId, Drone.DroneState from, Drone.DroneState to, int batteryCapacity);
+
+    // a known drone's payload weight changed while it stayed in the same state, e.g. one more load
+    default void payloadChanged(long droneId, Drone.DroneState state, double payloadWeight) {
+    }
+}
@@ -0,0 +1,439 @@
+package com.hitachi.drone.registry;
+
+import com.hitachi.drone.dto.DroneCandidate;
+import com.hitachi.drone.model.Drone;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+* In-memory view of the fleet: state, battery, weight limit and payload weight of every drone.
+* Values are kept in parallel primitive arrays indexed by drone id, so a lookup is a couple of
+* array reads and never touches the database or allocates a Drone.
+* Writes come from FleetStateRegistryListener (every Drone insert/update/delete) and from the
+* bulk scheduler transitions, which bypass the entity lifecycle. Each write also moves the drone in
+* the CapacityIndex behind candidates().
+* Entity writes carry the row's @Version: their after-commit callbacks can run out of commit order,
+* and one older than the version the registry already has is ignored.
+* The arrays never grow past drone.registry.max-id. A drone with a larger id is not held: status reads
+* fall back to the database, and it is left out of candidates and of the registry-driven scheduler modes.*/
+@Component
+public class FleetStateRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(FleetStateRegistry.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte ABSENT = 0;
+    // a write that comes without the row's version, always applied
+    private static final long UNVERSIONED = -1;
+    private static final Drone.DroneState[] STATES = Drone.DroneState.values();
+
+    // 29 bytes of arrays per id up to the largest one held, about 30 MB at the default
+    @Value("${drone.registry.max-id:1048576}")
+    private long maxId = 1_048_576;
+
+    private final StampedLock lock = new StampedLock();
+    private final AtomicBoolean beyondMaxIdReported = new AtomicBoolean();
+
+    // state ordinal + 1, ABSENT when the id is not a known drone
+    private byte[] states = new byte[INITIAL_CAPACITY];
+    private int[] batteryCapacities = new int[INITIAL_CAPACITY];
+    private double[] weightLimits = new double[INITIAL_CAPACITY];
+    private double[] payloadWeights = new double[INITIAL_CAPACITY];
+    // newest row version stored, 0 when only unversioned writes were seen
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int size;
+
+    // running aggregates for the fleet gauges, indexed by state code
+    private final int[] stateCounts = new int[STATES.length + 2];
+    private long batteryTotal;
+
+    private final CapacityIndex capacityIndex = new CapacityIndex(INITIAL_CAPACITY);
+
+    private final List<FleetStateListener> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void start() {
+        if (maxId < 0 || maxId >= Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("drone.registry.max-id must be between 0 and " + (Integer.MAX_VALUE - 9)
+                    + ", was " + maxId);
+        }
+    }
+
+    public void addListener(FleetStateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void put(long id, Drone.DroneState state, int batteryCapacity, double weightLimit, double payloadWeight) {
+        store(id, UNVERSIONED, state, batteryCapacity, weightLimit, payloadWeight, true);
+    }
+
+    public void put(Drone drone) {
+        if (drone.getId() != null) {
+            store(drone.getId(), drone.getVersion(), drone.getState(), drone.getBatteryCapacity(),
+                    drone.getWeightLimit(), drone.getTotalMedicationWeight(), true);
+        }
+    }
+
+    /*
+    * Takes a drone's row as read back from the database, where the registry ran ahead of it or missed a
+    * change made elsewhere. The difference is a correction, not a transition, so no listener hears of it.*/
+    public void reconcile(Drone drone) {
+        if (drone.getId() != null) {
+            store(drone.getId(), drone.getVersion(), drone.getState(), drone.getBatteryCapacity(),
+                    drone.getWeightLimit(), drone.getTotalMedicationWeight(), false);
+        }
+    }
+
+    private void store(long id, long version, Drone.DroneState state, int batteryCapacity, double weightLimit,
+                       double payloadWeight, boolean notify) {
+        if (id < 0) {
+            return;
+        }
+        if (id > maxId) {
+            if (beyondMaxIdReported.compareAndSet(false, true)) {
+                logger.warn("Drone {} is beyond drone.registry.max-id {}; such drones are read from the database "
+                        + "and left out of candidates and registry-driven scheduling", id, maxId);
+            }
+            return;
+        }
+        int index = (int) id;
+        byte previous;
+        double previousPayload;
+        long stamp = lock.writeLock();
+        try {
+            ensureCapacity(index);
+            if (version != UNVERSIONED) {
+                if (states[index] != ABSENT && version < versions[index]) {
+                    return;
+                }
+                versions[index] = version;
+            }
+            previous = states[index];
+            previousPayload = payloadWeights[index];
+            if (previous == ABSENT) {
+                size++;
+            } else {
+                stateCounts[states[index]]--;
+                batteryTotal -= batteryCapacities[index];
+            }
+            states[index] = encode(state);
+            stateCounts[states[index]]++;
+            batteryCapacities[index] = batteryCapacity;
+            batteryTotal += batteryCapacity;
+            weightLimits[index] = weightLimit;
+            payloadWeights[index] = payloadWeight;
+            capacityIndex.update(index, state, batteryCapacity, weightLimit, payloadWeight);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (!notify || previous == ABSENT) {
+            return;
+        }
+        if (previous != encode(state)) {
+            notifyListeners(id, decode(previous), state, batteryCapacity);
+        } else if (previousPayload != payloadWeight) {
+            for (FleetStateListener listener : listeners) {
+                listener.payloadChanged(id, state, payloadWeight);
+            }
+        }
+    }
+
+    public void remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            if (id >= 0 && id < states.length && states[(int) id] != ABSENT) {
+                stateCounts[states[(int) id]]--;
+                batteryTotal -= batteryCapacities[(int) id];
+                states[(int) id] = ABSENT;
+                versions[(int) id] = 0;
+                size--;
+                capacityIndex.remove((int) id);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // a reported battery level; false when the drone is not known
+    public boolean updateBatteryCapacity(long id, int batteryCapacity) {
+        long stamp = lock.writeLock();
+        try {
+            if (id < 0 || id >= states.length || states[(int) id] == ABSENT) {
+                return false;
+            }
+            batteryTotal += batteryCapacity - batteryCapacities[(int) id];
+            batteryCapacities[(int) id] = batteryCapacity;
+            reindex((int) id);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /*
+    * Mirrors a set-based state transition on every known drone in [fromId, toId] that is in the
+    * "from" state. Returns the number of drones changed.*/
+    public int applyTransition(Drone.DroneState from, Drone.DroneState to, int batteryDrain, boolean clearPayload,
+                               long fromId, long toId) {
+        return applyTransition(from, to, batteryDrain, clearPayload, fromId, toId, null);
+    }
+
+    // same, and hands every changed drone with its new battery capacity to the sink once the lock is released
+    public int applyTransition(Drone.DroneState from, Drone.DroneState to, int batteryDrain, boolean clearPayload,
+                               long fromId, long toId, TransitionSink sink) {
+        byte fromCode = encode(from);
+        byte toCode = encode(to);
+        int changed = 0;
+        // only collected when someone is told about the changes
+        boolean report = sink != null || !listeners.isEmpty();
+        int[] changedIds = report ? new int[16] : null;
+        int[] changedBatteries = report ? new int[16] : null;
+        long stamp = lock.writeLock();
+        try {
+            int last = (int) Math.min(toId, states.length - 1L);
+            for (int index = (int) Math.max(fromId, 0); index <= last; index++) {
+                if (states[index] == fromCode) {
+                    states[index] = toCode;
+                    batteryCapacities[index] -= batteryDrain;
+                    batteryTotal -= batteryDrain;
+                    if (clearPayload) {
+                        payloadWeights[index] = 0;
+                    }
+                    reindex(index);
+                    if (report) {
+                        if (changed == changedIds.length) {
+                            changedIds = Arrays.copyOf(changedIds, changed * 2);
+                            changedBatteries = Arrays.copyOf(changedBatteries, changed * 2);
+                        }
+                        changedIds[changed] = index;
+                        changedBatteries[changed] = batteryCapacities[index];
+                    }
+                    changed++;
+                }
+            }
+            stateCounts[fromCode] -= changed;
+            stateCounts[toCode] += changed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (int i = 0; report && i < changed; i++) {
+            if (sink != null) {
+                sink.changed(changedIds[i], changedBatteries[i]);
+            }
+            notifyListeners(changedIds[i], from, to, changedBatteries[i]);
+        }
+        return changed;
+    }
+
+    public boolean contains(long id) {
+        return stateCode(id) != ABSENT;
+    }
+
+    public Drone.DroneState getState(long id) {
+        return decode(stateCode(id));
+    }
+
+    public int getBatteryCapacity(long id) {
+        return (int) readNumber(id, Field.BATTERY);
+    }
+
+    public double getWeightLimit(long id) {
+        return readNumber(id, Field.WEIGHT_LIMIT);
+    }
+
+    public double getPayloadWeight(long id) {
+        return readNumber(id, Field.PAYLOAD);
+    }
+
+    /*
+    * Same rule as DroneService.viewDroneStatus: the current payload does not exceed the weight limit.
+    * Empty when the drone is not known to the registry, so the caller can fall back to the database.*/
+    public Optional<Boolean> availableForLoading(long id) {
+        if (id < 0) {
+            return Optional.empty();
+        }
+        long stamp = lock.tryOptimisticRead();
+        boolean known = false;
+        boolean available = false;
+        byte[] currentStates = states;
+        double[] currentLimits = weightLimits;
+        double[] currentPayloads = payloadWeights;
+        if (id < currentStates.length && currentStates[(int) id] != ABSENT) {
+            known = true;
+            available = currentPayloads[(int) id] <= currentLimits[(int) id];
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                known = id < states.length && states[(int) id] != ABSENT;
+                available = known && payloadWeights[(int) id] <= weightLimits[(int) id];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return known ? Optional.of(available) : Optional.empty();
+    }
+
+    /*
+    * Up to limit drones that are IDLE or LOADING with more than 25% battery and at least weight grams
+    * of room left. BEST: least room first, so big payloads keep the roomy drones; FIRST: lowest id first.*/
+    public List<DroneCandidate> candidates(double weight, int limit, Fit fit) {
+        long stamp = lock.readLock();
+        try {
+            int[] droneIds = fit == Fit.FIRST ? capacityIndex.firstFit(weight, limit) : capacityIndex.bestFit(weight, limit);
+            List<DroneCandidate> candidates = new ArrayList<>(droneIds.length);
+            for (int droneId : droneIds) {
+                candidates.add(new DroneCandidate(droneId, decode(states[droneId]), batteryCapacities[droneId],
+                        weightLimits[droneId], capacityIndex.remaining(droneId)));
+            }
+            return candidates;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int countInState(Drone.DroneState state) {
+        long stamp = lock.readLock();
+        try {
+            return stateCounts[encode(state)];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public double averageBatteryCapacity() {
+        long stamp = lock.readLock();
+        try {
+            return size == 0 ? 0 : (double) batteryTotal / size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // every known drone in id order, read under one lock: the visitor must not call back into the registry
+    public void forEach(DroneVisitor visitor) {
+        long stamp = lock.readLock();
+        try {
+            for (int index = 0; index < states.length; index++) {
+                if (states[index] != ABSENT) {
+                    visitor.visit(index, decode(states[index]), batteryCapacities[index], weightLimits[index],
+                            payloadWeights[index]);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void notifyListeners(long id, Drone.DroneState from, Drone.DroneState to, int batteryCapacity) {
+        for (FleetStateListener listener : listeners) {
+            listener.stateChanged(id, from, to, batteryCapacity);
+        }
+    }
+
+    private byte stateCode(long id) {
+        if (id < 0) {
+            return ABSENT;
+        }
+        long stamp = lock.tryOptimisticRead();
+        byte[] current = states;
+        byte code = id < current.length ? current[(int) id] : ABSENT;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                code = id < states.length ? states[(int) id] : ABSENT;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return code;
+    }
+
+    private double readNumber(long id, Field field) {
+        long stamp = lock.readLock();
+        try {
+            if (id < 0 || id >= states.length || states[(int) id] == ABSENT) {
+                throw new IllegalArgumentException("Drone " + id + " is not registered.");
+            }
+            switch (field) {
+                case BATTERY:
+                    return batteryCapacities[(int) id];
+                case WEIGHT_LIMIT:
+                    return weightLimits[(int) id];
+                default:
+                    return payloadWeights[(int) id];
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void reindex(int index) {
+        capacityIndex.update(index, decode(states[index]), batteryCapacities[index], weightLimits[index],
+                payloadWeights[index]);
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < states.length) {
+            return;
+        }
+        int newLength = (int) Math.min(Math.max(index + 1L, states.length * 2L), maxId + 1);
+        states = Arrays.copyOf(states, newLength);
+        batteryCapacities = Arrays.copyOf(batteryCapacities, newLength);
+        weightLimits = Arrays.copyOf(weightLimits, newLength);
+        payloadWeights = Arrays.copyOf(payloadWeights, newLength);
+        versions = Arrays.copyOf(versions, newLength);
+    }
+
+    private static byte encode(Drone.DroneState state) {
+        // a drone without a state is still registered, it just has no state to report
+        return state == null ? (byte) (STATES.length + 1) : (byte) (state.ordinal() + 1);
+    }
+
+    private static Drone.DroneState decode(byte code) {
+        if (code == ABSENT || code > STATES.length) {
+            return null;
+        }
+        return STATES[code - 1];
+    }
+
+    @FunctionalInterface
+    public interface DroneVisitor {
+        void visit(long droneId, Drone.DroneState state, int batteryCapacity, double weightLimit, double payloadWeight);
+    }
+
+    @FunctionalInterface
+    public interface TransitionSink {
+        void changed(long droneId, int batteryCapacity);
+    }
+
+    public enum Fit {
+        BEST,
+        FIRST
+    }
+
+    private enum Field {
+        BATTERY,
+        WEIGHT_LIMIT,
+        PAYLOAD
+    }
+}
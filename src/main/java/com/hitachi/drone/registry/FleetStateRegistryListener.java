@@ -0,0 +1,53 @@
+package com.hitachi.drone.registry;
+
+import com.hitachi.drone.model.Drone;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+* JPA entity listener that keeps FleetStateRegistry in line with every Drone written through
+* DroneRepository. Inside a transaction the registry is only touched after commit, so a rolled
+* back write never becomes visible to status reads. The drone goes in with its @Version: two commits
+* of the same drone can run their callbacks in either order, and the older one is then ignored.*/
+@Component
+public class FleetStateRegistryListener {
+
+    private final FleetStateRegistry fleetStateRegistry;
+
+    public FleetStateRegistryListener(FleetStateRegistry fleetStateRegistry) {
+        this.fleetStateRegistry = fleetStateRegistry;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onWrite(Drone drone) {
+        if (drone.getId() != null) {
+            afterCommit(() -> fleetStateRegistry.put(drone));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Drone drone) {
+        if (drone.getId() != null) {
+            long id = drone.getId();
+            afterCommit(() -> fleetStateRegistry.remove(id));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package com.hitachi.drone.registry;
+
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.repository.DroneRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/*
+* Warms FleetStateRegistry from the database once on startup, using a column projection instead
+* of loading every Drone with its medications.*/
+@Component
+public class FleetStateRegistryLoader {
+    private static final Logger logger = LoggerFactory.getLogger(FleetStateRegistryLoader.class);
+
+    private final DroneRepository droneRepository;
+    private final FleetStateRegistry fleetStateRegistry;
+
+    public FleetStateRegistryLoader(DroneRepository droneRepository, FleetStateRegistry fleetStateRegistry) {
+        this.droneRepository = droneRepository;
+        this.fleetStateRegistry = fleetStateRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (Object[] row : droneRepository.findFleetStateSnapshot()) {
+            fleetStateRegistry.put((Long) row[0], (Drone.DroneState) row[1], (Integer) row[2],
+                    (Double) row[3], ((Number) row[4]).doubleValue());
+        }
+        logger.info("Fleet state registry loaded with {} drones", fleetStateRegistry.size());
+    }
+}
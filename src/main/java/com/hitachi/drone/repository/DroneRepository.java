@@ -1,10 +1,95 @@
 package com.hitachi.drone.repository;
 
+import com.hitachi.drone.dto.DroneStatusView;
 import com.hitachi.drone.model.Drone;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface DroneRepository extends JpaRepository<Drone, String> {
+public interface DroneRepository extends JpaRepository<Drone, Long>, JpaSpecificationExecutor<Drone> {
+
+    /*
+    * id, state, batteryCapacity, weightLimit, payload weight of every drone, without hydrating entities.*/
+    @Query("select d.id, d.state, d.batteryCapacity, d.weightLimit, d.payloadWeight from Drone d")
+    List<Object[]> findFleetStateSnapshot();
+
+    @Query("select new com.hitachi.drone.dto.DroneStatusView(d.id, d.state, d.batteryCapacity, d.weightLimit, d.payloadWeight) " +
+            "from Drone d where d.id = :id")
+    Optional<DroneStatusView> findStatusById(@Param("id") Long id);
+
+    // bumped by every change to the drone or its payload, used as the ETag of its read endpoints
+    @Query("select d.version from Drone d where d.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /*
+    * One-off computation of the running payload totals for rows that predate them (payloadItemCount = -1).*/
+    @Transactional
+    @Modifying
+    @Query("update Drone d set " +
+            "d.payloadWeight = (select coalesce(sum(p.weight), 0) from PayloadItem p where p.drone = d), " +
+            "d.payloadItemCount = (select count(p) from PayloadItem p where p.drone = d) " +
+            "where d.payloadItemCount < 0")
+    int backfillPayloadTotals();
+
+    // keyset page: drones after the given id, in id order
+    List<Drone> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /*
+    * Whole fleet as a forward-only cursor, payload lines fetched in the same rows.
+    * Must be consumed inside a transaction and closed.*/
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "256"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select d from Drone d left join fetch d.payloadItems order by d.id")
+    Stream<Drone> streamAllWithPayloadItems();
+
+    @Query("select min(d.id) from Drone d")
+    Long findMinId();
+
+    @Query("select max(d.id) from Drone d")
+    Long findMaxId();
+
+    List<Drone> findByIdBetween(Long fromId, Long toId);
+
+    // served by the unique index on serial_number
+    boolean existsBySerialNumber(String serialNumber);
+
+    /*
+    * Set-based transition of every drone in [fromId, toId] that is currently in the given state.
+    * Drones in any other state are not touched.*/
+    @Modifying
+    @Query("update Drone d set d.state = :to, d.stateChangedAt = instant, d.version = d.version + 1 " +
+            "where d.state = :from and d.id between :fromId and :toId")
+    int transitionState(@Param("from") Drone.DroneState from, @Param("to") Drone.DroneState to,
+                        @Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /*
+    * DELIVERING -> DELIVERED: drains the battery and empties the payload totals in the same statement.*/
+    @Modifying
+    @Query("update Drone d set d.state = com.hitachi.drone.model.Drone.DroneState.DELIVERED, d.stateChangedAt = instant, " +
+            "d.batteryCapacity = d.batteryCapacity - :drain, d.payloadWeight = 0, d.payloadItemCount = 0, " +
+            "d.version = d.version + 1 " +
+            "where d.state = com.hitachi.drone.model.Drone.DroneState.DELIVERING and d.id between :fromId and :toId")
+    int completeDeliveries(@Param("drain") int drain, @Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /*
+    * id, state and stateChangedAt of every drone in one of the given states.*/
+    @Query("select d.id, d.state, d.stateChangedAt from Drone d where d.state in :states")
+    List<Object[]> findStateTimestamps(@Param("states") Collection<Drone.DroneState> states);
 
 }
@@ -0,0 +1,42 @@
+package com.hitachi.drone.repository;
+
+import com.hitachi.drone.dto.DroneFilter;
+import com.hitachi.drone.model.Drone;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+* Where clauses for DroneRepository's Specification queries. Only the criteria that are set become
+* predicates, so the database can pick the matching index on Drone instead of scanning for
+* "param is null or column = param".*/
+public final class DroneSpecifications {
+
+    private DroneSpecifications() {
+    }
+
+    // after: keyset cursor, only drones with a greater id
+    public static Specification<Drone> matching(DroneFilter filter, Long after) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getState() != null) {
+                predicates.add(cb.equal(root.get("state"), filter.getState()));
+            }
+            if (filter.getMinBattery() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("batteryCapacity"), filter.getMinBattery()));
+            }
+            if (filter.getModel() != null) {
+                predicates.add(cb.equal(root.get("model"), filter.getModel()));
+            }
+            if (filter.getSerialNumber() != null) {
+                predicates.add(cb.equal(root.get("serialNumber"), filter.getSerialNumber()));
+            }
+            if (after != null) {
+                predicates.add(cb.greaterThan(root.get("id"), after));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package com.hitachi.drone.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/*
+* The default profile keeps its schema with ddl-auto=update, so V2__payload_items.sql never runs there and
+* a database from before payload lines keeps the medication rows loaded onto drones (medication.drone_id).
+* On startup they get the same treatment V2 gives them: folded into payload_item lines of the lowest id
+* that has their code, the drone's running totals recomputed from its lines, and the copies removed from
+* the catalog. The column itself stays, nothing writes it anymore; with Flyway it is gone and this does nothing.*/
+@Component
+public class LegacyPayloadBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(LegacyPayloadBackfill.class);
+
+    private static final String LOADED_LINES =
+            "select m.drone_id, c.id as medication_id, sum(m.quantity) as quantity, sum(m.weight) as weight " +
+            "from medication m join (select code, min(id) as id from medication group by code) c on c.code = m.code " +
+            "where m.drone_id is not null group by m.drone_id, c.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    // a JPA transaction manager: the schema is up to date by the time this bean is created
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyPayloadBackfill(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /*
+    * Returns the number of payload lines started or grown.*/
+    @PostConstruct
+    public int backfill() {
+        Integer legacyColumn = jdbcTemplate.queryForObject("select count(*) from information_schema.columns " +
+                "where table_schema = current_schema and upper(table_name) = 'MEDICATION' " +
+                "and upper(column_name) = 'DRONE_ID'", Integer.class);
+        if (legacyColumn == null || legacyColumn == 0) {
+            return 0;
+        }
+        Integer lines = transactionTemplate.execute(status -> {
+            // loads made since the upgrade may already have a line for the same medication
+            int merged = jdbcTemplate.update("merge into payload_item p using (" + LOADED_LINES + ") line " +
+                    "on p.drone_id = line.drone_id and p.medication_id = line.medication_id " +
+                    "when matched then update set quantity = p.quantity + line.quantity, weight = p.weight + line.weight " +
+                    "when not matched then insert (id, drone_id, medication_id, quantity, weight) " +
+                    "values (next value for payload_item_seq, line.drone_id, line.medication_id, line.quantity, line.weight)");
+            if (merged == 0) {
+                return 0;
+            }
+            jdbcTemplate.update("update drone set " +
+                    "payload_weight = (select coalesce(sum(p.weight), 0) from payload_item p where p.drone_id = drone.id), " +
+                    "payload_item_count = (select count(*) from payload_item p where p.drone_id = drone.id), " +
+                    "version = version + 1 " +
+                    "where id in (select drone_id from medication where drone_id is not null)");
+            jdbcTemplate.update("delete from medication where drone_id is not null " +
+                    "and id not in (select min(id) from medication group by code)");
+            jdbcTemplate.update("update medication set drone_id = null where drone_id is not null");
+            return merged;
+        });
+        if (lines != null && lines > 0) {
+            logger.info("Moved the medications loaded before payload lines existed into {} payload lines", lines);
+        }
+        return lines == null ? 0 : lines;
+    }
+}
@@ -0,0 +1,41 @@
+package com.hitachi.drone.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/*
+* Medication ids come from a pooled sequence (so Hibernate can batch inserts) instead of the identity
+* column the table was created with. Rows inserted before the switch still own the low ids, so the
+* sequence is moved past them on startup.*/
+@Component
+public class MedicationIdSequence {
+    private static final Logger logger = LoggerFactory.getLogger(MedicationIdSequence.class);
+
+    public static final String NAME = "medication_seq";
+    public static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MedicationIdSequence(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void align() {
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from Medication", Long.class);
+        // an empty table needs nothing, and reading the sequence would use up the first block of ids
+        if (maxId == null || maxId == 0) {
+            return;
+        }
+        Long next = jdbcTemplate.queryForObject("select next value for " + NAME, Long.class);
+        // pooled optimizer: the sequence value is the upper end of the next block of ids
+        if (next != null && next - ALLOCATION_SIZE < maxId) {
+            long restart = maxId + ALLOCATION_SIZE + 1;
+            jdbcTemplate.execute("alter sequence " + NAME + " restart with " + restart);
+            logger.info("Medication id sequence moved past existing ids, restarting at {}", restart);
+        }
+    }
+}
@@ -3,5 +3,6 @@ package com.hitachi.drone.repository;
 import com.hitachi.drone.model.Medication;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+// the medication catalog; what a drone carries is in PayloadItemRepository
 public interface MedicationRepository extends JpaRepository<Medication, Long> {
 }
@@ -0,0 +1,31 @@
+package com.hitachi.drone.repository;
+
+import com.hitachi.drone.dto.MedicationView;
+import com.hitachi.drone.model.PayloadItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface PayloadItemRepository extends JpaRepository<PayloadItem, Long> {
+
+    // the lines loaded on one drone with their catalog details, straight from the drone_id column
+    @Query("select new com.hitachi.drone.dto.MedicationView(m.id, m.name, p.weight, p.quantity, m.code, m.image) " +
+            "from PayloadItem p join p.medication m where p.drone.id = :droneId order by p.id")
+    List<MedicationView> findViewsByDroneId(@Param("droneId") Long droneId);
+
+    // delivery finished; must run inside a transaction
+    @Modifying
+    @Query("delete from PayloadItem p where p.drone.id = :droneId")
+    int deleteByDroneId(@Param("droneId") Long droneId);
+
+    /*
+    * The lines of every drone in [fromId, toId] that is DELIVERING, deleted in the transaction that
+    * moves those drones to DELIVERED (see DroneRepository.completeDeliveries).*/
+    @Modifying
+    @Query("delete from PayloadItem p where p.drone.id in (select d.id from Drone d " +
+            "where d.state = com.hitachi.drone.model.Drone.DroneState.DELIVERING and d.id between :fromId and :toId)")
+    int deleteDeliveringBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+}
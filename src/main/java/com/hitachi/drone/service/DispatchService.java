@@ -0,0 +1,313 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.catalog.CatalogEntry;
+import com.hitachi.drone.dto.DispatchResult;
+import com.hitachi.drone.dto.DroneAssignment;
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.exception.BatterLevelLowException;
+import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.PayloadItem;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+import com.hitachi.drone.writebehind.DroneWriteBehind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+* Spreads a wave of medication orders over the drones that can take them.
+* Candidates come from FleetStateRegistry and follow the loadMedication rules: LOADING, or IDLE
+* with more than 25% battery, and room left under the weight limit. Orders are packed best fit
+* decreasing (heaviest order first, into the drone it leaves the least room in), which fills drones
+* up instead of spreading a little over each. Every order is one payload line and is never split.
+* The whole wave is committed in one transaction; when a drone changed in the meantime, the drones of the
+* failed plan are read back into the registry and the wave is planned again from it.*/
+@Service
+public class DispatchService {
+    private static final Logger logger = LoggerFactory.getLogger(DispatchService.class);
+
+    private static final Comparator<Order> HEAVIEST_FIRST =
+            Comparator.comparingDouble(Order::weight).reversed().thenComparingInt(Order::index);
+
+    private final DroneServiceImpl droneService;
+    private final DroneRepository droneRepository;
+    private final PayloadItemRepository payloadItemRepository;
+    private final FleetStateRegistry fleetStateRegistry;
+    private final DroneWriteBehind droneWriteBehind;
+    private final TransactionTemplate transactionTemplate;
+
+    // waves with at least this many orders are packed in shards on the common fork-join pool
+    @Value("${drone.dispatch.parallel-threshold:512}")
+    private int parallelThreshold = 512;
+
+    @Value("${drone.dispatch.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    public DispatchService(DroneServiceImpl droneService, DroneRepository droneRepository,
+                           PayloadItemRepository payloadItemRepository, FleetStateRegistry fleetStateRegistry,
+                           DroneWriteBehind droneWriteBehind, PlatformTransactionManager transactionManager) {
+        this.droneService = droneService;
+        this.droneRepository = droneRepository;
+        this.payloadItemRepository = payloadItemRepository;
+        this.fleetStateRegistry = fleetStateRegistry;
+        this.droneWriteBehind = droneWriteBehind;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public DispatchResult dispatch(List<LoadItem> orders) {
+        DroneServiceImpl.checkItems(orders);
+        Map<Long, CatalogEntry> catalog = droneService.resolveCatalog(orders);
+        List<Order> sorted = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            LoadItem item = orders.get(i);
+            sorted.add(new Order(i, item, catalog.get(item.getMedicationId()).weight() * item.getQuantity()));
+        }
+        sorted.sort(HEAVIEST_FIRST);
+
+        for (int attempt = 1; ; attempt++) {
+            Packing packing = pack(sorted, eligibleDrones(), parallelThreshold, ForkJoinPool.commonPool());
+            try {
+                commit(packing, catalog);
+                DispatchResult result = result(packing);
+                logger.info("Dispatched {} orders onto {} drones, {} left unassigned",
+                        orders.size() - result.getUnassigned().size(), result.getAssignments().size(),
+                        result.getUnassigned().size());
+                return result;
+            } catch (OptimisticLockingFailureException | StaleDispatchException e) {
+                // otherwise the next plan would be made from the same registry entries and fail the same way
+                refresh(packing);
+                if (attempt >= maxAttempts) {
+                    throw new ConcurrencyFailureException("Dispatch kept conflicting with concurrent loads, gave up after "
+                            + attempt + " attempts", e);
+                }
+                logger.warn("Dispatch conflicted with a concurrent update, planning again ({}/{})", attempt, maxAttempts);
+            }
+        }
+    }
+
+    private List<Bin> eligibleDrones() {
+        List<Bin> bins = new ArrayList<>();
+        fleetStateRegistry.forEach((droneId, state, batteryCapacity, weightLimit, payloadWeight) -> {
+            boolean loadable = state == Drone.DroneState.LOADING
+                    || (state == Drone.DroneState.IDLE && batteryCapacity > 25);
+            if (loadable && payloadWeight < weightLimit) {
+                bins.add(new Bin(droneId, weightLimit, payloadWeight));
+            }
+        });
+        return bins;
+    }
+
+    /*
+    * Small waves are packed in one pass. Large ones are dealt round robin into one shard per pool
+    * thread, drones by room and orders by weight so every shard gets a similar mix, the shards are
+    * packed in parallel, and what did not fit in its own shard gets a last pass over all drones.*/
+    static Packing pack(List<Order> heaviestFirst, List<Bin> bins, int parallelThreshold, ForkJoinPool pool) {
+        int shards = Math.min(pool.getParallelism(), bins.size());
+        if (heaviestFirst.size() < parallelThreshold || shards < 2) {
+            return new Packing(bins, bestFitDecreasing(heaviestFirst, bins));
+        }
+        List<Bin> roomiestFirst = new ArrayList<>(bins);
+        roomiestFirst.sort(Comparator.comparingDouble(Bin::room).reversed());
+        List<List<Bin>> binShards = deal(roomiestFirst, shards);
+        List<List<Order>> orderShards = deal(heaviestFirst, shards);
+
+        List<Order> leftovers = pool.invoke(new ShardTask(orderShards, binShards, 0, shards));
+        leftovers.sort(HEAVIEST_FIRST);
+        return new Packing(bins, bestFitDecreasing(leftovers, bins));
+    }
+
+    // returns the orders that did not fit anywhere, still heaviest first
+    static List<Order> bestFitDecreasing(List<Order> heaviestFirst, List<Bin> bins) {
+        TreeSet<Bin> open = new TreeSet<>(Comparator.comparingDouble(Bin::room).thenComparingLong(Bin::droneId));
+        for (Bin bin : bins) {
+            if (bin.room() > 0) {
+                open.add(bin);
+            }
+        }
+        List<Order> unplaced = new ArrayList<>();
+        for (Order order : heaviestFirst) {
+            Bin chosen = null;
+            // the tightest drone with enough room; fits() repeats the exact rule in case room() rounded
+            for (Bin bin : open.tailSet(new Bin(Long.MIN_VALUE, order.weight(), 0), true)) {
+                if (bin.fits(order.weight())) {
+                    chosen = bin;
+                    break;
+                }
+            }
+            if (chosen == null) {
+                unplaced.add(order);
+                continue;
+            }
+            open.remove(chosen);
+            chosen.place(order);
+            if (chosen.room() > 0) {
+                open.add(chosen);
+            }
+        }
+        return unplaced;
+    }
+
+    private void commit(Packing packing, Map<Long, CatalogEntry> catalog) {
+        // in WRITE_BEHIND mode a drone's row can still be a tick behind the registry the plan was made from
+        for (Bin bin : packing.bins()) {
+            if (!bin.placed.isEmpty()) {
+                droneWriteBehind.flushPending(bin.droneId());
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            List<PayloadItem> lines = new ArrayList<>();
+            List<Drone> loaded = new ArrayList<>();
+            for (Bin bin : packing.bins()) {
+                if (bin.placed.isEmpty()) {
+                    continue;
+                }
+                Drone drone = droneRepository.findById(bin.droneId())
+                        .orElseThrow(() -> new StaleDispatchException(bin.droneId()));
+                List<PayloadItem> added;
+                try {
+                    added = droneService.addPayload(drone, bin.items(), catalog);
+                } catch (WeightLimitExceededException | BatterLevelLowException e) {
+                    throw new StaleDispatchException(bin.droneId());
+                }
+                if (added == null) {
+                    throw new StaleDispatchException(bin.droneId());
+                }
+                lines.addAll(added);
+                loaded.add(drone);
+            }
+            payloadItemRepository.saveAll(lines);
+            droneRepository.saveAll(loaded);
+        });
+    }
+
+    private void refresh(Packing packing) {
+        for (Bin bin : packing.bins()) {
+            if (!bin.placed.isEmpty()) {
+                droneRepository.findById(bin.droneId()).ifPresentOrElse(fleetStateRegistry::reconcile,
+                        () -> fleetStateRegistry.remove(bin.droneId()));
+            }
+        }
+    }
+
+    private static DispatchResult result(Packing packing) {
+        List<DroneAssignment> assignments = new ArrayList<>();
+        for (Bin bin : packing.bins()) {
+            if (!bin.placed.isEmpty()) {
+                assignments.add(new DroneAssignment(bin.droneId(), bin.items(), bin.added));
+            }
+        }
+        assignments.sort(Comparator.comparing(DroneAssignment::getDroneId));
+        List<LoadItem> unassigned = new ArrayList<>(packing.unassigned().size());
+        for (Order order : packing.unassigned()) {
+            unassigned.add(order.item());
+        }
+        return new DispatchResult(assignments, unassigned);
+    }
+
+    private static <T> List<List<T>> deal(List<T> values, int hands) {
+        List<List<T>> dealt = new ArrayList<>(hands);
+        for (int i = 0; i < hands; i++) {
+            dealt.add(new ArrayList<>());
+        }
+        for (int i = 0; i < values.size(); i++) {
+            dealt.get(i % hands).add(values.get(i));
+        }
+        return dealt;
+    }
+
+    record Order(int index, LoadItem item, double weight) {
+    }
+
+    record Packing(List<Bin> bins, List<Order> unassigned) {
+    }
+
+    // a candidate drone while the wave is packed; only touched by one shard at a time
+    static final class Bin {
+        private final long droneId;
+        private final double weightLimit;
+        private final double payloadWeight;
+        private final List<Order> placed = new ArrayList<>();
+        private double added;
+
+        Bin(long droneId, double weightLimit, double payloadWeight) {
+            this.droneId = droneId;
+            this.weightLimit = weightLimit;
+            this.payloadWeight = payloadWeight;
+        }
+
+        long droneId() {
+            return droneId;
+        }
+
+        double room() {
+            return weightLimit - payloadWeight - added;
+        }
+
+        // the loadMedication weight rule
+        boolean fits(double weight) {
+            return payloadWeight + added + weight <= weightLimit;
+        }
+
+        void place(Order order) {
+            placed.add(order);
+            added += order.weight();
+        }
+
+        List<LoadItem> items() {
+            List<LoadItem> items = new ArrayList<>(placed.size());
+            for (Order order : placed) {
+                items.add(order.item());
+            }
+            return items;
+        }
+    }
+
+    private static final class ShardTask extends RecursiveTask<List<Order>> {
+        private final List<List<Order>> orderShards;
+        private final List<List<Bin>> binShards;
+        private final int from;
+        private final int to;
+
+        private ShardTask(List<List<Order>> orderShards, List<List<Bin>> binShards, int from, int to) {
+            this.orderShards = orderShards;
+            this.binShards = binShards;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Order> compute() {
+            if (to - from == 1) {
+                return bestFitDecreasing(orderShards.get(from), binShards.get(from));
+            }
+            int middle = (from + to) >>> 1;
+            ShardTask left = new ShardTask(orderShards, binShards, from, middle);
+            left.fork();
+            List<Order> leftovers = new ArrayList<>(new ShardTask(orderShards, binShards, middle, to).compute());
+            leftovers.addAll(left.join());
+            return leftovers;
+        }
+    }
+
+    // the registry said the drone could take its orders, the database row disagrees
+    private static class StaleDispatchException extends RuntimeException {
+        StaleDispatchException(long droneId) {
+            super("Drone " + droneId + " can no longer take its dispatched orders");
+        }
+    }
+}
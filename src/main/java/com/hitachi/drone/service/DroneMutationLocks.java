@@ -0,0 +1,40 @@
+package com.hitachi.drone.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+* Striped locks that serialize mutations of the same drone inside this JVM.
+* Drones hash onto a fixed number of stripes, so there is no global lock and loads
+* against different drones only meet when they happen to share a stripe.*/
+@Component
+public class DroneMutationLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public DroneMutationLocks(@Value("${drone.concurrency.lock-stripes:1024}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // by the parsed id, so every spelling of it ("1", "01", "+1") takes the same stripe
+    public ReentrantLock lockFor(long droneId) {
+        int hash = Long.hashCode(droneId);
+        // spread the bits so sequential ids do not cluster on neighbouring stripes
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return stripes[hash & mask];
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+}
@@ -1,20 +1,34 @@
 package com.hitachi.drone.service;
 
+import com.hitachi.drone.dto.DroneCandidate;
+import com.hitachi.drone.dto.DroneFilter;
+import com.hitachi.drone.dto.DronePage;
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.dto.MedicationView;
 import com.hitachi.drone.exception.BatterLevelLowException;
 import com.hitachi.drone.exception.WeightLimitExceededException;
 import com.hitachi.drone.model.Drone;
 import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.registry.FleetStateRegistry;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface DroneService {
 
     public Drone registerDrone(Drone drone);
     Optional<Drone> loadDrone(String id, String medicationId) throws WeightLimitExceededException, BatterLevelLowException;
-    public List<Medication> viewDroneLoadMedication(String id);
+    Optional<Drone> loadDrone(String id, List<LoadItem> items) throws WeightLimitExceededException, BatterLevelLowException;
+    public List<MedicationView> viewDroneLoadMedication(String id);
+    public Optional<Long> droneVersion(String id);
     public Boolean viewDroneStatus(String id);
     public List<Drone> viewDrones();
+    public DronePage viewDrones(Long after, int limit);
+    public List<Drone> viewDrones(DroneFilter filter);
+    public DronePage viewDrones(DroneFilter filter, Long after, int limit);
+    public List<DroneCandidate> findCandidates(double weight, int limit, FleetStateRegistry.Fit fit);
+    public void streamDrones(Consumer<Drone> sink);
     public Drone loadMedication(Drone drone, Medication medication) throws WeightLimitExceededException, BatterLevelLowException;
 
 }
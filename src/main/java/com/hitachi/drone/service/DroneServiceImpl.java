@@ -1,16 +1,52 @@
 package com.hitachi.drone.service;
 
+import com.hitachi.drone.catalog.CatalogEntry;
+import com.hitachi.drone.catalog.MedicationCatalogCache;
+import com.hitachi.drone.dto.DroneCandidate;
+import com.hitachi.drone.dto.DroneFilter;
+import com.hitachi.drone.dto.DronePage;
+import com.hitachi.drone.dto.DroneStatusView;
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.dto.MedicationView;
 import com.hitachi.drone.exception.BatterLevelLowException;
 import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.metrics.DroneMetrics;
 import com.hitachi.drone.model.Drone;
 import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.model.PayloadItem;
+import com.hitachi.drone.registry.FleetStateRegistry;
 import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.DroneSpecifications;
 import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+import com.hitachi.drone.writebehind.DroneWriteBehind;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,27 +57,90 @@ public class DroneServiceImpl implements DroneService {
     private static final Logger logger = LoggerFactory.getLogger(DroneServiceImpl.class);
     private final DroneRepository droneRepository;
     private final MedicationRepository medicationRepository;
+    private final PayloadItemRepository payloadItemRepository;
+    private final MedicationCatalogCache medicationCatalogCache;
+    private final FleetStateRegistry fleetStateRegistry;
+    private final DroneMutationLocks droneMutationLocks;
+    private final DroneMetrics droneMetrics;
+    private final DroneWriteBehind droneWriteBehind;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${drone.view.max-page-size:500}")
+    private int maxPageSize = 500;
+
+    /*
+    * STRIPED      : loads of the same drone are serialized on a striped lock; @Version still guards
+    *                against writers outside this JVM and the scheduler.
+    * OPTIMISTIC   : no lock, a conflicting @Version update is retried up to max-load-attempts times.
+    * GROUP_COMMIT : concurrent loads are collected by a LoadBatcher and committed together in one
+    *                transaction, see commitLoads.*/
+    @Value("${drone.concurrency.mode:STRIPED}")
+    private ConcurrencyMode concurrencyMode = ConcurrencyMode.STRIPED;
+
+    @Value("${drone.concurrency.max-load-attempts:5}")
+    private int maxLoadAttempts = 5;
+
+    @Value("${drone.concurrency.group-commit.max-batch:64}")
+    private int groupCommitMaxBatch = 64;
+
+    // how long the first load of a batch waits for others to join it
+    @Value("${drone.concurrency.group-commit.window:PT0.002S}")
+    private Duration groupCommitWindow = Duration.ofMillis(2);
+
+    private LoadBatcher loadBatcher;
+
     @Autowired
-    public DroneServiceImpl(DroneRepository droneRepository, MedicationRepository medicationRepository) {
+    public DroneServiceImpl(DroneRepository droneRepository, MedicationRepository medicationRepository,
+                            PayloadItemRepository payloadItemRepository, MedicationCatalogCache medicationCatalogCache,
+                            FleetStateRegistry fleetStateRegistry,
+                            DroneMutationLocks droneMutationLocks, DroneMetrics droneMetrics,
+                            DroneWriteBehind droneWriteBehind, PlatformTransactionManager transactionManager) {
         this.droneRepository = droneRepository;
         this.medicationRepository = medicationRepository;
+        this.payloadItemRepository = payloadItemRepository;
+        this.medicationCatalogCache = medicationCatalogCache;
+        this.fleetStateRegistry = fleetStateRegistry;
+        this.droneMutationLocks = droneMutationLocks;
+        this.droneMetrics = droneMetrics;
+        this.droneWriteBehind = droneWriteBehind;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
 
+    @PostConstruct
+    public void start() {
+        if (concurrencyMode == ConcurrencyMode.GROUP_COMMIT) {
+            loadBatcher = new LoadBatcher(groupCommitMaxBatch, groupCommitWindow, this::commitLoads);
+            loadBatcher.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (loadBatcher != null) {
+            loadBatcher.stop();
+        }
+    }
+
     @Override
     public Drone registerDrone(Drone drone) {
 
-        if (droneRepository.existsById(drone.getSerialNumber())) {
+        if (droneRepository.existsBySerialNumber(drone.getSerialNumber())) {
             logger.error("Drone registration failed: Serial number already exists.");
             throw new IllegalArgumentException("Drone with this serial number already exists.");
         }
 
         drone.setState(Drone.DroneState.IDLE);
-        Drone savedDrone = null;
+        Drone savedDrone;
         try {
             savedDrone = droneRepository.save(drone);
-        }catch (Exception e){
-            e.printStackTrace();
+        }catch (DataIntegrityViolationException e){
+            // registered concurrently, caught by the unique index on serial_number
+            logger.error("Drone registration failed: Serial number already exists.");
+            throw new IllegalArgumentException("Drone with this serial number already exists.");
         }
         logger.info("Drone registered successfully: {} {}", savedDrone.getSerialNumber(), drone);
         return savedDrone;
@@ -49,13 +148,180 @@ public class DroneServiceImpl implements DroneService {
 
     @Override
     public Optional<Drone> loadDrone(String id, String medicationId) throws WeightLimitExceededException, BatterLevelLowException {
-        Optional<Medication> medOptional = medicationRepository.findById(Long.valueOf(medicationId));
-        Optional<Drone> droneOptional = droneRepository.findById(id);
+        if (loadBatcher != null) {
+            Long droneId = parseDroneId(id);
+            Optional<CatalogEntry> medOptional = medicationCatalogCache.get(Long.valueOf(medicationId), medicationRepository::findById);
+            if (droneId == null || medOptional.isEmpty()) {
+                return Optional.empty();
+            }
+            Medication medication = medOptional.get().toMedication();
+            return loadBatched(id, droneId, drone -> Optional.ofNullable(addMedication(drone, medication)),
+                    () -> loadDroneOnce(id, medicationId));
+        }
+        return mutateDrone(id, () -> loadDroneOnce(id, medicationId));
+    }
+
+    @Override
+    public Optional<Drone> loadDrone(String id, List<LoadItem> items) throws WeightLimitExceededException, BatterLevelLowException {
+        checkItems(items);
+        if (loadBatcher != null) {
+            Long droneId = parseDroneId(id);
+            if (droneId == null) {
+                return Optional.empty();
+            }
+            Map<Long, CatalogEntry> catalog = resolveCatalog(items);
+            return loadBatched(id, droneId, drone -> addPayload(drone, items, catalog) == null ? Optional.empty() : Optional.of(drone),
+                    () -> loadItemsOnce(id, items));
+        }
+        return mutateDrone(id, () -> loadItemsOnce(id, items));
+    }
+
+    static void checkItems(List<LoadItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("At least one medication must be loaded.");
+        }
+        for (LoadItem item : items) {
+            if (item.getMedicationId() == null || item.getQuantity() < 1) {
+                throw new IllegalArgumentException("Every item needs a medication id and a quantity of at least 1.");
+            }
+        }
+    }
+
+    private Optional<Drone> mutateDrone(String id, LoadAction action) throws WeightLimitExceededException, BatterLevelLowException {
+        Long droneId = parseDroneId(id);
+        if (droneId == null) {
+            return Optional.empty();
+        }
+        ReentrantLock lock = concurrencyMode != ConcurrencyMode.OPTIMISTIC ? droneMutationLocks.lockFor(droneId) : null;
+        if (lock != null) {
+            lock.lock();
+        }
+        try {
+            flushPendingTransition(droneId);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    Optional<Drone> loaded = inTransaction(action);
+                    if (loaded.isPresent()) {
+                        droneMetrics.loadSucceeded();
+                    }
+                    return loaded;
+                } catch (WeightLimitExceededException e) {
+                    droneMetrics.weightLimitExceeded();
+                    throw e;
+                } catch (BatterLevelLowException e) {
+                    droneMetrics.batteryLow();
+                    throw e;
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt >= maxLoadAttempts) {
+                        logger.error("Loading drone {} failed after {} conflicting updates", id, attempt);
+                        throw e;
+                    }
+                    logger.warn("Drone {} was updated concurrently, retrying load ({}/{})", id, attempt, maxLoadAttempts);
+                }
+            }
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+    * Waits for the batch holding this load to commit. When the batch as a whole could not be committed
+    * (say the scheduler changed one of its drones meanwhile), the load is done again on its own.*/
+    private Optional<Drone> loadBatched(String id, long droneId, LoadBatcher.BatchedLoad load, LoadAction alone)
+            throws WeightLimitExceededException, BatterLevelLowException {
+        CompletableFuture<Optional<Drone>> result = loadBatcher.submit(droneId, load);
+        try {
+            Optional<Drone> loaded = result.get();
+            if (loaded.isPresent()) {
+                droneMetrics.loadSucceeded();
+            }
+            return loaded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the load of drone " + id + " to commit.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WeightLimitExceededException) {
+                droneMetrics.weightLimitExceeded();
+                throw (WeightLimitExceededException) cause;
+            }
+            if (cause instanceof BatterLevelLowException) {
+                droneMetrics.batteryLow();
+                throw (BatterLevelLowException) cause;
+            }
+            if (cause instanceof BatchNotCommittedException) {
+                return mutateDrone(id, alone);
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    /*
+    * One transaction for a whole batch: every drone is read once, the loads are applied in arrival order
+    * with the usual rules (a rejected load changes nothing, so the ones after it see the drone as it was),
+    * and the drones and their new lines are written together at commit. Loads of one drone share its
+    * entity, so every caller gets a snapshot of it as committed.*/
+    void commitLoads(List<LoadBatcher.PendingLoad> batch) {
+        droneMetrics.loadBatch(batch.size());
+        List<Object> outcomes;
+        try {
+            batch.stream().map(LoadBatcher.PendingLoad::droneId).distinct().forEach(this::flushPendingTransition);
+            outcomes = transactionTemplate.execute(status -> {
+                Map<Long, Drone> drones = new HashMap<>();
+                droneRepository.findAllById(batch.stream().map(LoadBatcher.PendingLoad::droneId).distinct().toList())
+                        .forEach(drone -> drones.put(drone.getId(), drone));
+                List<Object> results = new ArrayList<>(batch.size());
+                for (LoadBatcher.PendingLoad pending : batch) {
+                    Drone drone = drones.get(pending.droneId());
+                    try {
+                        results.add(drone == null ? Optional.empty() : pending.load().apply(drone));
+                    } catch (WeightLimitExceededException | BatterLevelLowException e) {
+                        results.add(e);
+                    }
+                }
+                droneRepository.saveAll(drones.values());
+                return results;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("A batch of {} loads could not be committed, loading them one by one: {}", batch.size(), e.toString());
+            batch.forEach(pending -> pending.result().completeExceptionally(new BatchNotCommittedException(e)));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Object outcome = outcomes.get(i);
+            if (outcome instanceof Exception rejected) {
+                batch.get(i).result().completeExceptionally(rejected);
+            } else {
+                @SuppressWarnings("unchecked")
+                Optional<Drone> loaded = (Optional<Drone>) outcome;
+                batch.get(i).result().complete(loaded.map(Drone::snapshot));
+            }
+        }
+    }
+
+    /*
+    * In WRITE_BEHIND mode the registry can be a tick ahead of the drone's row. The load reads the row,
+    * so whatever the scheduler has already decided for this drone is written first.*/
+    private void flushPendingTransition(Long droneId) {
+        if (droneId != null) {
+            droneWriteBehind.flushPending(droneId);
+        }
+    }
+
+    private Optional<Drone> loadDroneOnce(String id, String medicationId) throws WeightLimitExceededException, BatterLevelLowException {
+        Long droneId = parseDroneId(id);
+        if (droneId == null) {
+            return Optional.empty();
+        }
+        Optional<CatalogEntry> medOptional = medicationCatalogCache.get(Long.valueOf(medicationId), medicationRepository::findById);
+        Optional<Drone> droneOptional = droneRepository.findById(droneId);
 
         if (droneOptional.isPresent() && medOptional.isPresent()) {
             Drone drone = droneOptional.get();
 
-            Medication medication = medOptional.get();
+            Medication medication = medOptional.get().toMedication();
 
             Drone updatedDrone = loadMedication(drone, medication);
             return Optional.ofNullable(updatedDrone);
@@ -64,16 +330,103 @@ public class DroneServiceImpl implements DroneService {
         return Optional.empty();
     }
 
+    /*
+    * The whole payload is checked once against the weight limit and battery, then every line is
+    * written in the same transaction (new lines JDBC batched, see PayloadItem id generation).*/
+    private Optional<Drone> loadItemsOnce(String id, List<LoadItem> items) throws WeightLimitExceededException, BatterLevelLowException {
+        Long droneId = parseDroneId(id);
+        Optional<Drone> droneOptional = droneId == null ? Optional.empty() : droneRepository.findById(droneId);
+        if (droneOptional.isEmpty()) {
+            return Optional.empty();
+        }
+        Drone drone = droneOptional.get();
+
+        List<PayloadItem> lines = addPayload(drone, items, resolveCatalog(items));
+        if (lines == null) {
+            return Optional.empty();
+        }
+
+        payloadItemRepository.saveAll(lines);
+        droneRepository.save(drone);
+        logger.info("Loaded {} medication lines onto drone {}, payload now {} g", lines.size(), drone.getSerialNumber(), drone.getPayloadWeight());
+        return Optional.of(drone);
+    }
+
+    // catalog entries of every medication in the items; unknown ids are rejected
+    Map<Long, CatalogEntry> resolveCatalog(List<LoadItem> items) {
+        Map<Long, CatalogEntry> catalog = medicationCatalogCache.getAll(
+                items.stream().map(LoadItem::getMedicationId).collect(Collectors.toList()),
+                medicationRepository::findAllById);
+        for (LoadItem item : items) {
+            if (!catalog.containsKey(item.getMedicationId())) {
+                throw new IllegalArgumentException("Medication " + item.getMedicationId() + " does not exist.");
+            }
+        }
+        return catalog;
+    }
+
+    /*
+    * The loadMedication rules applied to a whole payload at once. Adds every item to the drone's line
+    * of that medication and moves it to LOADING; returns the lines that were started or grown, or null
+    * when the drone's state does not allow loading. Nothing is changed when the payload is rejected.*/
+    List<PayloadItem> addPayload(Drone drone, List<LoadItem> items, Map<Long, CatalogEntry> catalog)
+            throws WeightLimitExceededException, BatterLevelLowException {
+        double payloadWeight = 0;
+        for (LoadItem item : items) {
+            payloadWeight += catalog.get(item.getMedicationId()).weight() * item.getQuantity();
+        }
+
+        if (drone.getTotalMedicationWeight() + payloadWeight > drone.getWeightLimit()) {
+            throw new WeightLimitExceededException("Total weight exceeds the drone's weight limit.");
+        }
+        if (!drone.getState().equals(Drone.DroneState.IDLE) && !drone.getState().equals(Drone.DroneState.LOADING)) {
+            return null;
+        }
+        if (drone.getState().equals(Drone.DroneState.IDLE) && drone.getBatteryCapacity() <= 25) {
+            throw new BatterLevelLowException("Battery is below 25% cannot enter LOADING State. ");
+        }
+
+        List<PayloadItem> lines = new ArrayList<>(items.size());
+        for (LoadItem item : items) {
+            CatalogEntry medication = catalog.get(item.getMedicationId());
+            PayloadItem line = drone.addItem(medication.id(), medication.weight(), item.getQuantity());
+            // the same medication twice in one payload ends up on one line
+            if (lines.stream().noneMatch(added -> added == line)) {
+                lines.add(line);
+            }
+        }
+        drone.setState(Drone.DroneState.LOADING);
+        return lines;
+    }
+
+    @Override
+    public List<MedicationView> viewDroneLoadMedication(String id) {
+        Long droneId = parseDroneId(id);
+        return droneId == null ? new ArrayList<>() : payloadItemRepository.findViewsByDroneId(droneId);
+    }
+
     @Override
-    public List<Medication> viewDroneLoadMedication(String id) {
-        return droneRepository.findById(id).get().getMedications();
+    public Optional<Long> droneVersion(String id) {
+        Long droneId = parseDroneId(id);
+        return droneId == null ? Optional.empty() : droneRepository.findVersionById(droneId);
     }
 
     @Override
     public Boolean viewDroneStatus(String id) {
-        Optional<Drone> drone = droneRepository.findById(id);
+        Long droneId = parseDroneId(id);
+        if (droneId == null) {
+            return false;
+        }
+        Optional<Boolean> available = fleetStateRegistry.availableForLoading(droneId);
+        if (available.isPresent()) {
+            return available.get();
+        }
+        Optional<DroneStatusView> drone = droneRepository.findStatusById(droneId);
         if(drone.isPresent()){
-            return  drone.get().getTotalMedicationWeight()<= drone.get().getWeightLimit() ? true : false;
+            DroneStatusView status = drone.get();
+            fleetStateRegistry.put(status.getId(), status.getState(), status.getBatteryCapacity(),
+                    status.getWeightLimit(), status.getPayloadWeight());
+            return status.getPayloadWeight() <= status.getWeightLimit();
         }
         return false;
     }
@@ -83,8 +436,72 @@ public class DroneServiceImpl implements DroneService {
         return droneRepository.findAll();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Drone> viewDrones(DroneFilter filter) {
+        List<Drone> drones = droneRepository.findAll(DroneSpecifications.matching(filter, null), Sort.by("id"));
+        drones.forEach(drone -> drone.getPayloadItems().size());
+        return drones;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DronePage viewDrones(DroneFilter filter, Long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        List<Drone> drones = droneRepository.findBy(DroneSpecifications.matching(filter, after),
+                query -> query.sortBy(Sort.by("id")).limit(pageSize).all());
+        drones.forEach(drone -> drone.getPayloadItems().size());
+        Long nextCursor = drones.size() == pageSize ? drones.get(drones.size() - 1).getId() : null;
+        return new DronePage(drones, nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DronePage viewDrones(Long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        List<Drone> drones = droneRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Limit.of(pageSize));
+        // touch the payloads while the session is open, batch fetched per page
+        drones.forEach(drone -> drone.getPayloadItems().size());
+        Long nextCursor = drones.size() == pageSize ? drones.get(drones.size() - 1).getId() : null;
+        return new DronePage(drones, nextCursor);
+    }
+
+    // answered from the registry's capacity index, the database is not read
+    @Override
+    public List<DroneCandidate> findCandidates(double weight, int limit, FleetStateRegistry.Fit fit) {
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight must be a number of grams, 0 or more.");
+        }
+        return fleetStateRegistry.candidates(weight, Math.max(1, Math.min(limit, maxPageSize)), fit);
+    }
+
+    /*
+    * Hands the drones to the sink one by one as they come off the cursor and detaches each one
+    * afterwards, so the persistence context never grows with the fleet.*/
+    @Override
+    @Transactional(readOnly = true)
+    public void streamDrones(Consumer<Drone> sink) {
+        try (Stream<Drone> drones = droneRepository.streamAllWithPayloadItems()) {
+            drones.forEach(drone -> {
+                sink.accept(drone);
+                entityManager.detach(drone);
+            });
+        }
+    }
+
     @Override
     public Drone loadMedication(Drone drone, Medication medication) throws WeightLimitExceededException, BatterLevelLowException {
+        Drone loaded = addMedication(drone, medication);
+        if (loaded != null) {
+            droneRepository.save(loaded);
+        }
+        return loaded;
+    }
+
+    /*
+    * The loadMedication rules without the save: one more unit of the medication on the drone, or null
+    * when the drone's state does not allow loading. Nothing is changed when the load is rejected.*/
+    private Drone addMedication(Drone drone, Medication medication) throws WeightLimitExceededException, BatterLevelLowException {
         double newTotalWeight = drone.getTotalMedicationWeight() + medication.getWeight();
 
         if (newTotalWeight > drone.getWeightLimit()) {
@@ -93,26 +510,70 @@ public class DroneServiceImpl implements DroneService {
 
         if ((drone.getState().equals(Drone.DroneState.IDLE) || drone.getState().equals(Drone.DroneState.LOADING))
                 && (drone.getTotalMedicationWeight() + medication.getWeight() <= drone.getWeightLimit())) {
-            Medication medicationToAdd = new Medication();
-            medicationToAdd.setCode(medication.getCode());
-            medicationToAdd.setImage(medication.getImage());
-            medicationToAdd.setName(medication.getName());
-            medicationToAdd.setQuantity(medication.getQuantity()+1);
-            medicationToAdd.setWeight(medication.getWeight() * medicationToAdd.getQuantity());
-            medicationToAdd.setDrone(drone);
+            // checked before the payload is touched, so a rejected load leaves nothing to flush
+            if (drone.getState().equals(Drone.DroneState.IDLE) && drone.getBatteryCapacity() <= 25) {
+                throw new BatterLevelLowException("Battery is below 25% cannot enter LOADING State. ");
+            }
 
-            drone.getMedications().add(medicationToAdd);
+            // one more unit on the drone's line of this medication, a new line is cascaded with the save
+            drone.addItem(medication.getId(), medication.getWeight(), 1);
 
             if (drone.getState().equals(Drone.DroneState.IDLE)) {
-                if(drone.getBatteryCapacity() <= 25){
-                    throw new BatterLevelLowException("Battery is below 25% cannot enter LOADING State. ");
-                }
                 drone.setState(Drone.DroneState.LOADING);
             }
-
-            droneRepository.save(drone);
             return drone;
         }
         return null;
     }
+
+    /*
+    * Runs the load in its own transaction; the checked load exceptions roll it back and are rethrown as-is.*/
+    private Optional<Drone> inTransaction(LoadAction action) throws WeightLimitExceededException, BatterLevelLowException {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return action.run();
+                } catch (WeightLimitExceededException | BatterLevelLowException e) {
+                    throw new LoadRejectedException(e);
+                }
+            });
+        } catch (LoadRejectedException e) {
+            if (e.getCause() instanceof WeightLimitExceededException) {
+                throw (WeightLimitExceededException) e.getCause();
+            }
+            throw (BatterLevelLowException) e.getCause();
+        }
+    }
+
+    private static Long parseDroneId(String id) {
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface LoadAction {
+        Optional<Drone> run() throws WeightLimitExceededException, BatterLevelLowException;
+    }
+
+    private static class LoadRejectedException extends RuntimeException {
+        LoadRejectedException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    // the batch a load was part of rolled back; the load itself was not rejected
+    private static class BatchNotCommittedException extends RuntimeException {
+        BatchNotCommittedException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    public enum ConcurrencyMode {
+        STRIPED,
+        OPTIMISTIC,
+        GROUP_COMMIT
+    }
 }
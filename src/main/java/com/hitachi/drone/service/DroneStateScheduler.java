@@ -1,68 +1,364 @@
 package com.hitachi.drone.service;
 
+import com.hitachi.drone.lease.ShardLeases;
+import com.hitachi.drone.metrics.DroneMetrics;
 import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateRegistry;
 import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+import com.hitachi.drone.writebehind.DroneWriteBehind;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @EnableScheduling
 @Component
 public class DroneStateScheduler {
     private static final Logger logger = LoggerFactory.getLogger(DroneStateScheduler.class);
 
+    static final int DELIVERY_BATTERY_DRAIN = 10;
+
+    // the cycle from its end back to its start, so a drone moved by one step is never matched by a later one
+    private static final List<Transition> CYCLE_BACKWARDS = List.of(
+            new Transition(Drone.DroneState.RETURNING, Drone.DroneState.IDLE, 0, false),
+            new Transition(Drone.DroneState.DELIVERED, Drone.DroneState.RETURNING, 0, false),
+            new Transition(Drone.DroneState.DELIVERING, Drone.DroneState.DELIVERED, DELIVERY_BATTERY_DRAIN, true),
+            new Transition(Drone.DroneState.LOADED, Drone.DroneState.DELIVERING, 0, false),
+            new Transition(Drone.DroneState.LOADING, Drone.DroneState.LOADED, 0, false));
+
     private final DroneRepository droneRepository;
+    private final PayloadItemRepository payloadItemRepository;
     private final DroneServiceImpl droneService;
+    private final FleetStateRegistry fleetStateRegistry;
+    private final DroneMetrics droneMetrics;
+    private final DroneWriteBehind droneWriteBehind;
+    private final ShardLeases shardLeases;
+    private final TransactionTemplate transactionTemplate;
+
+    /*
+    * ENTITY : loads every drone and saves them one by one (original behaviour).
+    * BULK   : set-based updates per state group, paged by id range. Unchanged drones are never touched.
+    * TIMERS : no polling, DroneTransitionTimers advances each drone when its own timer is due.
+    * WRITE_BEHIND : the tick runs on FleetStateRegistry only and hands the transitions to
+    *                DroneWriteBehind, which logs them and writes them to the database in the background.
+    * With drone.scheduler.lease.enabled every mode but TIMERS only ticks the chunks of the shards
+    * this instance holds (see ShardLeases).*/
+    @Value("${drone.scheduler.mode:ENTITY}")
+    private Mode mode = Mode.ENTITY;
+
+    @Value("${drone.scheduler.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${drone.scheduler.period-ms:60000}")
+    private long periodMillis = 60000;
+
+    // same switch that moves request handling onto virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // persistence tasks of a tick running at once on virtual threads, by default one per pooled connection
+    @Value("${drone.scheduler.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int maxConcurrency = 10;
+
+    // start of the previous tick, to measure how far behind its fixed rate the scheduler runs
+    private long lastTickStartNanos;
 
-    public DroneStateScheduler(DroneRepository droneRepository, DroneServiceImpl droneService) {
+    public DroneStateScheduler(DroneRepository droneRepository, PayloadItemRepository payloadItemRepository,
+                               DroneServiceImpl droneService,
+                               FleetStateRegistry fleetStateRegistry, DroneMetrics droneMetrics,
+                               DroneWriteBehind droneWriteBehind, ShardLeases shardLeases,
+                               PlatformTransactionManager transactionManager) {
         this.droneRepository = droneRepository;
+        this.payloadItemRepository = payloadItemRepository;
         this.droneService = droneService;
+        this.fleetStateRegistry = fleetStateRegistry;
+        this.droneMetrics = droneMetrics;
+        this.droneWriteBehind = droneWriteBehind;
+        this.shardLeases = shardLeases;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Scheduled(fixedRate = 60000) // Check every minute
+    // an id range of less than one drone never advances
+    @PostConstruct
+    public void validate() {
+        if (chunkSize < 1) {
+            throw new IllegalStateException("drone.scheduler.chunk-size must be at least 1, was " + chunkSize);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${drone.scheduler.period-ms:60000}",
+            initialDelayString = "${drone.scheduler.initial-delay-ms:0}") // Check every minute
     public void updateDroneStates() {
-        List<Drone> drones = droneRepository.findAll();
+        if (mode == Mode.TIMERS) {
+            return;
+        }
+        long start = System.nanoTime();
+        long lagMillis = lastTickStartNanos == 0 ? 0
+                : Math.max(0, TimeUnit.NANOSECONDS.toMillis(start - lastTickStartNanos) - periodMillis);
+        lastTickStartNanos = start;
+        // the ownership this tick works with; a failed renewal keeps the leases until they expire
+        shardLeases.renew();
+
+        int changed;
+        switch (mode) {
+            case BULK:
+                changed = updateDroneStatesInBulk();
+                break;
+            case WRITE_BEHIND:
+                changed = updateDroneStatesWriteBehind();
+                break;
+            default:
+                changed = updateDroneStatesPerEntity();
+                break;
+        }
+        long duration = System.nanoTime() - start;
+        droneMetrics.schedulerTick(duration, changed, lagMillis);
+        logger.info("Drone state tick ({}) changed {} drones in {} ms, {} ms behind schedule",
+                mode, changed, TimeUnit.NANOSECONDS.toMillis(duration), lagMillis);
+    }
+
+    private int updateDroneStatesPerEntity() {
+        List<Drone> drones;
+        if (shardLeases.isEnabled()) {
+            drones = new ArrayList<>();
+            for (IdRange range : idRanges()) {
+                drones.addAll(droneRepository.findByIdBetween(range.fromId(), range.toId()));
+            }
+        } else {
+            drones = droneRepository.findAll();
+        }
+        List<Callable<Integer>> tasks = new ArrayList<>(drones.size());
         for (Drone drone : drones) {
-            if (drone.getState() == null) {
-                logger.warn("Drone {} has a null state. Skipping.", drone.getSerialNumber());
-                continue;
+            tasks.add(() -> advanceAndSave(drone));
+        }
+        return runAll(tasks);
+    }
+
+    // one step of the state cycle for a single drone; 1 when it moved to its next state
+    int advanceAndSave(Drone drone) {
+        if (drone.getState() == null) {
+            logger.warn("Drone {} has a null state. Skipping.", drone.getSerialNumber());
+            return 0;
+        }
+
+        Drone.DroneState previousState = drone.getState();
+        switch (drone.getState()) {
+            case IDLE:
+                logger.info("Drone {} is IDLE", drone.getSerialNumber());
+                break;
+            case LOADING:
+                drone.setState(Drone.DroneState.LOADED);
+                logger.info("Drone {} is LOADING and now changed to LOADED", drone.getSerialNumber());
+                break;
+            case LOADED:
+                drone.setState(Drone.DroneState.DELIVERING);
+                logger.info("Drone {} is LOADED and now changing to DELIVERING", drone.getSerialNumber());
+                break;
+            case DELIVERING:
+                drone.setState(Drone.DroneState.DELIVERED);
+                logger.info("Drone {} has DELIVERED the package", drone.getSerialNumber());
+                // Reduce battery after delivery
+                drone.setBatteryCapacity(drone.getBatteryCapacity() - DELIVERY_BATTERY_DRAIN);
+                drone.clearPayload();
+                break;
+            case DELIVERED:
+                drone.setState(Drone.DroneState.RETURNING);
+                logger.info("Drone {} is RETURNING after delivery", drone.getSerialNumber());
+                break;
+            case RETURNING:
+                drone.setState(Drone.DroneState.IDLE);
+                logger.info("Drone {} has returned and is now IDLE", drone.getSerialNumber());
+                break;
+            default:
+                logger.warn("Drone {} is in an unknown state: {}", drone.getSerialNumber(), drone.getState());
+                break;
+        }
+        try {
+            if (previousState == Drone.DroneState.DELIVERING) {
+                // the payload lines go with the delivery, or not at all
+                transactionTemplate.executeWithoutResult(status -> {
+                    droneRepository.save(drone);
+                    payloadItemRepository.deleteByDroneId(drone.getId());
+                });
+            } else {
+                droneRepository.save(drone);
             }
+        } catch (OptimisticLockingFailureException e) {
+            // loaded concurrently since findAll(); the fresh row is picked up on the next tick
+            logger.warn("Drone {} changed during the tick, skipping it", drone.getSerialNumber());
+            return 0;
+        }
+        return drone.getState() != previousState ? 1 : 0;
+    }
 
-            switch (drone.getState()) {
-                case IDLE:
-                    logger.info("Drone {} is IDLE", drone.getSerialNumber());
-                    break;
-                case LOADING:
-                    drone.setState(Drone.DroneState.LOADED);
-                    logger.info("Drone {} is LOADING and now changed to LOADED", drone.getSerialNumber());
-                    break;
-                case LOADED:
-                    drone.setState(Drone.DroneState.DELIVERING);
-                    logger.info("Drone {} is LOADED and now changing to DELIVERING", drone.getSerialNumber());
-                    break;
-                case DELIVERING:
-                    drone.setState(Drone.DroneState.DELIVERED);
-                    logger.info("Drone {} has DELIVERED the package", drone.getSerialNumber());
-                    // Reduce battery after delivery
-                    drone.setBatteryCapacity(drone.getBatteryCapacity() - 10);
-                    break;
-                case DELIVERED:
-                    drone.setState(Drone.DroneState.RETURNING);
-                    logger.info("Drone {} is RETURNING after delivery", drone.getSerialNumber());
-                    break;
-                case RETURNING:
-                    drone.setState(Drone.DroneState.IDLE);
-                    logger.info("Drone {} has returned and is now IDLE", drone.getSerialNumber());
-                    break;
-                default:
-                    logger.warn("Drone {} is in an unknown state: {}", drone.getSerialNumber(), drone.getState());
-                    break;
+    private int updateDroneStatesInBulk() {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (IdRange range : idRanges()) {
+            tasks.add(() -> {
+                Integer chunkChanged = transactionTemplate.execute(
+                        status -> advanceChunk(range.fromId(), range.toId()));
+                mirrorChunkInRegistry(range.fromId(), range.toId());
+                return chunkChanged == null ? 0 : chunkChanged;
+            });
+        }
+        return runAll(tasks);
+    }
+
+    /*
+    * The id ranges of one tick: the fleet in chunks from its lowest id, or with shard leases only the
+    * chunk-aligned ranges of the shards this instance holds.*/
+    private List<IdRange> idRanges() {
+        Long minId = droneRepository.findMinId();
+        Long maxId = droneRepository.findMaxId();
+        if (minId == null || maxId == null) {
+            return List.of();
+        }
+        List<IdRange> ranges = new ArrayList<>();
+        if (!shardLeases.isEnabled()) {
+            for (long chunkStart = minId; chunkStart <= maxId; chunkStart += chunkSize) {
+                ranges.add(new IdRange(chunkStart, Math.min(chunkStart + chunkSize - 1, maxId)));
             }
-            droneRepository.save(drone);
+            return ranges;
         }
+        for (long chunk = Math.floorDiv(minId, chunkSize); chunk <= Math.floorDiv(maxId, chunkSize); chunk++) {
+            if (shardLeases.ownsChunk(chunk)) {
+                ranges.add(new IdRange(Math.max(chunk * chunkSize, minId), Math.min(chunk * chunkSize + chunkSize - 1, maxId)));
+            }
+        }
+        return ranges;
+    }
+
+    /*
+    * The registry already holds the current state of every drone, so the tick is a pass over memory;
+    * each change is logged as it is made and the log is synced once at the end.*/
+    private int updateDroneStatesWriteBehind() {
+        long now = System.currentTimeMillis();
+        List<IdRange> ranges = shardLeases.isEnabled() ? ownedRangesRefreshed() : List.of(new IdRange(0, Long.MAX_VALUE));
+        int changed = 0;
+        for (IdRange range : ranges) {
+            for (Transition step : CYCLE_BACKWARDS) {
+                changed += fleetStateRegistry.applyTransition(step.from(), step.to(), step.batteryDrain(),
+                        step.clearPayload(), range.fromId(), range.toId(), (droneId, batteryCapacity) ->
+                                droneWriteBehind.record(droneId, step.from(), step.to(), batteryCapacity,
+                                        step.clearPayload(), now));
+            }
+        }
+        droneWriteBehind.sync();
+        return changed;
+    }
+
+    // another instance ticked the shards this one just claimed, so their registry entries are reloaded first
+    private List<IdRange> ownedRangesRefreshed() {
+        List<IdRange> ranges = idRanges();
+        BitSet acquired = shardLeases.takeAcquired();
+        for (IdRange range : ranges) {
+            if (acquired.get(shardLeases.shardOf(Math.floorDiv(range.fromId(), chunkSize)))) {
+                droneRepository.findByIdBetween(range.fromId(), range.toId()).forEach(fleetStateRegistry::reconcile);
+            }
+        }
+        return ranges;
+    }
+
+    /*
+    * Runs the persistence tasks of one tick (a drone each in ENTITY mode, an id range in BULK mode).
+    * They never overlap, so with virtual threads enabled they are all started at once, but only
+    * max-concurrency of them talk to the database together. The rest wait on the semaphore instead
+    * of timing out in the connection pool halfway through the tick.*/
+    private int runAll(List<Callable<Integer>> tasks) {
+        int changed = 0;
+        if (!virtualThreads) {
+            for (Callable<Integer> task : tasks) {
+                changed += call(task);
+            }
+            return changed;
+        }
+        Semaphore permits = new Semaphore(Math.max(1, maxConcurrency));
+        List<Callable<Integer>> bounded = new ArrayList<>(tasks.size());
+        for (Callable<Integer> task : tasks) {
+            bounded.add(() -> {
+                permits.acquire();
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Future<Integer> result : executor.invokeAll(bounded)) {
+                changed += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        }
+        return changed;
+    }
+
+    private static int call(Callable<Integer> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+    * NOTE
+    * The groups run from the end of the cycle back to the start, so a drone moved by one statement
+    * can never be matched again by a later one in the same tick.*/
+    private int advanceChunk(long fromId, long toId) {
+        int changed = 0;
+        changed += droneRepository.transitionState(Drone.DroneState.RETURNING, Drone.DroneState.IDLE, fromId, toId);
+        changed += droneRepository.transitionState(Drone.DroneState.DELIVERED, Drone.DroneState.RETURNING, fromId, toId);
+        payloadItemRepository.deleteDeliveringBetween(fromId, toId);
+        changed += droneRepository.completeDeliveries(DELIVERY_BATTERY_DRAIN, fromId, toId);
+        changed += droneRepository.transitionState(Drone.DroneState.LOADED, Drone.DroneState.DELIVERING, fromId, toId);
+        changed += droneRepository.transitionState(Drone.DroneState.LOADING, Drone.DroneState.LOADED, fromId, toId);
+        logger.debug("Advanced {} drones in id range [{}, {}]", changed, fromId, toId);
+        return changed;
+    }
+
+    // Bulk updates bypass the entity listener, so the registry is advanced the same way once the chunk is committed.
+    private void mirrorChunkInRegistry(long fromId, long toId) {
+        for (Transition step : CYCLE_BACKWARDS) {
+            fleetStateRegistry.applyTransition(step.from(), step.to(), step.batteryDrain(), step.clearPayload(),
+                    fromId, toId);
+        }
+    }
+
+    public enum Mode {
+        ENTITY,
+        BULK,
+        TIMERS,
+        WRITE_BEHIND
+    }
+
+    private record IdRange(long fromId, long toId) {
+    }
+
+    private record Transition(Drone.DroneState from, Drone.DroneState to, int batteryDrain, boolean clearPayload) {
     }
 }
@@ -0,0 +1,169 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateListener;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.repository.DroneRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Timer engine behind drone.scheduler.mode=TIMERS. Every drone outside IDLE has one pending timer,
+* due a dwell time after it entered its current state; a single worker sleeps until the earliest
+* one is due and advances just that drone. IDLE drones cost nothing.
+* Timers are armed from FleetStateRegistry change notifications and rebuilt from the persisted
+* state and stateChangedAt on startup, so timers that came due while the service was down fire right away.*/
+@Component
+public class DroneTransitionTimers implements FleetStateListener {
+    private static final Logger logger = LoggerFactory.getLogger(DroneTransitionTimers.class);
+
+    private static final Set<Drone.DroneState> TIMED_STATES = EnumSet.complementOf(EnumSet.of(Drone.DroneState.IDLE));
+
+    private final DroneRepository droneRepository;
+    private final DroneStateScheduler droneStateScheduler;
+    private final FleetStateRegistry fleetStateRegistry;
+
+    @Value("${drone.scheduler.mode:ENTITY}")
+    private DroneStateScheduler.Mode mode = DroneStateScheduler.Mode.ENTITY;
+
+    // time a drone stays in a state before it moves on, same as one polling period by default
+    @Value("${drone.scheduler.dwell-ms:60000}")
+    private long dwellMillis = 60000;
+
+    // delay before a transition that lost against a concurrent update is tried again
+    @Value("${drone.scheduler.retry-ms:1000}")
+    private long retryMillis = 1000;
+
+    private final DelayQueue<TransitionTimer> queue = new DelayQueue<>();
+    // the live timer of each drone; anything else taken from the queue was replaced or cancelled
+    private final Map<Long, TransitionTimer> pending = new ConcurrentHashMap<>();
+    private Thread worker;
+
+    public DroneTransitionTimers(DroneRepository droneRepository, DroneStateScheduler droneStateScheduler,
+                                 FleetStateRegistry fleetStateRegistry) {
+        this.droneRepository = droneRepository;
+        this.droneStateScheduler = droneStateScheduler;
+        this.fleetStateRegistry = fleetStateRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (mode != DroneStateScheduler.Mode.TIMERS) {
+            return;
+        }
+        fleetStateRegistry.addListener(this);
+        rebuild();
+        worker = Thread.ofPlatform().name("drone-transition-timers").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    public void rebuild() {
+        long now = System.currentTimeMillis();
+        int rebuilt = 0;
+        for (Object[] row : droneRepository.findStateTimestamps(TIMED_STATES)) {
+            Instant changedAt = (Instant) row[2];
+            // rows written before stateChangedAt existed get a full dwell from now
+            long enteredAt = changedAt == null ? now : changedAt.toEpochMilli();
+            schedule((Long) row[0], (Drone.DroneState) row[1], enteredAt + dwellMillis);
+            rebuilt++;
+        }
+        logger.info("Rebuilt {} drone transition timers", rebuilt);
+    }
+
+    @Override
+    public void stateChanged(long droneId, Drone.DroneState from, Drone.DroneState to, int batteryCapacity) {
+        if (to == null || !TIMED_STATES.contains(to)) {
+            pending.remove(droneId);
+            return;
+        }
+        schedule(droneId, to, System.currentTimeMillis() + dwellMillis);
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    void schedule(long droneId, Drone.DroneState state, long dueAtMillis) {
+        TransitionTimer timer = new TransitionTimer(droneId, state, dueAtMillis);
+        pending.put(droneId, timer);
+        queue.add(timer);
+    }
+
+    // fires every timer that is due now, on the calling thread
+    int fireDue() {
+        int fired = 0;
+        TransitionTimer timer;
+        while ((timer = queue.poll()) != null) {
+            if (fire(timer)) {
+                fired++;
+            }
+        }
+        return fired;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                fire(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private boolean fire(TransitionTimer timer) {
+        if (!pending.remove(timer.droneId(), timer)) {
+            return false;
+        }
+        try {
+            Optional<Drone> drone = droneRepository.findById(timer.droneId());
+            // a drone that left the state on another path already armed the timer for its new state
+            if (drone.isEmpty() || drone.get().getState() != timer.state()) {
+                return false;
+            }
+            if (droneStateScheduler.advanceAndSave(drone.get()) == 0) {
+                schedule(timer.droneId(), timer.state(), System.currentTimeMillis() + retryMillis);
+                return false;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("Transition of drone {} out of {} failed, retrying", timer.droneId(), timer.state(), e);
+            schedule(timer.droneId(), timer.state(), System.currentTimeMillis() + retryMillis);
+            return false;
+        }
+    }
+
+    private record TransitionTimer(long droneId, Drone.DroneState state, long dueAtMillis) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtMillis, ((TransitionTimer) other).dueAtMillis);
+        }
+    }
+}
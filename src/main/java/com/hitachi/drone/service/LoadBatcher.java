@@ -0,0 +1,120 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.exception.BatterLevelLowException;
+import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.model.Drone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+* Group commit for loads (drone.concurrency.mode=GROUP_COMMIT): loads submitted at about the same time
+* are collected on one thread until the window has passed since the first of them or maxBatchSize are
+* waiting, and handed to the committer as one batch in arrival order. The committer completes every
+* load's result; the submitting thread waits for it.*/
+final class LoadBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(LoadBatcher.class);
+
+    private final BlockingQueue<PendingLoad> queue = new LinkedBlockingQueue<>();
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final Consumer<List<PendingLoad>> committer;
+    private final Thread thread;
+    // submit() checks and enqueues under it, so nothing is queued once stop() has set running
+    private final Object submitLock = new Object();
+    private volatile boolean running = true;
+
+    LoadBatcher(int maxBatchSize, Duration window, Consumer<List<PendingLoad>> committer) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.windowNanos = window.toNanos();
+        this.committer = committer;
+        this.thread = Thread.ofPlatform().name("drone-load-batcher").daemon().unstarted(this::run);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    CompletableFuture<Optional<Drone>> submit(long droneId, BatchedLoad load) {
+        PendingLoad pending = new PendingLoad(droneId, load, new CompletableFuture<>());
+        synchronized (submitLock) {
+            if (running) {
+                queue.add(pending);
+                return pending.result();
+            }
+        }
+        pending.result().completeExceptionally(new IllegalStateException("Load batcher is stopped."));
+        return pending.result();
+    }
+
+    // loads still queued are failed, the batch being committed finishes first
+    void stop() {
+        synchronized (submitLock) {
+            running = false;
+        }
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingLoad> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(pending -> pending.result().completeExceptionally(new IllegalStateException("Load batcher is stopped.")));
+    }
+
+    private void run() {
+        List<PendingLoad> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    PendingLoad next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    batch.forEach(pending -> pending.result().completeExceptionally(
+                            new IllegalStateException("Load batcher is stopped.")));
+                    return;
+                }
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                committer.accept(batch);
+            } catch (RuntimeException e) {
+                logger.error("Committing a batch of {} loads failed", batch.size(), e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            }
+            batch = new ArrayList<>(maxBatchSize);
+        }
+    }
+
+    /*
+    * One load applied to the drone inside the batch transaction. Empty when the drone's state does not
+    * allow loading. Must check everything before changing the drone, so a rejected load leaves it as it was
+    * for the loads after it.*/
+    @FunctionalInterface
+    interface BatchedLoad {
+        Optional<Drone> apply(Drone drone) throws WeightLimitExceededException, BatterLevelLowException;
+    }
+
+    record PendingLoad(long droneId, BatchedLoad load, CompletableFuture<Optional<Drone>> result) {
+    }
+}
@@ -1,34 +1,82 @@
 package com.hitachi.drone.service;
 
+import com.hitachi.drone.catalog.MedicationCatalogCache;
 import com.hitachi.drone.model.Drone;
 import com.hitachi.drone.model.Medication;
 import com.hitachi.drone.repository.DroneRepository;
 import com.hitachi.drone.repository.MedicationRepository;
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 @Service
 public class MedicationService {
+    private static final Logger logger = LoggerFactory.getLogger(MedicationService.class);
+
+    static final String SEED_SERIAL_NUMBER = "001";
 
     private final MedicationRepository medicationRepository;
     private final DroneRepository droneRepository;
+    private final MedicationCatalogCache medicationCatalogCache;
 
     @Autowired
-    public MedicationService(MedicationRepository medicationRepository, DroneRepository droneRepository) {
+    public MedicationService(MedicationRepository medicationRepository, DroneRepository droneRepository,
+                             MedicationCatalogCache medicationCatalogCache) {
         this.medicationRepository = medicationRepository;
         this.droneRepository = droneRepository;
+        this.medicationCatalogCache = medicationCatalogCache;
     }
 
+    // true (faststart profile): seeding runs after startup instead of holding up the first request
+    @Value("${drone.seed.async:false}")
+    private boolean asyncSeed;
+
     /*
     * NOTE
     * Pre-loaded values only.
     * Assumed that there are only fixed medicines available
-    * Use Case : Cannot just add medicine, use pre-loaded values*/
+    * Use Case : Cannot just add medicine, use pre-loaded values
+    * Seeding is skipped when the pre-loaded drone already exists, so restarts never add it twice.*/
     @PostConstruct
     public void init() {
+        if (!asyncSeed) {
+            seed();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedInBackground() {
+        if (!asyncSeed) {
+            return;
+        }
+        Thread.ofPlatform().name("drone-seed").daemon().start(() -> {
+            try {
+                seed();
+            } catch (RuntimeException e) {
+                logger.error("Seeding the pre-loaded drone and medications failed", e);
+            }
+        });
+    }
+
+    public void seed() {
+        droneRepository.backfillPayloadTotals();
+        if (droneRepository.existsBySerialNumber(SEED_SERIAL_NUMBER)) {
+            // a restart: the catalog is already there, loads still should not have to read its rows
+            medicationCatalogCache.warm(medicationRepository.findAll());
+            return;
+        }
+
         Drone drone = new Drone();
-        drone.setSerialNumber("001");
+        drone.setSerialNumber(SEED_SERIAL_NUMBER);
         drone.setModel(Drone.DroneModel.CRUISERWEIGHT);
         drone.setBatteryCapacity(25);
         drone.setWeightLimit(1000);
@@ -43,7 +91,6 @@ public class MedicationService {
         medication1.setCode("MED01");
         medication1.setImage("images/pain_relief.png");
         medication1.setQuantity(1);
-        medication1.setDrone(drone);
 
         Medication medication2 = new Medication();
         medication2.setId(2L);
@@ -52,10 +99,12 @@ public class MedicationService {
         medication2.setCode("MED02");
         medication2.setImage("images/antibiotic.png");
         medication2.setQuantity(1);
-        medication2.setDrone(drone);
 
-        medicationRepository.save(medication1);
-        medicationRepository.save(medication2);
+        Medication saved1 = medicationRepository.save(medication1);
+        Medication saved2 = medicationRepository.save(medication2);
+
+        // warmed with what was persisted (save may assign a different id), loads then never read the catalog rows
+        medicationCatalogCache.warm(Stream.of(saved1, saved2).filter(Objects::nonNull).collect(Collectors.toList()));
     }
 
 }
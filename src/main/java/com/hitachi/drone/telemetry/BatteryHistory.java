@@ -0,0 +1,89 @@
+package com.hitachi.drone.telemetry;
+
+import com.hitachi.drone.dto.BatterySample;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+* Downsampled battery history of one drone: min, max and average per fixed bucket, for the
+* latest few buckets only. Readings older than the oldest kept bucket are dropped.*/
+final class BatteryHistory {
+
+    private final long bucketMillis;
+    private final long[] starts;
+    private final int[] mins;
+    private final int[] maxes;
+    private final long[] sums;
+    private final int[] counts;
+    private int newest = -1;
+    // measurement time of the level last applied to the drone
+    private long appliedAt = Long.MIN_VALUE;
+
+    BatteryHistory(long bucketMillis, int buckets) {
+        this.bucketMillis = bucketMillis;
+        starts = new long[buckets];
+        mins = new int[buckets];
+        maxes = new int[buckets];
+        sums = new long[buckets];
+        counts = new int[buckets];
+    }
+
+    synchronized void add(long atMillis, int batteryCapacity) {
+        long start = atMillis - Math.floorMod(atMillis, bucketMillis);
+        int slot;
+        if (newest < 0 || start > starts[newest]) {
+            newest = (newest + 1) % starts.length;
+            slot = newest;
+            starts[slot] = start;
+            mins[slot] = batteryCapacity;
+            maxes[slot] = batteryCapacity;
+            sums[slot] = 0;
+            counts[slot] = 0;
+        } else {
+            slot = find(start);
+            if (slot < 0) {
+                return;
+            }
+        }
+        mins[slot] = Math.min(mins[slot], batteryCapacity);
+        maxes[slot] = Math.max(maxes[slot], batteryCapacity);
+        sums[slot] += batteryCapacity;
+        counts[slot]++;
+    }
+
+    // true when the reading is newer than the level the drone has, which it then becomes
+    synchronized boolean applies(long atMillis) {
+        if (atMillis < appliedAt) {
+            return false;
+        }
+        appliedAt = atMillis;
+        return true;
+    }
+
+    synchronized List<BatterySample> samples() {
+        List<BatterySample> samples = new ArrayList<>(starts.length);
+        for (int i = 1; newest >= 0 && i <= starts.length; i++) {
+            int slot = (newest + i) % starts.length;
+            if (counts[slot] > 0) {
+                samples.add(new BatterySample(Instant.ofEpochMilli(starts[slot]), mins[slot], maxes[slot],
+                        (double) sums[slot] / counts[slot], counts[slot]));
+            }
+        }
+        return samples;
+    }
+
+    private int find(long start) {
+        for (int i = 0; i < starts.length; i++) {
+            int slot = Math.floorMod(newest - i, starts.length);
+            if (counts[slot] > 0 && starts[slot] == start) {
+                return slot;
+            }
+            if (counts[slot] == 0 || starts[slot] < start) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,169 @@
+package com.hitachi.drone.telemetry;
+
+import com.hitachi.drone.dto.BatteryReading;
+import com.hitachi.drone.dto.BatterySample;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Battery telemetry reported by the drones. Requests only put their readings on a bounded
+* TelemetryRing and are turned away when it is full, so ingestion that outruns the consumer costs
+* 429s instead of memory. Every drone.telemetry.apply-ms a single consumer drains the ring, adds
+* every reading to the drone's downsampled history, and applies only the newest level per drone:
+* to FleetStateRegistry and to the database in one JDBC batch, where loadMedication's 25% check reads it.
+* The update does not bump the drone's version, so reports never make a concurrent load retry; a load
+* saved in between may write back the level it read, until the next report corrects it.*/
+@Component
+public class BatteryTelemetry {
+    private static final Logger logger = LoggerFactory.getLogger(BatteryTelemetry.class);
+
+    private static final String UPDATE = "update drone set battery_capacity = ? where id = ? and battery_capacity <> ?";
+    private static final int DRAIN_CHUNK = 4096;
+
+    private final FleetStateRegistry fleetStateRegistry;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${drone.telemetry.buffer-size:65536}")
+    private int bufferSize = 65536;
+
+    @Value("${drone.telemetry.apply-ms:1000}")
+    private long applyMillis = 1000;
+
+    // readings stamped further ahead of their arrival than this are taken as measured on arrival
+    @Value("${drone.telemetry.max-clock-skew:PT5S}")
+    private Duration maxClockSkew = Duration.ofSeconds(5);
+
+    @Value("${drone.telemetry.history-bucket:PT1M}")
+    private Duration historyBucket = Duration.ofMinutes(1);
+
+    @Value("${drone.telemetry.history-buckets:60}")
+    private int historyBuckets = 60;
+
+    private final Map<Long, BatteryHistory> histories = new ConcurrentHashMap<>();
+    private final Object applyLock = new Object();
+    private TelemetryRing ring;
+    private ScheduledExecutorService consumer;
+
+    public BatteryTelemetry(FleetStateRegistry fleetStateRegistry, JdbcTemplate jdbcTemplate) {
+        this.fleetStateRegistry = fleetStateRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        ring = new TelemetryRing(bufferSize, maxClockSkew.toMillis());
+        consumer = Executors.newSingleThreadScheduledExecutor(
+                task -> Thread.ofPlatform().name("drone-telemetry").daemon().unstarted(task));
+        consumer.scheduleWithFixedDelay(this::applyQuietly, applyMillis, applyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        consumer.shutdown();
+        applyQuietly();
+    }
+
+    /*
+    * Queues the readings. Returns false, keeping none of them, when the buffer cannot take the whole batch.*/
+    public boolean accept(List<BatteryReading> readings) {
+        if (readings == null) {
+            throw new IllegalArgumentException("A list of battery readings is required.");
+        }
+        for (BatteryReading reading : readings) {
+            if (reading.getDroneId() == null || reading.getBatteryCapacity() < 0 || reading.getBatteryCapacity() > 100) {
+                throw new IllegalArgumentException("Every reading needs a drone id and a battery level between 0 and 100.");
+            }
+        }
+        if (readings.size() > ring.capacity()) {
+            throw new IllegalArgumentException("At most " + ring.capacity() + " readings can be sent at once.");
+        }
+        return ring.offerAll(readings, System.currentTimeMillis());
+    }
+
+    public List<BatterySample> history(long droneId) {
+        BatteryHistory history = histories.get(droneId);
+        return history == null ? Collections.emptyList() : history.samples();
+    }
+
+    // how long a client turned away should wait: about one consumer pass
+    public long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(applyMillis + 999));
+    }
+
+    public int queuedCount() {
+        return ring.size();
+    }
+
+    /*
+    * Drains everything queued so far. Returns the number of drones whose level changed.*/
+    public int apply() {
+        synchronized (applyLock) {
+            long[] ids = new long[DRAIN_CHUNK];
+            int[] levels = new int[DRAIN_CHUNK];
+            long[] times = new long[DRAIN_CHUNK];
+            // index of the newest reading per drone in this pass
+            Map<Long, long[]> newest = new HashMap<>();
+            int drained;
+            while ((drained = ring.drainTo(ids, levels, times)) > 0) {
+                for (int i = 0; i < drained; i++) {
+                    long droneId = ids[i];
+                    // only known drones get a history, otherwise made-up ids would grow it without bound
+                    if (!fleetStateRegistry.contains(droneId)) {
+                        continue;
+                    }
+                    histories.computeIfAbsent(droneId, id -> new BatteryHistory(historyBucket.toMillis(), historyBuckets))
+                            .add(times[i], levels[i]);
+                    long[] latest = newest.get(droneId);
+                    if (latest == null) {
+                        newest.put(droneId, new long[]{times[i], levels[i]});
+                    } else if (times[i] >= latest[0]) {
+                        latest[0] = times[i];
+                        latest[1] = levels[i];
+                    }
+                }
+            }
+
+            List<Object[]> rows = new ArrayList<>(newest.size());
+            newest.forEach((droneId, latest) -> {
+                if (histories.get(droneId).applies(latest[0])
+                        && fleetStateRegistry.updateBatteryCapacity(droneId, (int) latest[1])) {
+                    rows.add(new Object[]{(int) latest[1], droneId, (int) latest[1]});
+                }
+            });
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            int changed = 0;
+            for (int updated : jdbcTemplate.batchUpdate(UPDATE, rows)) {
+                changed += updated > 0 ? 1 : 0;
+            }
+            return changed;
+        }
+    }
+
+    private void applyQuietly() {
+        try {
+            apply();
+        } catch (RuntimeException e) {
+            // the registry already has the levels, the next report writes them again
+            logger.error("Applying battery telemetry failed", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.hitachi.drone.telemetry;
+
+import com.hitachi.drone.dto.BatteryReading;
+
+import java.util.List;
+
+/*
+* Bounded buffer between the ingestion requests and the telemetry consumer. Readings are kept in
+* parallel primitive arrays, so a full buffer costs the same memory as an empty one.
+* A batch is taken whole or not at all. A reading stamped further ahead of its arrival than the
+* allowed clock skew is taken as measured on arrival, so a drone with a fast clock cannot pin its level.*/
+final class TelemetryRing {
+
+    private final long[] droneIds;
+    private final int[] batteryCapacities;
+    private final long[] times;
+    private final int mask;
+    private final long maxSkewMillis;
+    // positions since the start; the live readings are [head, tail)
+    private long head;
+    private long tail;
+
+    TelemetryRing(int minimumCapacity, long maxSkewMillis) {
+        int capacity = Integer.highestOneBit(Math.max(2, minimumCapacity) - 1) << 1;
+        droneIds = new long[capacity];
+        batteryCapacities = new int[capacity];
+        times = new long[capacity];
+        mask = capacity - 1;
+        this.maxSkewMillis = maxSkewMillis;
+    }
+
+    synchronized boolean offerAll(List<BatteryReading> readings, long receivedAtMillis) {
+        if (tail - head + readings.size() > droneIds.length) {
+            return false;
+        }
+        for (BatteryReading reading : readings) {
+            int slot = (int) (tail++ & mask);
+            droneIds[slot] = reading.getDroneId();
+            batteryCapacities[slot] = reading.getBatteryCapacity();
+            long at = reading.getAt() == null ? receivedAtMillis : reading.getAt().toEpochMilli();
+            times[slot] = at - receivedAtMillis > maxSkewMillis ? receivedAtMillis : at;
+        }
+        return true;
+    }
+
+    // moves up to ids.length readings into the given arrays, oldest first; returns how many
+    synchronized int drainTo(long[] ids, int[] levels, long[] at) {
+        int count = (int) Math.min(tail - head, ids.length);
+        for (int i = 0; i < count; i++) {
+            int slot = (int) (head++ & mask);
+            ids[i] = droneIds[slot];
+            levels[i] = batteryCapacities[slot];
+            at[i] = times[slot];
+        }
+        return count;
+    }
+
+    synchronized int size() {
+        return (int) (tail - head);
+    }
+
+    int capacity() {
+        return droneIds.length;
+    }
+}
@@ -0,0 +1,303 @@
+package com.hitachi.drone.writebehind;
+
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.repository.DroneRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Write-behind store for the scheduler transitions in drone.scheduler.mode=WRITE_BEHIND.
+* The scheduler has already applied a transition to FleetStateRegistry when it is recorded here;
+* the record is appended to the TransitionLog right away and the drone's pending write is
+* coalesced in memory. A background thread writes the pending drones to the database every
+* drone.write-behind.flush-ms in one JDBC batch, and deletes the log segments that batch covered.
+* Whatever is still in the log when the next WRITE_BEHIND instance starts is replayed into the database
+* before anything reads it.*/
+@Component
+public class DroneWriteBehind {
+    private static final Logger logger = LoggerFactory.getLogger(DroneWriteBehind.class);
+
+    // only applied while the row is still in the state the scheduler moved it from
+    private static final String UPDATE = "update drone set state = ?, battery_capacity = ?, state_changed_at = ?, " +
+            "payload_weight = case when ? then 0 else payload_weight end, " +
+            "payload_item_count = case when ? then 0 else payload_item_count end, " +
+            "version = version + 1 where id = ? and state = ?";
+    // replay: the log is the newest record of these drones, whatever the row says
+    private static final String REPLAY = "update drone set state = ?, battery_capacity = ?, state_changed_at = ?, " +
+            "payload_weight = case when ? then 0 else payload_weight end, " +
+            "payload_item_count = case when ? then 0 else payload_item_count end, " +
+            "version = version + 1 where id = ?";
+    // a finished delivery also takes the drone's payload lines
+    private static final String CLEAR_PAYLOAD = "delete from payload_item where drone_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DroneRepository droneRepository;
+    private final FleetStateRegistry fleetStateRegistry;
+    // the state update and the payload delete of a delivery commit together or not at all
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${drone.scheduler.mode:ENTITY}")
+    private String schedulerMode = "ENTITY";
+
+    @Value("${drone.write-behind.log-dir:./data/wal}")
+    private String logDir = "./data/wal";
+
+    @Value("${drone.write-behind.flush-ms:1000}")
+    private long flushMillis = 1000;
+
+    // off trades the last few appends on power loss for cheaper ticks; a process crash loses nothing either way
+    @Value("${drone.write-behind.fsync:true}")
+    private boolean fsync = true;
+
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private Map<Long, PendingWrite> pending = new HashMap<>();
+    // closed segments whose records are not all in the database yet
+    private final List<Path> unflushedSegments = new ArrayList<>();
+    private TransitionLog log;
+    private ScheduledExecutorService flusher;
+
+    public DroneWriteBehind(JdbcTemplate jdbcTemplate, DroneRepository droneRepository,
+                            FleetStateRegistry fleetStateRegistry, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.droneRepository = droneRepository;
+        this.fleetStateRegistry = fleetStateRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path directory = Path.of(logDir);
+        // the log belongs to the database the WRITE_BEHIND instance was writing to; any other mode leaves it alone
+        if (!"WRITE_BEHIND".equals(schedulerMode)) {
+            if (!TransitionLog.segments(directory).isEmpty()) {
+                logger.warn("Transition log in {} is not replayed outside WRITE_BEHIND mode", directory);
+            }
+            return;
+        }
+        replay(directory);
+        log = TransitionLog.open(directory, fsync);
+        flusher = Executors.newSingleThreadScheduledExecutor(
+                task -> Thread.ofPlatform().name("drone-write-behind").daemon().unstarted(task));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flushQuietly();
+        synchronized (lock) {
+            log.close();
+        }
+    }
+
+    public void record(long droneId, Drone.DroneState from, Drone.DroneState to, int batteryCapacity,
+                       boolean clearPayload, long changedAtMillis) {
+        synchronized (lock) {
+            log.append(droneId, to, clearPayload, batteryCapacity, changedAtMillis);
+            pending.computeIfAbsent(droneId, id -> new PendingWrite(from))
+                    .apply(to, batteryCapacity, clearPayload, changedAtMillis);
+        }
+    }
+
+    // makes every transition recorded so far durable; called once per scheduler tick
+    public void sync() {
+        synchronized (lock) {
+            log.sync();
+        }
+    }
+
+    /*
+    * Writes all pending drones in one batch. Returns the number of rows written.*/
+    public int flush() {
+        synchronized (flushLock) {
+            Map<Long, PendingWrite> batch;
+            List<Path> covered;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = pending;
+                pending = new HashMap<>();
+                try {
+                    unflushedSegments.add(log.rotate());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                covered = new ArrayList<>(unflushedSegments);
+            }
+
+            List<Long> ids = new ArrayList<>(batch.keySet());
+            List<Object[]> rows = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                PendingWrite write = batch.get(id);
+                rows.add(new Object[]{write.state.name(), write.batteryCapacity,
+                        Timestamp.from(Instant.ofEpochMilli(write.changedAtMillis)), write.clearPayload,
+                        write.clearPayload, id, write.fromState.name()});
+            }
+            int[] updated;
+            try {
+                updated = transactionTemplate.execute(status -> {
+                    int[] applied = jdbcTemplate.batchUpdate(UPDATE, rows);
+                    List<Object[]> delivered = new ArrayList<>();
+                    for (int i = 0; i < applied.length; i++) {
+                        if (applied[i] > 0 && batch.get(ids.get(i)).clearPayload) {
+                            delivered.add(new Object[]{ids.get(i)});
+                        }
+                    }
+                    if (!delivered.isEmpty()) {
+                        jdbcTemplate.batchUpdate(CLEAR_PAYLOAD, delivered);
+                    }
+                    return applied;
+                });
+            } catch (DataAccessException e) {
+                requeue(batch);
+                throw e;
+            }
+            synchronized (lock) {
+                unflushedSegments.removeAll(covered);
+            }
+            try {
+                TransitionLog.delete(covered);
+            } catch (IOException e) {
+                // replaying them again later only rewrites the same values
+                logger.warn("Could not delete flushed transition log segments {}", covered, e);
+            }
+
+            int written = 0;
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] > 0) {
+                    written++;
+                    // a load committed on the row before the flush put the state it read back into the registry
+                    if (fleetStateRegistry.getState(ids.get(i)) != batch.get(ids.get(i)).state) {
+                        droneRepository.findById(ids.get(i)).ifPresent(fleetStateRegistry::reconcile);
+                    }
+                    continue;
+                }
+                // the row was changed outside the scheduler since; the database wins, the registry follows it
+                Long id = ids.get(i);
+                logger.warn("Drone {} changed before its write-behind transition was flushed, dropping it", id);
+                droneRepository.findById(id).ifPresent(fleetStateRegistry::reconcile);
+            }
+            return written;
+        }
+    }
+
+    /*
+    * Writes the pending transitions now if the drone has one, so a load that reads the drone's row sees
+    * the state the registry already shows. Waits for a flush that is already running.*/
+    public void flushPending(long droneId) {
+        synchronized (flushLock) {
+            boolean waiting;
+            synchronized (lock) {
+                waiting = pending.containsKey(droneId);
+            }
+            if (waiting) {
+                flush();
+            }
+        }
+    }
+
+    public int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Write-behind flush failed, the transitions stay queued and logged", e);
+        }
+    }
+
+    // a failed batch goes back under the writes recorded since, which are newer
+    private void requeue(Map<Long, PendingWrite> batch) {
+        synchronized (lock) {
+            batch.forEach((id, older) -> pending.merge(id, older, (newer, old) -> newer.after(old)));
+        }
+    }
+
+    private void replay(Path directory) throws IOException {
+        List<Path> segments = TransitionLog.segments(directory);
+        if (segments.isEmpty()) {
+            return;
+        }
+        Map<Long, PendingWrite> replayed = new HashMap<>();
+        TransitionLog.read(segments, (droneId, state, clearPayload, batteryCapacity, changedAtMillis) ->
+                replayed.computeIfAbsent(droneId, id -> new PendingWrite(null))
+                        .apply(state, batteryCapacity, clearPayload, changedAtMillis));
+        List<Object[]> rows = new ArrayList<>(replayed.size());
+        List<Object[]> delivered = new ArrayList<>();
+        replayed.forEach((id, write) -> {
+            rows.add(new Object[]{write.state.name(), write.batteryCapacity,
+                    Timestamp.from(Instant.ofEpochMilli(write.changedAtMillis)), write.clearPayload,
+                    write.clearPayload, id});
+            if (write.clearPayload) {
+                delivered.add(new Object[]{id});
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(REPLAY, rows);
+            if (!delivered.isEmpty()) {
+                jdbcTemplate.batchUpdate(CLEAR_PAYLOAD, delivered);
+            }
+        });
+        TransitionLog.delete(segments);
+        logger.info("Replayed {} logged transitions from {} segments", replayed.size(), segments.size());
+    }
+
+    private static final class PendingWrite {
+        // the state the database row is in, as far as the scheduler knows
+        private final Drone.DroneState fromState;
+        private Drone.DroneState state;
+        private int batteryCapacity;
+        private boolean clearPayload;
+        private long changedAtMillis;
+
+        private PendingWrite(Drone.DroneState fromState) {
+            this.fromState = fromState;
+        }
+
+        private PendingWrite apply(Drone.DroneState state, int batteryCapacity, boolean clearPayload,
+                                   long changedAtMillis) {
+            this.state = state;
+            this.batteryCapacity = batteryCapacity;
+            this.clearPayload |= clearPayload;
+            this.changedAtMillis = changedAtMillis;
+            return this;
+        }
+
+        private PendingWrite after(PendingWrite older) {
+            PendingWrite merged = new PendingWrite(older.fromState);
+            merged.clearPayload = older.clearPayload;
+            return merged.apply(state, batteryCapacity, clearPayload, changedAtMillis);
+        }
+    }
+}
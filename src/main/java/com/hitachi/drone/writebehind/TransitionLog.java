@@ -0,0 +1,164 @@
+package com.hitachi.drone.writebehind;
+
+import com.hitachi.drone.model.Drone;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+* Append-only log of drone state transitions, split into numbered segment files.
+* A record is fixed size: drone id, state, payload cleared flag, battery capacity, time of the
+* change and a CRC32 of those fields. Reading stops at the first short or corrupt record, which is
+* what a crash in the middle of an append leaves behind.
+* Not thread safe, DroneWriteBehind serializes all access.*/
+class TransitionLog implements AutoCloseable {
+
+    static final int RECORD_SIZE = 8 + 1 + 1 + 4 + 8 + 4;
+    private static final String PREFIX = "transitions-";
+    private static final String SUFFIX = ".log";
+    private static final Drone.DroneState[] STATES = Drone.DroneState.values();
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 2048);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private Path segment;
+
+    private TransitionLog(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    // starts a new segment after the ones already in the directory
+    static TransitionLog open(Path directory, boolean fsync) throws IOException {
+        Files.createDirectories(directory);
+        TransitionLog log = new TransitionLog(directory, fsync);
+        List<Path> existing = segments(directory);
+        log.startSegment(existing.isEmpty() ? 0 : number(existing.get(existing.size() - 1)) + 1);
+        return log;
+    }
+
+    void append(long droneId, Drone.DroneState state, boolean clearPayload, int batteryCapacity, long changedAtMillis) {
+        if (buffer.remaining() < RECORD_SIZE) {
+            drain();
+        }
+        int start = buffer.position();
+        buffer.putLong(droneId)
+                .put((byte) state.ordinal())
+                .put((byte) (clearPayload ? 1 : 0))
+                .putInt(batteryCapacity)
+                .putLong(changedAtMillis);
+        crc.reset();
+        crc.update(buffer.duplicate().position(start).limit(buffer.position()));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    // everything appended so far reaches the file, and the disk when fsync is on
+    void sync() {
+        drain();
+        if (fsync) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /*
+    * Syncs and closes the current segment, continues in a new one. Returns the closed segment,
+    * which can be deleted once everything in it is in the database.*/
+    Path rotate() throws IOException {
+        sync();
+        channel.close();
+        Path closed = segment;
+        startSegment(number(closed) + 1);
+        return closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /*
+    * Every intact record of the given segments, in the order they were appended.*/
+    static void read(List<Path> segments, RecordHandler handler) throws IOException {
+        CRC32 checksum = new CRC32();
+        for (Path file : segments) {
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file));
+            while (records.remaining() >= RECORD_SIZE) {
+                int start = records.position();
+                long droneId = records.getLong();
+                byte state = records.get();
+                boolean clearPayload = records.get() == 1;
+                int batteryCapacity = records.getInt();
+                long changedAtMillis = records.getLong();
+                checksum.reset();
+                checksum.update(records.array(), start, RECORD_SIZE - 4);
+                if (records.getInt() != (int) checksum.getValue() || state < 0 || state >= STATES.length) {
+                    break;
+                }
+                handler.record(droneId, STATES[state], clearPayload, batteryCapacity, changedAtMillis);
+            }
+        }
+    }
+
+    static void delete(List<Path> segments) throws IOException {
+        for (Path file : segments) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void startSegment(long number) throws IOException {
+        // zero padded, so name order is append order
+        segment = directory.resolve(PREFIX + String.format("%019d", number) + SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private static long number(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    @FunctionalInterface
+    interface RecordHandler {
+        void record(long droneId, Drone.DroneState state, boolean clearPayload, int batteryCapacity, long changedAtMillis);
+    }
+}
@@ -1,4 +1,4 @@
--- Example Medication data
-INSERT INTO Medication (name, weight, code, image, drone_id) VALUES 
-('PainRelief', 0.5, 'MED_PAIN', 'images/pain_relief.png', 1),
-('Antibiotic', 0.3, 'MED_ANTIB', 'images/antibiotic.png', 1);
\ No newline at end of file
+-- Example Medication catalog data
+INSERT INTO Medication (id, name, weight, quantity, code, image) VALUES
+(next value for medication_seq, 'PainRelief', 0.5, 1, 'MED_PAIN', 'images/pain_relief.png'),
+(next value for medication_seq, 'Antibiotic', 0.3, 1, 'MED_ANTIB', 'images/antibiotic.png');
@@ -0,0 +1,29 @@
+-- Schema of the Drone and Medication entities, as applied by the faststart profile instead of ddl-auto.
+-- Databases created by ddl-auto=update before are baselined at this version.
+create sequence medication_seq start with 1 increment by 50;
+
+create table drone (
+    id bigint generated by default as identity,
+    serial_number varchar(100),
+    model enum ('CRUISERWEIGHT','HEAVYWEIGHT','LIGHTWEIGHT','MIDDLEWEIGHT'),
+    weight_limit float(53) not null,
+    battery_capacity integer not null,
+    state enum ('DELIVERED','DELIVERING','IDLE','LOADED','LOADING','RETURNING'),
+    state_changed_at timestamp(6) with time zone,
+    payload_weight float(53) default 0 not null,
+    payload_item_count integer default -1 not null,
+    version bigint default 0 not null,
+    primary key (id)
+);
+
+create table medication (
+    id bigint not null,
+    name varchar(255),
+    weight float(53) not null,
+    quantity integer not null,
+    code varchar(255),
+    image varchar(255),
+    drone_id bigint,
+    primary key (id),
+    constraint fk_medication_drone foreign key (drone_id) references drone
+);
@@ -0,0 +1,32 @@
+-- Splits the payload out of the medication table: medication keeps one catalog row per code, and what
+-- a drone carries becomes one payload_item per drone and medication with the summed quantity and weight.
+create sequence payload_item_seq start with 1 increment by 50;
+
+create table payload_item (
+    id bigint not null,
+    drone_id bigint not null,
+    medication_id bigint not null,
+    quantity integer not null,
+    weight float(53) not null,
+    primary key (id),
+    constraint uk_payload_item_drone_medication unique (drone_id, medication_id),
+    constraint fk_payload_item_drone foreign key (drone_id) references drone
+);
+
+-- the rows loaded onto drones, folded into lines of the lowest id that has their code
+insert into payload_item (id, drone_id, medication_id, quantity, weight)
+select next value for payload_item_seq, line.drone_id, line.medication_id, line.quantity, line.weight
+from (select m.drone_id, c.id as medication_id, sum(m.quantity) as quantity, sum(m.weight) as weight
+      from medication m
+      join (select code, min(id) as id from medication group by code) c on c.code = m.code
+      where m.drone_id is not null
+      group by m.drone_id, c.id) line;
+
+delete from medication where id not in (select min(id) from medication group by code);
+alter table medication drop column drone_id;
+
+alter table payload_item add constraint fk_payload_item_medication foreign key (medication_id) references medication;
+
+update drone set
+    payload_weight = (select coalesce(sum(p.weight), 0) from payload_item p where p.drone_id = drone.id),
+    payload_item_count = (select count(*) from payload_item p where p.drone_id = drone.id);
@@ -0,0 +1,11 @@
+-- Unique serial numbers and the indexes behind the fleet filters of GET v1/drone/view.
+-- Registration used to check the id instead of the serial number, so duplicates may exist:
+-- every copy but the oldest gets its id appended.
+update drone set serial_number = serial_number || '-' || id
+where serial_number is not null
+  and id not in (select min(id) from drone where serial_number is not null group by serial_number);
+
+alter table drone add constraint uk_drone_serial_number unique (serial_number);
+create index idx_drone_state_battery on drone (state, battery_capacity);
+create index idx_drone_battery on drone (battery_capacity);
+create index idx_drone_model on drone (model);
@@ -0,0 +1,11 @@
+-- Shard leases of several scheduler instances on one database (drone.scheduler.lease.enabled):
+-- who ticks which shard until when, and the instances that are alive.
+create table scheduler_lease (
+    shard int primary key,
+    owner varchar(255),
+    expires_at bigint not null
+);
+create table scheduler_node (
+    node_id varchar(255) primary key,
+    expires_at bigint not null
+);
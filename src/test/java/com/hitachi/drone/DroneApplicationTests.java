@@ -2,8 +2,10 @@ package com.hitachi.drone;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
-@SpringBootTest
+@SpringBootTest(properties = "drone.test.database=application-test")
+@ActiveProfiles("test")
 class DroneApplicationTests {
 
 	@Test
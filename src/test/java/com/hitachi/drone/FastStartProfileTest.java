@@ -0,0 +1,60 @@
+package com.hitachi.drone;
+
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.service.MedicationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+* The faststart profile trusts the migrations instead of diffing the schema, so this is where they are
+* validated against the entities.*/
+@SpringBootTest(properties = {
+        "drone.test.database=faststart-test",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@ActiveProfiles({"test", "faststart"})
+class FastStartProfileTest {
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private MedicationService medicationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migrations_shouldMatchTheEntities() {
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from \"flyway_schema_history\" where \"version\" = '1' and \"success\"", Integer.class));
+        // the scheduler's lease tables come from a migration as well, not from ShardLeases at runtime
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from \"flyway_schema_history\" where \"version\" = '4' and \"success\"", Integer.class));
+    }
+
+    @Test
+    void seeding_shouldRunInTheBackgroundOnlyOnce() throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && medicationRepository.count() < 2; attempt++) {
+            Thread.sleep(100);
+        }
+        assertTrue(droneRepository.existsBySerialNumber("001"));
+        assertEquals(2, medicationRepository.count());
+
+        medicationService.seed();
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from drone where serial_number = '001'", Integer.class));
+        assertEquals(2, medicationRepository.count());
+    }
+}
@@ -0,0 +1,115 @@
+package com.hitachi.drone.admission;
+
+import com.hitachi.drone.catalog.MedicationCatalogCache;
+import com.hitachi.drone.metrics.DroneMetrics;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.service.DroneServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdmissionControl admissionControl;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        admissionControl = new AdmissionControl(new DroneMetrics(meterRegistry, new FleetStateRegistry(),
+                new MedicationCatalogCache()));
+        ReflectionTestUtils.setField(admissionControl, "writeMaxInFlight", 1);
+        ReflectionTestUtils.setField(admissionControl, "writeMaxQueued", 0);
+        ReflectionTestUtils.setField(admissionControl, "writeMaxWait", Duration.ofSeconds(2));
+        admissionControl.start();
+    }
+
+    @Test
+    void gateFor_shouldSplitWritesFromReadsAndSkipStreamsAndTelemetry() {
+        assertSame(admissionControl.writeGate(), admissionControl.gateFor(request("POST", "/v1/drone/register")));
+        assertSame(admissionControl.writeGate(), admissionControl.gateFor(request("POST", "/v1/drone/4/load")));
+        assertSame(admissionControl.writeGate(), admissionControl.gateFor(request("POST", "/v1/drone/4/7/load")));
+        assertSame(admissionControl.readGate(), admissionControl.gateFor(request("GET", "/v1/drone/4/status")));
+        assertNull(admissionControl.gateFor(request("POST", "/v1/drone/telemetry")));
+        assertNull(admissionControl.gateFor(request("GET", "/v1/drone/events")));
+        assertNull(admissionControl.gateFor(request("GET", "/v1/drone/view/stream")));
+        assertNull(admissionControl.gateFor(request("GET", "/h2-console/")));
+    }
+
+    @Test
+    void start_shouldAdmitAWholeBatchOfBatchedLoadsInGroupCommitMode() {
+        AdmissionControl grouped = new AdmissionControl(new DroneMetrics(new SimpleMeterRegistry(), new FleetStateRegistry(),
+                new MedicationCatalogCache()));
+        ReflectionTestUtils.setField(grouped, "concurrencyMode", DroneServiceImpl.ConcurrencyMode.GROUP_COMMIT);
+        ReflectionTestUtils.setField(grouped, "groupCommitMaxBatch", 48);
+        grouped.start();
+
+        assertEquals(48, grouped.batchedLoadGate().maxInFlight());
+        assertEquals(6, grouped.writeGate().maxInFlight());
+        assertSame(grouped.batchedLoadGate(), grouped.gateFor(request("POST", "/v1/drone/4/7/load")));
+        // register, dispatch and bulk loads still hold a connection each
+        assertSame(grouped.writeGate(), grouped.gateFor(request("POST", "/v1/drone/register")));
+        assertSame(grouped.writeGate(), grouped.gateFor(request("POST", "/v1/drone/dispatch")));
+        assertSame(grouped.writeGate(), grouped.gateFor(request("POST", "/v1/drone/4/load")));
+        assertNull(admissionControl.batchedLoadGate());
+    }
+
+    @Test
+    void busyWrites_shouldGet429WhileReadsStillPass() throws Exception {
+        CountDownLatch inHandler = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slowWrite = (request, response) -> {
+            inHandler.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                admissionControl.doFilter(request("POST", "/v1/drone/register"), new MockHttpServletResponse(), slowWrite);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(inHandler.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockFilterChain notReached = new MockFilterChain();
+        admissionControl.doFilter(request("POST", "/v1/drone/4/load"), rejected, notReached);
+        MockHttpServletResponse read = new MockHttpServletResponse();
+        admissionControl.doFilter(request("GET", "/v1/drone/4/status"), read, new MockFilterChain());
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("2", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(rejected.getContentAsString().contains("retry later"));
+        assertNull(notReached.getRequest());
+        assertEquals(200, read.getStatus());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(0, admissionControl.writeGate().inFlight());
+        assertEquals(1, meterRegistry.get("drone.admission.rejected").tag("gate", "write").functionCounter().count());
+        assertEquals(1, meterRegistry.get("drone.admission.wait").tag("gate", "write").tag("outcome", "rejected")
+                .timer().count());
+        assertEquals(0, meterRegistry.get("drone.admission.queued").tag("gate", "write").gauge().value());
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+}
@@ -0,0 +1,58 @@
+package com.hitachi.drone.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionGateTest {
+
+    @Test
+    void enter_shouldAdmitUpToTheLimitThenRejectOnceTheWaitRunsOut() throws InterruptedException {
+        AdmissionGate gate = new AdmissionGate("write", 2, 4, Duration.ofMillis(50));
+
+        assertTrue(gate.enter());
+        assertTrue(gate.enter());
+        assertEquals(2, gate.inFlight());
+
+        long begin = System.nanoTime();
+        assertFalse(gate.enter());
+        assertTrue(System.nanoTime() - begin >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, gate.rejectedCount());
+        assertEquals(0, gate.queued());
+
+        gate.leave();
+        assertTrue(gate.enter());
+        assertEquals(1, gate.retryAfterSeconds());
+    }
+
+    @Test
+    void enter_shouldHandAFreedPermitToAQueuedRequest() throws Exception {
+        AdmissionGate gate = new AdmissionGate("write", 1, 1, Duration.ofSeconds(10));
+        assertTrue(gate.enter());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return gate.enter();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (gate.queued() == 0) {
+            Thread.onSpinWait();
+        }
+        // the queue is full: turned away without waiting
+        long begin = System.nanoTime();
+        assertFalse(gate.enter());
+        assertTrue(System.nanoTime() - begin < TimeUnit.SECONDS.toNanos(5));
+
+        gate.leave();
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, gate.inFlight());
+        assertEquals(1, gate.rejectedCount());
+        assertEquals(10, gate.retryAfterSeconds());
+    }
+}
@@ -0,0 +1,131 @@
+package com.hitachi.drone.catalog;
+
+import com.hitachi.drone.model.Medication;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MedicationCatalogCacheTest {
+
+    private MedicationCatalogCache cache;
+    private Medication biogesic;
+    private Medication alaxan;
+
+    @BeforeEach
+    void setUp() {
+        cache = new MedicationCatalogCache();
+        biogesic = new Medication(1L, "Biogesic", 100, 1, "MED01", "images/pain_relief.png");
+        alaxan = new Medication(2L, "Alaxan", 150, 1, "MED02", "images/antibiotic.png");
+    }
+
+    @Test
+    void get_shouldLoadOnceAndThenHit() {
+        List<Long> loads = new ArrayList<>();
+
+        Optional<CatalogEntry> first = cache.get(1L, id -> {
+            loads.add(id);
+            return Optional.of(biogesic);
+        });
+        Optional<CatalogEntry> second = cache.get(1L, id -> {
+            loads.add(id);
+            return Optional.of(biogesic);
+        });
+
+        assertEquals(List.of(1L), loads);
+        assertEquals("Biogesic", second.get().name());
+        assertEquals(first.get(), second.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void get_shouldNotCacheUnknownIds() {
+        assertTrue(cache.get(9L, id -> Optional.empty()).isEmpty());
+        assertTrue(cache.get(9L, id -> Optional.empty()).isEmpty());
+
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void entries_shouldBeSnapshotsOfTheEntity() {
+        cache.warm(List.of(biogesic));
+        biogesic.setWeight(999);
+
+        CatalogEntry entry = cache.get(1L, id -> Optional.empty()).get();
+        Medication copy = entry.toMedication();
+
+        assertEquals(100, entry.weight());
+        assertNotSame(copy, entry.toMedication());
+        assertEquals(100, copy.getWeight());
+    }
+
+    @Test
+    void getAll_shouldLoadOnlyMissesInOneCall() {
+        cache.warm(List.of(biogesic));
+        List<List<Long>> loads = new ArrayList<>();
+
+        Map<Long, CatalogEntry> entries = cache.getAll(List.of(1L, 2L, 2L, 3L), ids -> {
+            loads.add(ids);
+            return List.of(alaxan);
+        });
+
+        assertEquals(List.of(List.of(2L, 3L)), loads);
+        assertEquals(2, entries.size());
+        assertEquals("Alaxan", entries.get(2L).name());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void maxSize_shouldEvictLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(cache, "maxSize", 2);
+        cache.warm(List.of(biogesic, alaxan));
+        cache.get(1L, id -> Optional.empty());
+
+        cache.warm(List.of(new Medication(3L, "Neozep", 50, 1, "MED03", null)));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(2L, id -> Optional.empty()).isEmpty());
+        assertTrue(cache.get(1L, id -> Optional.empty()).isPresent());
+    }
+
+    @Test
+    void ttl_shouldExpireEntries() {
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ZERO);
+        cache.warm(List.of(biogesic));
+
+        assertTrue(cache.get(1L, id -> Optional.empty()).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidate_shouldForceReload() {
+        cache.warm(List.of(biogesic, alaxan));
+
+        cache.invalidate(1L);
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertTrue(cache.get(2L, id -> Optional.empty()).isEmpty());
+    }
+
+    @Test
+    void invalidate_shouldDropLoadsThatStartedBefore() {
+        Optional<CatalogEntry> loaded = cache.get(1L, id -> {
+            cache.invalidateAll();
+            return Optional.of(biogesic);
+        });
+
+        assertTrue(loaded.isPresent());
+        assertEquals(0, cache.size());
+    }
+}
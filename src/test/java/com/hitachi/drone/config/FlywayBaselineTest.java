@@ -0,0 +1,93 @@
+package com.hitachi.drone.config;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+* Databases kept by ddl-auto=update at different versions of the application, started with faststart.*/
+class FlywayBaselineTest {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp(TestInfo testInfo) {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:flyway-baseline-" + testInfo.getTestMethod().orElseThrow().getName()
+                + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void migrate_shouldStopOnASchemaFromBeforeV1() {
+        // the drone and medication tables of the first version, before running totals and optimistic locking
+        jdbcTemplate.execute("create table drone (id bigint generated by default as identity primary key, "
+                + "serial_number varchar(100), model varchar(20), weight_limit float(53) not null, "
+                + "battery_capacity integer not null, state varchar(20))");
+        jdbcTemplate.execute("create table medication (id bigint primary key, name varchar(255), "
+                + "weight float(53) not null, quantity integer not null, code varchar(255), image varchar(255), "
+                + "drone_id bigint references drone)");
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> new FlywayBaseline().migrate(flyway(null)));
+
+        assertTrue(error.getMessage().contains("payload_weight"));
+        assertTrue(error.getMessage().contains("without the faststart profile"));
+        assertEquals(0, flyway(null).info().applied().length);
+    }
+
+    @Test
+    void migrate_shouldBaselineASchemaFromBeforePayloadLinesAtV1() {
+        flyway("1").migrate();
+        jdbcTemplate.execute("drop table \"flyway_schema_history\"");
+        jdbcTemplate.update("insert into drone (serial_number, model, weight_limit, battery_capacity, state) "
+                + "values ('OLD-1', 'HEAVYWEIGHT', 500, 90, 'LOADING')");
+        jdbcTemplate.update("insert into medication (id, name, weight, quantity, code, drone_id) "
+                + "values (1, 'OLD_100G', 100, 1, 'OLD_100G', (select id from drone))");
+
+        new FlywayBaseline().migrate(flyway(null));
+
+        assertEquals("1", baselineVersion());
+        assertEquals("4", flyway(null).info().current().getVersion().getVersion());
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from payload_item", Integer.class));
+    }
+
+    @Test
+    void migrate_shouldOnlyBaselineACurrentSchema() {
+        flyway(null).migrate();
+        jdbcTemplate.execute("drop table \"flyway_schema_history\"");
+
+        new FlywayBaseline().migrate(flyway(null));
+
+        assertEquals("4", baselineVersion());
+        assertEquals(1, flyway(null).info().applied().length);
+    }
+
+    @Test
+    void migrate_shouldRunEveryMigrationOnAnEmptyDatabase() {
+        new FlywayBaseline().migrate(flyway(null));
+
+        assertEquals(4, flyway(null).info().applied().length);
+        assertEquals("4", flyway(null).info().current().getVersion().getVersion());
+    }
+
+    private Flyway flyway(String target) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .target(target == null ? "latest" : target)
+                .load();
+    }
+
+    private String baselineVersion() {
+        return jdbcTemplate.queryForObject(
+                "select \"version\" from \"flyway_schema_history\" where \"type\" = 'BASELINE'", String.class);
+    }
+}
@@ -0,0 +1,85 @@
+package com.hitachi.drone.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hitachi.drone.config.BinaryFormatsConfig;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.repository.DroneRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = "drone.test.database=content-negotiation-test")
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class ContentNegotiationTest {
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Test
+    void view_shouldEncodeTheSameFleetInSmile() throws Exception {
+        MockHttpServletResponse json = fetch("/v1/drone/view", MediaType.APPLICATION_JSON);
+        MockHttpServletResponse smile = fetch("/v1/drone/view", SMILE);
+
+        assertTrue(SMILE.isCompatibleWith(MediaType.valueOf(smile.getContentType())));
+        assertEquals(objectMapper.readTree(json.getContentAsByteArray()),
+                decode(BinaryFormatsConfig.smileMapper(new Jackson2ObjectMapperBuilder()), smile));
+        assertTrue(smile.getContentAsByteArray().length < json.getContentAsByteArray().length);
+    }
+
+    @Test
+    void loadAndStatus_shouldEncodeInCborAndVaryByAccept() throws Exception {
+        Drone drone = new Drone();
+        drone.setSerialNumber("NEGOTIATION-1");
+        drone.setModel(Drone.DroneModel.LIGHTWEIGHT);
+        drone.setWeightLimit(500);
+        drone.setBatteryCapacity(80);
+        drone.setState(Drone.DroneState.IDLE);
+        long id = droneRepository.save(drone).getId();
+        ObjectMapper cbor = BinaryFormatsConfig.cborMapper(new Jackson2ObjectMapperBuilder());
+
+        MockHttpServletResponse load = fetch("/v1/drone/" + id + "/load", MediaType.APPLICATION_CBOR);
+        MockHttpServletResponse status = fetch("/v1/drone/" + id + "/status", MediaType.APPLICATION_CBOR);
+
+        assertEquals(MediaType.APPLICATION_CBOR, MediaType.valueOf(load.getContentType()));
+        assertEquals(objectMapper.readTree(fetch("/v1/drone/" + id + "/load", MediaType.APPLICATION_JSON)
+                .getContentAsByteArray()), decode(cbor, load));
+        assertTrue(decode(cbor, status).get("is_available_for_loading").isBoolean());
+        assertTrue(load.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT));
+        assertTrue(status.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT));
+        // a CBOR body is not byte for byte the JSON one, so the shared validators are weak
+        assertTrue(load.getHeader(HttpHeaders.ETAG).startsWith("W/"));
+        assertTrue(status.getHeader(HttpHeaders.ETAG).startsWith("W/"));
+    }
+
+    private MockHttpServletResponse fetch(String path, MediaType accept) throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get(path).accept(accept)).andReturn().getResponse();
+        assertEquals(200, response.getStatus());
+        return response;
+    }
+
+    private static JsonNode decode(ObjectMapper mapper, MockHttpServletResponse response) throws IOException {
+        return mapper.readTree(response.getContentAsByteArray());
+    }
+}
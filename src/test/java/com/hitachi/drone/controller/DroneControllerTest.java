@@ -1,22 +1,49 @@
 package com.hitachi.drone.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hitachi.drone.dto.BatteryReading;
+import com.hitachi.drone.dto.DispatchResult;
+import com.hitachi.drone.dto.DroneAssignment;
+import com.hitachi.drone.dto.DroneCandidate;
+import com.hitachi.drone.dto.DroneFilter;
+import com.hitachi.drone.dto.DronePage;
+import com.hitachi.drone.dto.DroneTransition;
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.dto.MedicationView;
+import com.hitachi.drone.events.DroneEventStream;
 import com.hitachi.drone.exception.BatterLevelLowException;
 import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.journal.TransitionJournal;
 import com.hitachi.drone.model.Drone;
 import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.service.DispatchService;
 import com.hitachi.drone.service.DroneService;
+import com.hitachi.drone.telemetry.BatteryTelemetry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 class DroneControllerTest {
@@ -27,6 +54,21 @@ class DroneControllerTest {
     @Mock
     private DroneService droneService;
 
+    @Mock
+    private DispatchService dispatchService;
+
+    @Mock
+    private TransitionJournal transitionJournal;
+
+    @Mock
+    private BatteryTelemetry batteryTelemetry;
+
+    @Mock
+    private DroneEventStream droneEventStream;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     private Drone testDrone;
 
     @BeforeEach
@@ -97,48 +139,276 @@ class DroneControllerTest {
     }
 
     @Test
-    void viewDroneLoad_shouldReturnLoadedMedications() {
-        // Assuming Medication is the correct type to be returned
-        Medication medication = new Medication();
-        medication.setName("Biogesic");
-        medication.setWeight(100);
-        medication.setCode("MED01");
-        medication.setImage("images/pain_relief.png");
-        medication.setQuantity(1);
+    void loadDroneBulk_shouldReturnUpdatedDrone_whenSuccessful() throws WeightLimitExceededException, BatterLevelLowException {
+        List<LoadItem> items = List.of(new LoadItem(1L, 3), new LoadItem(2L, 1));
+        when(droneService.loadDrone("1", items)).thenReturn(Optional.of(testDrone));
 
-        // Create a list of medications to return
-        List<Medication> medications = Collections.singletonList(medication);
+        ResponseEntity<?> response = droneController.loadDroneBulk("1", items);
 
-        // Mock the service method to return the list of medications
-        when(droneService.viewDroneLoadMedication("DRONE001")).thenReturn(medications);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(testDrone, response.getBody());
+    }
+
+    @Test
+    void loadDroneBulk_shouldReturnBadRequest_whenPayloadInvalid() throws WeightLimitExceededException, BatterLevelLowException {
+        List<LoadItem> items = List.of(new LoadItem(99L, 1));
+        when(droneService.loadDrone("1", items)).thenThrow(new IllegalArgumentException("Medication 99 does not exist."));
 
-        ResponseEntity<?> response = droneController.viewDroneLoad("DRONE001");
+        ResponseEntity<?> response = droneController.loadDroneBulk("1", items);
+
+        assertEquals(400, response.getStatusCodeValue());
+        assertEquals(Collections.singletonMap("message", "Medication 99 does not exist."), response.getBody());
+    }
+
+    @Test
+    void loadDroneBulk_shouldReturnNotFound_whenDroneMissing() throws WeightLimitExceededException, BatterLevelLowException {
+        List<LoadItem> items = List.of(new LoadItem(1L, 1));
+        when(droneService.loadDrone("404", items)).thenReturn(Optional.empty());
+
+        ResponseEntity<?> response = droneController.loadDroneBulk("404", items);
+
+        assertEquals(404, response.getStatusCodeValue());
+    }
+
+    @Test
+    void loadDroneBulk_shouldReturnConflict_whenDroneIsNotLoadable() throws WeightLimitExceededException, BatterLevelLowException {
+        List<LoadItem> items = List.of(new LoadItem(1L, 1));
+        when(droneService.loadDrone("1", items)).thenReturn(Optional.empty());
+        when(droneService.droneVersion("1")).thenReturn(Optional.of(3L));
+
+        ResponseEntity<?> response = droneController.loadDroneBulk("1", items);
+
+        assertEquals(409, response.getStatusCodeValue());
+        assertEquals(Collections.singletonMap("message", "Drone is not IDLE or LOADING."), response.getBody());
+    }
+
+    @Test
+    void loadDroneBulk_shouldReturnConflict_whenBatteryIsLow() throws WeightLimitExceededException, BatterLevelLowException {
+        List<LoadItem> items = List.of(new LoadItem(1L, 1));
+        when(droneService.loadDrone("1", items)).thenThrow(new BatterLevelLowException("Battery is below 25% cannot enter LOADING State. "));
+
+        ResponseEntity<?> response = droneController.loadDroneBulk("1", items);
+
+        assertEquals(409, response.getStatusCodeValue());
+        assertEquals(Collections.singletonMap("message", "Battery is below 25% cannot enter LOADING State. "), response.getBody());
+    }
+
+    @Test
+    void dispatch_shouldReturnAssignments() {
+        List<LoadItem> orders = List.of(new LoadItem(1L, 2), new LoadItem(2L, 1));
+        DispatchResult result = new DispatchResult(
+                List.of(new DroneAssignment(7L, orders, 350)), Collections.emptyList());
+        when(dispatchService.dispatch(orders)).thenReturn(result);
+
+        ResponseEntity<?> response = droneController.dispatch(orders);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(result, response.getBody());
+    }
+
+    @Test
+    void dispatch_shouldReturnBadRequest_whenOrdersInvalid() {
+        when(dispatchService.dispatch(any())).thenThrow(new IllegalArgumentException("Medication 9 does not exist."));
+
+        ResponseEntity<?> response = droneController.dispatch(List.of(new LoadItem(9L, 1)));
+
+        assertEquals(400, response.getStatusCodeValue());
+        assertEquals(Collections.singletonMap("message", "Medication 9 does not exist."), response.getBody());
+    }
+
+    @Test
+    void dispatch_shouldReturnConflict_whenReplanningGivesUp() {
+        when(dispatchService.dispatch(any())).thenThrow(new ConcurrencyFailureException("gave up"));
+
+        ResponseEntity<?> response = droneController.dispatch(List.of(new LoadItem(1L, 1)));
+
+        assertEquals(409, response.getStatusCodeValue());
+    }
+
+    @Test
+    void viewDroneLoad_shouldReturnLoadedMedicationsWithVersionETag() {
+        List<MedicationView> medications = Collections.singletonList(
+                new MedicationView(1L, "Biogesic", 100, 1, "MED01", "images/pain_relief.png"));
+        when(droneService.droneVersion("7")).thenReturn(Optional.of(3L));
+        when(droneService.viewDroneLoadMedication("7")).thenReturn(medications);
+
+        ResponseEntity<?> response = droneController.viewDroneLoad("7", request(null));
 
         assertEquals(200, response.getStatusCodeValue());
+        assertEquals("W/\"3\"", response.getHeaders().getETag());
         assertEquals(medications, response.getBody());
-        verify(droneService).viewDroneLoadMedication("DRONE001");
     }
 
+    @Test
+    void viewDroneLoad_shouldReturnNotModifiedWithoutReadingMedications_whenETagMatches() {
+        when(droneService.droneVersion("7")).thenReturn(Optional.of(3L));
+
+        ResponseEntity<?> response = droneController.viewDroneLoad("7", request("W/\"3\""));
+
+        assertEquals(304, response.getStatusCodeValue());
+        assertNull(response.getBody());
+        verify(droneService, never()).viewDroneLoadMedication(any());
+    }
+
+    @Test
+    void viewDroneLoad_shouldReturnNotFound_whenDroneMissing() {
+        when(droneService.droneVersion("7")).thenReturn(Optional.empty());
+
+        ResponseEntity<?> response = droneController.viewDroneLoad("7", request(null));
+
+        assertEquals(404, response.getStatusCodeValue());
+    }
 
     @Test
     void viewDroneStatus_shouldReturnAvailabilityStatus() {
         when(droneService.viewDroneStatus("DRONE001")).thenReturn(true);
 
-        ResponseEntity<?> response = droneController.viewDroneStats("DRONE001");
+        ResponseEntity<?> response = droneController.viewDroneStats("DRONE001", request(null));
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(Collections.singletonMap("is_available_for_loading", true), response.getBody());
         verify(droneService).viewDroneStatus("DRONE001");
     }
 
+    @Test
+    void viewDroneStatus_shouldReturnNotModified_onlyWhileTheAnswerIsUnchanged() {
+        when(droneService.viewDroneStatus("DRONE001")).thenReturn(true);
+        String etag = droneController.viewDroneStats("DRONE001", request(null)).getHeaders().getETag();
+        assertTrue(etag.startsWith("W/"));
+
+        assertEquals(304, droneController.viewDroneStats("DRONE001", request(etag)).getStatusCodeValue());
+
+        when(droneService.viewDroneStatus("DRONE001")).thenReturn(false);
+        assertEquals(200, droneController.viewDroneStats("DRONE001", request(etag)).getStatusCodeValue());
+    }
+
+    @Test
+    void ingestTelemetry_shouldAcceptBatch() {
+        List<BatteryReading> readings = List.of(new BatteryReading(7L, 64, null));
+        when(batteryTelemetry.accept(readings)).thenReturn(true);
+
+        ResponseEntity<?> response = droneController.ingestTelemetry(readings);
+
+        assertEquals(202, response.getStatusCodeValue());
+        assertEquals(Collections.singletonMap("accepted", 1), response.getBody());
+    }
+
+    @Test
+    void ingestTelemetry_shouldAskToRetryLater_whenBufferFull() {
+        when(batteryTelemetry.accept(any())).thenReturn(false);
+        when(batteryTelemetry.retryAfterSeconds()).thenReturn(1L);
+
+        ResponseEntity<?> response = droneController.ingestTelemetry(List.of(new BatteryReading(7L, 64, null)));
+
+        assertEquals(429, response.getStatusCodeValue());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void ingestTelemetry_shouldReturnBadRequest_whenReadingInvalid() {
+        when(batteryTelemetry.accept(any())).thenThrow(new IllegalArgumentException("bad reading"));
+
+        ResponseEntity<?> response = droneController.ingestTelemetry(List.of(new BatteryReading(null, 64, null)));
+
+        assertEquals(400, response.getStatusCodeValue());
+    }
+
+    @Test
+    void subscribeToEvents_shouldReturnUnavailable_whenSubscribersAreAtTheLimit() {
+        when(droneEventStream.subscribe(any(), any())).thenThrow(new IllegalStateException("Too many"));
+
+        ResponseEntity<?> response = droneController.subscribeToEvents(null, null);
+
+        assertEquals(503, response.getStatusCodeValue());
+    }
+
+    @Test
+    void viewDroneHistory_shouldReturnJournaledTransitions() {
+        Instant from = Instant.parse("2026-10-18T10:00:00Z");
+        List<DroneTransition> history = List.of(new DroneTransition(7L, Drone.DroneState.IDLE,
+                Drone.DroneState.LOADING, 90, from.plusSeconds(5)));
+        when(transitionJournal.history(7L, from, null, 50)).thenReturn(history);
+
+        ResponseEntity<List<DroneTransition>> response = droneController.viewDroneHistory(7L, from, null, 50);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(history, response.getBody());
+    }
+
     @Test
     void viewDrones_shouldReturnListOfDrones() {
         when(droneService.viewDrones()).thenReturn(Collections.singletonList(testDrone));
 
-        ResponseEntity<List<Drone>> response = droneController.viewDrone();
+        ResponseEntity<List<Drone>> response = droneController.viewDrone(null, null, null, null);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(Collections.singletonList(testDrone), response.getBody());
         verify(droneService).viewDrones();
     }
+
+    @Test
+    void viewDronePage_shouldReturnPageFromService() {
+        DronePage page = new DronePage(Collections.singletonList(testDrone), 5L);
+        when(droneService.viewDrones(4L, 1)).thenReturn(page);
+
+        ResponseEntity<DronePage> response = droneController.viewDronePage(4L, 1, null, null, null, null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(page, response.getBody());
+    }
+
+    @Test
+    void viewCandidates_shouldReturnServiceCandidatesOrBadRequest() {
+        List<DroneCandidate> candidates = List.of(new DroneCandidate(3L, Drone.DroneState.IDLE, 80, 500, 400));
+        when(droneService.findCandidates(200, 5, FleetStateRegistry.Fit.FIRST)).thenReturn(candidates);
+        when(droneService.findCandidates(-1, 10, FleetStateRegistry.Fit.BEST))
+                .thenThrow(new IllegalArgumentException("Weight must be a number of grams, 0 or more."));
+
+        ResponseEntity<?> response = droneController.viewCandidates(200, 5, FleetStateRegistry.Fit.FIRST);
+        ResponseEntity<?> rejected = droneController.viewCandidates(-1, 10, FleetStateRegistry.Fit.BEST);
+
+        assertEquals(candidates, response.getBody());
+        assertEquals(400, rejected.getStatusCodeValue());
+    }
+
+    @Test
+    void viewDrones_shouldPassFiltersToService() {
+        DroneFilter filter = new DroneFilter(Drone.DroneState.IDLE, 30, Drone.DroneModel.HEAVYWEIGHT, null);
+        when(droneService.viewDrones(filter)).thenReturn(Collections.singletonList(testDrone));
+
+        ResponseEntity<List<Drone>> response = droneController.viewDrone(Drone.DroneState.IDLE, 30,
+                Drone.DroneModel.HEAVYWEIGHT, null);
+
+        assertEquals(Collections.singletonList(testDrone), response.getBody());
+        verify(droneService, never()).viewDrones();
+    }
+
+    @Test
+    void streamDrones_shouldWriteOneJsonLinePerDrone() throws Exception {
+        Drone second = new Drone();
+        second.setSerialNumber("DRONE002");
+        doAnswer(invocation -> {
+            Consumer<Drone> sink = invocation.getArgument(0);
+            sink.accept(testDrone);
+            sink.accept(second);
+            return null;
+        }).when(droneService).streamDrones(any());
+
+        StreamingResponseBody body = droneController.streamDrones().getBody();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("DRONE001", objectMapper.readTree(lines[0]).get("serialNumber").asText());
+        assertEquals("DRONE002", objectMapper.readTree(lines[1]).get("serialNumber").asText());
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/drone");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
 }
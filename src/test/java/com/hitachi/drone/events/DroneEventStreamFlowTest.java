@@ -0,0 +1,104 @@
+package com.hitachi.drone.events;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.service.DroneService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "drone.test.database=event-stream-flow-test",
+        "management.server.port=-1"
+})
+@ActiveProfiles("test")
+class DroneEventStreamFlowTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DroneEventStream droneEventStream;
+
+    @Autowired
+    private DroneService droneService;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void subscriber_shouldReceiveStateAndPayloadChangesOfItsDroneOnly() throws Exception {
+        long watched = register("EVENTS-1");
+        long other = register("EVENTS-2");
+        Long medicationId = catalogEntry("EVENTS_100G", 100).getId();
+
+        BlockingQueue<String> data = new LinkedBlockingQueue<>();
+        HttpClient client = HttpClient.newHttpClient();
+        client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/v1/drone/events?droneId=" + watched))
+                        .build(), HttpResponse.BodyHandlers.ofLines())
+                .thenAccept(response -> {
+                    try (Stream<String> lines = response.body()) {
+                        lines.filter(line -> line.startsWith("data:")).forEach(line -> data.add(line.substring(5)));
+                    }
+                });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (droneEventStream.subscriberCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        droneService.loadDrone(String.valueOf(other), List.of(new LoadItem(medicationId, 1)));
+        droneService.loadDrone(String.valueOf(watched), List.of(new LoadItem(medicationId, 1)));
+        droneService.loadDrone(String.valueOf(watched), List.of(new LoadItem(medicationId, 1)));
+
+        JsonNode first = objectMapper.readTree(data.poll(5, TimeUnit.SECONDS));
+        JsonNode second = objectMapper.readTree(data.poll(5, TimeUnit.SECONDS));
+        assertEquals(watched, first.get("droneId").asLong());
+        assertEquals("state", first.get("type").asText());
+        assertEquals("IDLE", first.get("previousState").asText());
+        assertEquals("LOADING", first.get("state").asText());
+        assertEquals(watched, second.get("droneId").asLong());
+        assertEquals("payload", second.get("type").asText());
+        assertTrue(second.get("payloadWeight").asDouble() > first.get("payloadWeight").asDouble());
+        assertNull(data.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private long register(String serialNumber) {
+        Drone drone = new Drone();
+        drone.setSerialNumber(serialNumber);
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(1000);
+        drone.setBatteryCapacity(90);
+        drone.setState(Drone.DroneState.IDLE);
+        return droneRepository.save(drone).getId();
+    }
+
+    // a catalog entry of this test's own, so the assertions do not depend on the seeded catalog
+    private Medication catalogEntry(String code, double weight) {
+        return medicationRepository.save(new Medication(null, code, weight, 1, code, null));
+    }
+}
@@ -0,0 +1,80 @@
+package com.hitachi.drone.events;
+
+import com.hitachi.drone.dto.DroneEvent;
+import com.hitachi.drone.model.Drone.DroneState;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EventSubscriberTest {
+
+    private final SseEmitter emitter = mock(SseEmitter.class);
+
+    @Test
+    void offer_shouldAskForOneDrainUntilTheBufferIsDrained() {
+        EventSubscriber subscriber = new EventSubscriber(emitter, null, null, 8, DroneEventStream.Overflow.DROP_OLDEST);
+
+        assertTrue(subscriber.offer(event(1, 7L, DroneState.LOADING)));
+        assertFalse(subscriber.offer(event(2, 7L, DroneState.LOADED)));
+        subscriber.drain();
+
+        assertTrue(subscriber.offer(event(3, 7L, DroneState.DELIVERING)));
+    }
+
+    @Test
+    void drain_shouldReportDroppedEventsBeforeTheNewestOnes() throws Exception {
+        EventSubscriber subscriber = new EventSubscriber(emitter, null, null, 2, DroneEventStream.Overflow.DROP_OLDEST);
+        subscriber.offer(event(1, 7L, DroneState.LOADING));
+        subscriber.offer(event(2, 7L, DroneState.LOADED));
+        subscriber.offer(event(3, 7L, DroneState.DELIVERING));
+
+        subscriber.drain();
+
+        ArgumentCaptor<SseEmitter.SseEventBuilder> sent = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, times(3)).send(sent.capture());
+        List<String> frames = sent.getAllValues().stream().map(EventSubscriberTest::frame).collect(Collectors.toList());
+        assertTrue(frames.get(0).contains("event:dropped"));
+        assertTrue(frames.get(1).startsWith("id:2"));
+        assertTrue(frames.get(2).startsWith("id:3"));
+    }
+
+    @Test
+    void drain_shouldDisconnectOnOverflow_whenConfiguredTo() throws Exception {
+        EventSubscriber subscriber = new EventSubscriber(emitter, null, null, 1, DroneEventStream.Overflow.DISCONNECT);
+        subscriber.offer(event(1, 7L, DroneState.LOADING));
+        subscriber.offer(event(2, 7L, DroneState.LOADED));
+
+        subscriber.drain();
+
+        verify(emitter).complete();
+        verify(emitter, never()).send(any(SseEmitter.SseEventBuilder.class));
+        assertFalse(subscriber.offer(event(3, 7L, DroneState.DELIVERING)));
+    }
+
+    @Test
+    void accepts_shouldApplyDroneAndStateFilters() {
+        EventSubscriber subscriber = new EventSubscriber(emitter, Set.of(7L), Set.of(DroneState.LOADED), 8,
+                DroneEventStream.Overflow.DROP_OLDEST);
+
+        assertTrue(subscriber.accepts(event(1, 7L, DroneState.LOADED)));
+        assertFalse(subscriber.accepts(event(2, 7L, DroneState.LOADING)));
+        assertFalse(subscriber.accepts(event(3, 8L, DroneState.LOADED)));
+    }
+
+    private static DroneEvent event(long sequence, long droneId, DroneState state) {
+        return new DroneEvent(sequence, "state", droneId, null, state, 80, 0.0, Instant.EPOCH);
+    }
+
+    private static String frame(SseEmitter.SseEventBuilder builder) {
+        return builder.build().stream().map(part -> String.valueOf(part.getData())).collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,115 @@
+package com.hitachi.drone.journal;
+
+import com.hitachi.drone.dto.DroneTransition;
+import com.hitachi.drone.model.Drone.DroneState;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransitionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final FleetStateRegistry registry = new FleetStateRegistry();
+    private TransitionJournal journal;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.stop();
+    }
+
+    @Test
+    void history_shouldReturnOneDronesTransitionsAcrossSegments() throws IOException {
+        journal = open(2);
+        long base = System.currentTimeMillis() + 1000;
+        journal.append(1L, DroneState.IDLE, DroneState.LOADING, 90, base);
+        journal.append(2L, DroneState.IDLE, DroneState.LOADING, 80, base + 1);
+        journal.append(1L, DroneState.LOADING, DroneState.LOADED, 90, base + 2);
+        journal.append(2L, DroneState.LOADING, DroneState.LOADED, 80, base + 3);
+        journal.append(1L, DroneState.LOADED, DroneState.DELIVERING, 90, base + 4);
+
+        List<DroneTransition> history = journal.history(1L, null, null, 100);
+
+        assertEquals(3, segmentCount());
+        assertEquals(List.of(DroneState.LOADING, DroneState.LOADED, DroneState.DELIVERING),
+                history.stream().map(DroneTransition::getTo).collect(Collectors.toList()));
+        assertEquals(new DroneTransition(1L, DroneState.LOADING, DroneState.LOADED, 90, Instant.ofEpochMilli(base + 2)),
+                history.get(1));
+        assertEquals(List.of(2L, 1L, 2L), journal.range(Instant.ofEpochMilli(base + 1), Instant.ofEpochMilli(base + 3), 100)
+                .stream().map(DroneTransition::getDroneId).collect(Collectors.toList()));
+        assertEquals(2, journal.range(null, null, 2).size());
+    }
+
+    @Test
+    void start_shouldContinueTheLastSegmentAfterARestart() throws IOException {
+        journal = open(16);
+        long base = System.currentTimeMillis() + 1000;
+        journal.append(1L, DroneState.IDLE, DroneState.LOADING, 90, base);
+        journal.stop();
+
+        journal = open(16);
+        journal.append(1L, DroneState.LOADING, DroneState.LOADED, 90, base + 1);
+
+        assertEquals(1, segmentCount());
+        assertEquals(2, journal.history(1L, null, null, 100).size());
+    }
+
+    @Test
+    void applyRetention_shouldDeleteSegmentsWhoseRecordsAreAllOlderThanTheRetention() throws IOException {
+        journal = open(1);
+        long base = System.currentTimeMillis() + 1000;
+        journal.append(1L, DroneState.IDLE, DroneState.LOADING, 90, base);
+        journal.append(1L, DroneState.LOADING, DroneState.LOADED, 90, base + 1);
+        journal.append(1L, DroneState.LOADED, DroneState.DELIVERING, 90, base + 2);
+
+        assertEquals(0, journal.applyRetention(base + Duration.ofHours(1).toMillis()));
+        assertEquals(2, journal.applyRetention(base + Duration.ofHours(1).toMillis() + 5));
+
+        assertEquals(1, segmentCount());
+        assertEquals(List.of(DroneState.DELIVERING), journal.history(1L, null, null, 100).stream()
+                .map(DroneTransition::getTo).collect(Collectors.toList()));
+    }
+
+    @Test
+    void stateChanged_shouldJournalRegistryTransitionsWithTheirBattery() throws IOException {
+        journal = open(16);
+        registry.put(7L, DroneState.DELIVERING, 60, 500, 100);
+        registry.applyTransition(DroneState.DELIVERING, DroneState.DELIVERED, 10, true, 0L, 10L);
+
+        List<DroneTransition> history = journal.history(7L, null, null, 100);
+
+        assertEquals(1, history.size());
+        assertEquals(DroneState.DELIVERING, history.get(0).getFrom());
+        assertEquals(DroneState.DELIVERED, history.get(0).getTo());
+        assertEquals(50, history.get(0).getBatteryCapacity());
+    }
+
+    private TransitionJournal open(int segmentRecords) throws IOException {
+        TransitionJournal opened = new TransitionJournal(registry);
+        ReflectionTestUtils.setField(opened, "journalDir", directory.toString());
+        ReflectionTestUtils.setField(opened, "segmentRecords", segmentRecords);
+        ReflectionTestUtils.setField(opened, "retention", Duration.ofHours(1));
+        opened.start();
+        return opened;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".seg")).count();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.hitachi.drone.lease;
+
+import com.hitachi.drone.DroneApplication;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.service.DroneStateScheduler;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+* Two instances of the application on one H2 server, the way several nodes share a database.*/
+class ShardLeasesTest {
+
+    private static final int SHARDS = 8;
+    private static final long TTL_MILLIS = 2000;
+
+    private static Server server;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    @BeforeAll
+    static void startServer() throws SQLException {
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @AfterEach
+    void closeContexts() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void instances_shouldSplitTheShardsAndTickEveryDroneOnce() {
+        ConfigurableApplicationContext first = start("split");
+        ConfigurableApplicationContext second = start("split");
+        ShardLeases firstLeases = first.getBean(ShardLeases.class);
+        ShardLeases secondLeases = second.getBean(ShardLeases.class);
+        balance(firstLeases, secondLeases);
+
+        BitSet firstShards = firstLeases.ownedShards();
+        BitSet secondShards = secondLeases.ownedShards();
+        assertEquals(SHARDS / 2, firstShards.cardinality());
+        assertEquals(SHARDS / 2, secondShards.cardinality());
+        assertFalse(firstShards.intersects(secondShards));
+
+        JdbcTemplate jdbcTemplate = first.getBean(JdbcTemplate.class);
+        seedLoadingDrones(jdbcTemplate, 80);
+
+        first.getBean(DroneStateScheduler.class).updateDroneStates();
+        assertTrue(count(jdbcTemplate, Drone.DroneState.LOADED) > 0);
+        assertTrue(count(jdbcTemplate, Drone.DroneState.LOADING) > 0);
+
+        second.getBean(DroneStateScheduler.class).updateDroneStates();
+        assertEquals(0, count(jdbcTemplate, Drone.DroneState.LOADING));
+        assertEquals(80, count(jdbcTemplate, Drone.DroneState.LOADED));
+        assertEquals(0, count(jdbcTemplate, Drone.DroneState.DELIVERING));
+    }
+
+    @Test
+    void expiredLeases_shouldBeTakenOverWhenAnInstanceStopsRenewing() throws InterruptedException {
+        ConfigurableApplicationContext first = start("takeover");
+        ConfigurableApplicationContext second = start("takeover");
+        ShardLeases firstLeases = first.getBean(ShardLeases.class);
+        ShardLeases secondLeases = second.getBean(ShardLeases.class);
+        balance(firstLeases, secondLeases);
+
+        // the second instance hangs: it neither renews nor releases
+        Thread.sleep(TTL_MILLIS + 200);
+        assertTrue(firstLeases.renew());
+
+        assertEquals(SHARDS, firstLeases.ownedShards().cardinality());
+        assertTrue(secondLeases.ownedShards().isEmpty());
+    }
+
+    @Test
+    void stoppedInstance_shouldHandItsShardsOverRightAway() {
+        ConfigurableApplicationContext first = start("handover");
+        ConfigurableApplicationContext second = start("handover");
+        ShardLeases firstLeases = first.getBean(ShardLeases.class);
+        balance(firstLeases, second.getBean(ShardLeases.class));
+
+        second.close();
+        assertTrue(firstLeases.renew());
+
+        assertEquals(SHARDS, firstLeases.ownedShards().cardinality());
+    }
+
+    private ConfigurableApplicationContext start(String database) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DroneApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:leases-"
+                                + database + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--spring.sql.init.mode=never",
+                        "--drone.journal.enabled=false",
+                        "--drone.scheduler.mode=BULK",
+                        "--drone.scheduler.chunk-size=10",
+                        "--drone.scheduler.initial-delay-ms=3600000",
+                        "--drone.scheduler.period-ms=3600000",
+                        "--drone.scheduler.shards=" + SHARDS,
+                        "--drone.scheduler.lease.enabled=true",
+                        "--drone.scheduler.lease.ttl=PT" + TTL_MILLIS / 1000 + "S",
+                        "--drone.scheduler.lease.renew-ms=3600000");
+        contexts.add(context);
+        return context;
+    }
+
+    // a joining instance gets its share once the others noticed it and released theirs
+    private static void balance(ShardLeases first, ShardLeases second) {
+        for (int round = 0; round < 3; round++) {
+            assertTrue(first.renew());
+            assertTrue(second.renew());
+        }
+    }
+
+    private static void seedLoadingDrones(JdbcTemplate jdbcTemplate, int count) {
+        List<Object[]> drones = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            drones.add(new Object[]{"LEASE-" + i, Drone.DroneModel.LIGHTWEIGHT.name(), 500.0, 100,
+                    Drone.DroneState.LOADING.name()});
+        }
+        jdbcTemplate.batchUpdate("insert into drone (serial_number, model, weight_limit, battery_capacity, state, " +
+                "payload_weight, payload_item_count, version) values (?, ?, ?, ?, ?, 0, 0, 0)", drones);
+    }
+
+    private static int count(JdbcTemplate jdbcTemplate, Drone.DroneState state) {
+        Integer count = jdbcTemplate.queryForObject(
+                "select count(*) from drone where serial_number like 'LEASE-%' and state = ?", Integer.class, state.name());
+        return count == null ? 0 : count;
+    }
+}
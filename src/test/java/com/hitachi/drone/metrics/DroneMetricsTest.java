@@ -0,0 +1,85 @@
+package com.hitachi.drone.metrics;
+
+import com.hitachi.drone.catalog.MedicationCatalogCache;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DroneMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FleetStateRegistry fleetStateRegistry;
+    private MedicationCatalogCache catalogCache;
+    private DroneMetrics droneMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        fleetStateRegistry = new FleetStateRegistry();
+        catalogCache = new MedicationCatalogCache();
+        droneMetrics = new DroneMetrics(meterRegistry, fleetStateRegistry, catalogCache);
+    }
+
+    @Test
+    void loadOutcomes_shouldBeCountedPerOutcome() {
+        droneMetrics.loadSucceeded();
+        droneMetrics.loadSucceeded();
+        droneMetrics.weightLimitExceeded();
+        droneMetrics.batteryLow();
+
+        assertEquals(2, meterRegistry.get("drone.loads").tag("outcome", "loaded").counter().count());
+        assertEquals(1, meterRegistry.get("drone.loads").tag("outcome", "weight_limit_exceeded").counter().count());
+        assertEquals(1, meterRegistry.get("drone.loads").tag("outcome", "battery_low").counter().count());
+    }
+
+    @Test
+    void loadBatch_shouldRecordBatchSizes() {
+        droneMetrics.loadBatch(1);
+        droneMetrics.loadBatch(5);
+
+        assertEquals(2, meterRegistry.get("drone.loads.batch.size").summary().count());
+        assertEquals(5, meterRegistry.get("drone.loads.batch.size").summary().max(), 0.001);
+        assertEquals(6, meterRegistry.get("drone.loads.batch.size").summary().totalAmount(), 0.001);
+    }
+
+    @Test
+    void schedulerTick_shouldRecordDurationTransitionsAndLag() {
+        droneMetrics.schedulerTick(TimeUnit.MILLISECONDS.toNanos(120), 7, 35);
+
+        assertEquals(1, meterRegistry.get("drone.scheduler.tick").timer().count());
+        assertEquals(120, meterRegistry.get("drone.scheduler.tick").timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(7, meterRegistry.get("drone.scheduler.transitions").counter().count());
+        assertEquals(35, meterRegistry.get("drone.scheduler.lag").gauge().value());
+    }
+
+    @Test
+    void fleetGauges_shouldReadFromRegistry() {
+        fleetStateRegistry.put(1L, Drone.DroneState.IDLE, 90, 500, 0);
+        fleetStateRegistry.put(2L, Drone.DroneState.IDLE, 50, 500, 0);
+        fleetStateRegistry.put(3L, Drone.DroneState.RETURNING, 40, 500, 0);
+
+        assertEquals(2, meterRegistry.get("drone.fleet.drones").tag("state", "IDLE").gauge().value());
+        assertEquals(1, meterRegistry.get("drone.fleet.drones").tag("state", "RETURNING").gauge().value());
+        assertEquals(60, meterRegistry.get("drone.fleet.battery.average").gauge().value());
+    }
+
+    @Test
+    void catalogCacheMeters_shouldReadHitsMissesAndSize() {
+        catalogCache.warm(List.of(new Medication(1L, "Biogesic", 100, 1, "MED01", null)));
+        catalogCache.get(1L, id -> Optional.empty());
+        catalogCache.get(2L, id -> Optional.empty());
+
+        assertEquals(1, meterRegistry.get("drone.catalog.cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("drone.catalog.cache.requests").tag("result", "miss").functionCounter().count());
+        assertEquals(1, meterRegistry.get("drone.catalog.cache.size").gauge().value());
+    }
+}
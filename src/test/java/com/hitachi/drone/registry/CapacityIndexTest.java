@@ -0,0 +1,59 @@
+package com.hitachi.drone.registry;
+
+import com.hitachi.drone.model.Drone;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapacityIndexTest {
+
+    private static final Drone.DroneState[] STATES = Drone.DroneState.values();
+
+    @Test
+    void queries_shouldMatchAScanOfTheFleetAfterRandomUpdates() {
+        Random random = new Random(42);
+        int fleet = 3_000;
+        CapacityIndex index = new CapacityIndex(16);
+        double[] remaining = new double[fleet];
+        Arrays.fill(remaining, Double.NEGATIVE_INFINITY);
+
+        for (int step = 0; step < 20_000; step++) {
+            int droneId = random.nextInt(fleet);
+            if (random.nextInt(10) == 0) {
+                index.remove(droneId);
+                remaining[droneId] = Double.NEGATIVE_INFINITY;
+                continue;
+            }
+            Drone.DroneState state = STATES[random.nextInt(STATES.length)];
+            int battery = random.nextInt(101);
+            double payload = random.nextInt(50) * 10;
+            index.update(droneId, state, battery, 500, payload);
+            remaining[droneId] = CapacityIndex.eligible(state, battery) ? 500 - payload : Double.NEGATIVE_INFINITY;
+        }
+
+        for (double weight : new double[]{0, 10, 255, 490, 500, 501}) {
+            int[] fitting = IntStream.range(0, fleet).filter(id -> remaining[id] >= weight).toArray();
+            int[] tightest = Arrays.stream(fitting).boxed()
+                    .sorted(Comparator.<Integer>comparingDouble(id -> remaining[id]).thenComparingInt(id -> id))
+                    .limit(25).mapToInt(Integer::intValue).toArray();
+
+            assertArrayEquals(Arrays.copyOf(fitting, Math.min(25, fitting.length)), index.firstFit(weight, 25));
+            assertArrayEquals(tightest, index.bestFit(weight, 25));
+        }
+        assertEquals(Arrays.stream(remaining).filter(value -> value != Double.NEGATIVE_INFINITY).count(), index.size());
+    }
+
+    @Test
+    void eligible_shouldNeedIdleOrLoadingAndMoreThanMinimumBattery() {
+        assertTrue(CapacityIndex.eligible(Drone.DroneState.IDLE, CapacityIndex.MIN_BATTERY + 1));
+        assertTrue(CapacityIndex.eligible(Drone.DroneState.LOADING, 100));
+        assertFalse(CapacityIndex.eligible(Drone.DroneState.LOADING, CapacityIndex.MIN_BATTERY));
+        assertFalse(CapacityIndex.eligible(Drone.DroneState.LOADED, 100));
+        assertFalse(CapacityIndex.eligible(null, 100));
+    }
+}
@@ -0,0 +1,237 @@
+package com.hitachi.drone.registry;
+
+import com.hitachi.drone.dto.DroneCandidate;
+import com.hitachi.drone.model.Drone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetStateRegistryTest {
+
+    private FleetStateRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new FleetStateRegistry();
+    }
+
+    @Test
+    void put_shouldStoreValuesAndGrowBeyondInitialCapacity() {
+        registry.put(5_000L, Drone.DroneState.LOADING, 60, 800, 300);
+
+        assertTrue(registry.contains(5_000L));
+        assertEquals(Drone.DroneState.LOADING, registry.getState(5_000L));
+        assertEquals(60, registry.getBatteryCapacity(5_000L));
+        assertEquals(800, registry.getWeightLimit(5_000L));
+        assertEquals(300, registry.getPayloadWeight(5_000L));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void put_shouldNotHoldDronesBeyondMaxId() {
+        registry.put(2_000_000_000L, Drone.DroneState.IDLE, 60, 800, 0);
+
+        assertFalse(registry.contains(2_000_000_000L));
+        assertEquals(Optional.empty(), registry.availableForLoading(2_000_000_000L));
+        assertEquals(0, registry.size());
+
+        ReflectionTestUtils.setField(registry, "maxId", 5_000L);
+        registry.put(5_000L, Drone.DroneState.IDLE, 60, 800, 0);
+        registry.put(5_001L, Drone.DroneState.IDLE, 60, 800, 0);
+        assertTrue(registry.contains(5_000L));
+        assertFalse(registry.contains(5_001L));
+        assertEquals(List.of(5_000L), candidateIds(100, FleetStateRegistry.Fit.FIRST));
+    }
+
+    @Test
+    void start_shouldRejectAMaxIdTheArraysCannotReach() {
+        ReflectionTestUtils.setField(registry, "maxId", (long) Integer.MAX_VALUE);
+
+        assertThrows(IllegalStateException.class, registry::start);
+    }
+
+    @Test
+    void availableForLoading_shouldCompareWeightAgainstLimit() {
+        registry.put(1L, Drone.DroneState.IDLE, 50, 500, 500);
+        registry.put(2L, Drone.DroneState.LOADING, 50, 500, 500.5);
+
+        assertEquals(Optional.of(true), registry.availableForLoading(1L));
+        assertEquals(Optional.of(false), registry.availableForLoading(2L));
+        assertEquals(Optional.empty(), registry.availableForLoading(3L));
+    }
+
+    @Test
+    void applyTransition_shouldOnlyTouchDronesInRangeAndState() {
+        registry.put(1L, Drone.DroneState.DELIVERING, 50, 500, 200);
+        registry.put(2L, Drone.DroneState.IDLE, 50, 500, 0);
+        registry.put(3L, Drone.DroneState.DELIVERING, 50, 500, 200);
+
+        int changed = registry.applyTransition(Drone.DroneState.DELIVERING, Drone.DroneState.DELIVERED, 10, true, 1L, 2L);
+
+        assertEquals(1, changed);
+        assertEquals(Drone.DroneState.DELIVERED, registry.getState(1L));
+        assertEquals(40, registry.getBatteryCapacity(1L));
+        assertEquals(0, registry.getPayloadWeight(1L));
+        assertEquals(200, registry.getPayloadWeight(3L));
+        assertEquals(Drone.DroneState.IDLE, registry.getState(2L));
+        assertEquals(Drone.DroneState.DELIVERING, registry.getState(3L));
+    }
+
+    @Test
+    void stateCountsAndAverageBattery_shouldFollowEveryWrite() {
+        registry.put(1L, Drone.DroneState.IDLE, 80, 500, 0);
+        registry.put(2L, Drone.DroneState.DELIVERING, 40, 500, 100);
+        registry.put(3L, Drone.DroneState.DELIVERING, 60, 500, 100);
+
+        registry.put(1L, Drone.DroneState.LOADING, 70, 500, 100);
+        registry.applyTransition(Drone.DroneState.DELIVERING, Drone.DroneState.DELIVERED, 10, true, 1L, 3L);
+        registry.remove(3L);
+
+        assertEquals(0, registry.countInState(Drone.DroneState.IDLE));
+        assertEquals(1, registry.countInState(Drone.DroneState.LOADING));
+        assertEquals(0, registry.countInState(Drone.DroneState.DELIVERING));
+        assertEquals(1, registry.countInState(Drone.DroneState.DELIVERED));
+        assertEquals(50, registry.averageBatteryCapacity());
+    }
+
+    @Test
+    void candidates_shouldFollowLoadsTransitionsAndBatteryReports() {
+        registry.put(1L, Drone.DroneState.IDLE, 80, 500, 0);
+        registry.put(2L, Drone.DroneState.LOADING, 80, 500, 300);
+        registry.put(3L, Drone.DroneState.IDLE, 20, 500, 0);
+        registry.put(4L, Drone.DroneState.DELIVERING, 80, 500, 0);
+        registry.put(5L, Drone.DroneState.IDLE, 80, 1000, 0);
+
+        assertEquals(List.of(2L, 1L, 5L), candidateIds(150, FleetStateRegistry.Fit.BEST));
+        assertEquals(List.of(1L, 2L, 5L), candidateIds(150, FleetStateRegistry.Fit.FIRST));
+        assertEquals(List.of(1L, 5L), candidateIds(250, FleetStateRegistry.Fit.BEST));
+        assertEquals(200, registry.candidates(150, 1, FleetStateRegistry.Fit.BEST).get(0).getRemainingCapacity());
+
+        // loaded more, reported a low battery, left for delivery
+        registry.put(1L, Drone.DroneState.LOADING, 80, 500, 450);
+        assertTrue(registry.updateBatteryCapacity(5L, 25));
+        registry.applyTransition(Drone.DroneState.LOADING, Drone.DroneState.LOADED, 0, false, 2L, 2L);
+        assertEquals(List.of(1L), candidateIds(0, FleetStateRegistry.Fit.BEST));
+
+        // back from a delivery and charged
+        registry.applyTransition(Drone.DroneState.DELIVERING, Drone.DroneState.IDLE, 0, true, 4L, 4L);
+        assertTrue(registry.updateBatteryCapacity(3L, 90));
+        registry.remove(1L);
+        assertEquals(List.of(3L, 4L), candidateIds(500, FleetStateRegistry.Fit.FIRST));
+    }
+
+    @Test
+    void candidates_shouldStopAtLimitAndReachGrownIds() {
+        for (long id = 1; id <= 20; id++) {
+            registry.put(id * 1_000, Drone.DroneState.IDLE, 90, 100 + id, 0);
+        }
+
+        assertEquals(List.of(15_000L, 16_000L, 17_000L), candidateIds(115, 3, FleetStateRegistry.Fit.BEST));
+        assertEquals(List.of(15_000L, 16_000L), candidateIds(115, 2, FleetStateRegistry.Fit.FIRST));
+        assertTrue(candidateIds(121, 3, FleetStateRegistry.Fit.BEST).isEmpty());
+    }
+
+    @Test
+    void remove_shouldForgetDrone() {
+        registry.put(1L, Drone.DroneState.IDLE, 50, 500, 0);
+
+        registry.remove(1L);
+
+        assertFalse(registry.contains(1L));
+        assertEquals(0, registry.size());
+        assertThrows(IllegalArgumentException.class, () -> registry.getBatteryCapacity(1L));
+    }
+
+    @Test
+    void listeners_shouldHearPayloadChangesWithinTheSameState() {
+        List<String> changes = new ArrayList<>();
+        registry.addListener(new FleetStateListener() {
+            @Override
+            public void stateChanged(long droneId, Drone.DroneState from, Drone.DroneState to, int batteryCapacity) {
+                changes.add(droneId + ":" + to);
+            }
+
+            @Override
+            public void payloadChanged(long droneId, Drone.DroneState state, double payloadWeight) {
+                changes.add(droneId + ":" + state + "+" + payloadWeight);
+            }
+        });
+
+        registry.put(1L, Drone.DroneState.LOADING, 50, 500, 100);
+        registry.put(1L, Drone.DroneState.LOADING, 50, 500, 250);
+        registry.put(1L, Drone.DroneState.LOADING, 40, 500, 250);
+        registry.put(1L, Drone.DroneState.LOADED, 40, 500, 250);
+
+        assertEquals(List.of("1:LOADING+250.0", "1:LOADED"), changes);
+    }
+
+    @Test
+    void listeners_shouldHearStateChangesOfKnownDrones() {
+        List<String> changes = new ArrayList<>();
+        registry.addListener((id, from, to, battery) -> changes.add(id + ":" + from + "->" + to + "@" + battery));
+
+        registry.put(1L, Drone.DroneState.IDLE, 50, 500, 0);
+        registry.put(1L, Drone.DroneState.IDLE, 40, 500, 0);
+        registry.put(1L, Drone.DroneState.LOADING, 40, 500, 100);
+        registry.put(2L, Drone.DroneState.LOADED, 40, 500, 100);
+        registry.applyTransition(Drone.DroneState.LOADED, Drone.DroneState.DELIVERING, 5, false, 1L, 2L);
+
+        assertEquals(List.of("1:IDLE->LOADING@40", "2:LOADED->DELIVERING@35"), changes);
+    }
+
+    @Test
+    void put_shouldIgnoreAnOlderVersionOfTheDrone() {
+        registry.put(row(1L, 7, Drone.DroneState.LOADING, 300));
+        // the callback of an earlier commit, running late
+        registry.put(row(1L, 6, Drone.DroneState.LOADING, 200));
+
+        assertEquals(300, registry.getPayloadWeight(1L));
+
+        registry.put(row(1L, 8, Drone.DroneState.LOADED, 300));
+        assertEquals(Drone.DroneState.LOADED, registry.getState(1L));
+        // a removed drone's id starts over
+        registry.remove(1L);
+        registry.put(row(1L, 0, Drone.DroneState.IDLE, 0));
+        assertEquals(Drone.DroneState.IDLE, registry.getState(1L));
+    }
+
+    @Test
+    void reconcile_shouldCorrectTheDroneWithoutTellingListeners() {
+        List<String> changes = new ArrayList<>();
+        registry.addListener((id, from, to, battery) -> changes.add(id + ":" + from + "->" + to));
+        registry.put(1L, Drone.DroneState.LOADING, 50, 500, 100);
+        registry.applyTransition(Drone.DroneState.LOADING, Drone.DroneState.LOADED, 0, false, 1L, 1L);
+
+        registry.reconcile(row(1L, 0, Drone.DroneState.LOADING, 200));
+
+        assertEquals(Drone.DroneState.LOADING, registry.getState(1L));
+        assertEquals(200, registry.getPayloadWeight(1L));
+        assertEquals(1, registry.countInState(Drone.DroneState.LOADING));
+        assertEquals(List.of("1:LOADING->LOADED"), changes);
+    }
+
+    private static Drone row(long id, long version, Drone.DroneState state, double payloadWeight) {
+        Drone drone = new Drone();
+        drone.setId(id);
+        drone.setVersion(version);
+        drone.setState(state);
+        drone.setBatteryCapacity(50);
+        drone.setWeightLimit(500);
+        drone.setPayloadWeight(payloadWeight);
+        return drone;
+    }
+
+    private List<Long> candidateIds(double weight, FleetStateRegistry.Fit fit) {
+        return candidateIds(weight, 10, fit);
+    }
+
+    private List<Long> candidateIds(double weight, int limit, FleetStateRegistry.Fit fit) {
+        return registry.candidates(weight, limit, fit).stream().map(DroneCandidate::getDroneId).toList();
+    }
+}
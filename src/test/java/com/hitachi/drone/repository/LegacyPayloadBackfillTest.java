@@ -0,0 +1,90 @@
+package com.hitachi.drone.repository;
+
+import com.hitachi.drone.dto.MedicationView;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+* A database upgraded by ddl-auto=update from before payload lines: medications loaded onto drones are
+* still rows of the medication table, pointing at their drone.*/
+@SpringBootTest(properties = "drone.test.database=legacy-payload-backfill-test")
+@ActiveProfiles("test")
+class LegacyPayloadBackfillTest {
+
+    @Autowired
+    private LegacyPayloadBackfill legacyPayloadBackfill;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private PayloadItemRepository payloadItemRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void backfill_shouldMoveLoadedMedicationRowsIntoPayloadLines() {
+        Medication catalog = medicationRepository.save(new Medication(null, "LEGACY_100G", 100, 1, "LEGACY_100G", null));
+        Drone legacy = droneRepository.save(drone("LEGACY-1"));
+        Drone upgraded = drone("LEGACY-2");
+        // loaded once since the upgrade, so it already has a payload line
+        upgraded.addItem(catalog.getId(), 100, 1);
+        upgraded = droneRepository.save(upgraded);
+
+        jdbcTemplate.execute("alter table medication add column drone_id bigint");
+        loadedRow(legacy.getId());
+        loadedRow(legacy.getId());
+        loadedRow(upgraded.getId());
+        jdbcTemplate.update("update drone set payload_weight = 200, payload_item_count = 0 where id = ?", legacy.getId());
+
+        assertEquals(2, legacyPayloadBackfill.backfill());
+
+        Drone moved = droneRepository.findById(legacy.getId()).orElseThrow();
+        assertEquals(200, moved.getPayloadWeight());
+        assertEquals(1, moved.getPayloadItemCount());
+        List<MedicationView> lines = payloadItemRepository.findViewsByDroneId(legacy.getId());
+        assertEquals(1, lines.size());
+        assertEquals(catalog.getId(), lines.get(0).getId());
+        assertEquals(2, lines.get(0).getQuantity());
+
+        Drone merged = droneRepository.findById(upgraded.getId()).orElseThrow();
+        assertEquals(200, merged.getPayloadWeight());
+        assertEquals(1, merged.getPayloadItemCount());
+        assertEquals(2, payloadItemRepository.findViewsByDroneId(upgraded.getId()).get(0).getQuantity());
+
+        // the catalog is back to one row per code, and a restart finds nothing left to move
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from medication where code = 'LEGACY_100G'", Integer.class));
+        assertEquals(0, legacyPayloadBackfill.backfill());
+        assertEquals(200, droneRepository.findById(legacy.getId()).orElseThrow().getPayloadWeight());
+    }
+
+    private void loadedRow(long droneId) {
+        jdbcTemplate.update("insert into medication (id, name, weight, quantity, code, image, drone_id) " +
+                "values (next value for " + MedicationIdSequence.NAME + ", 'LEGACY_100G', 100, 1, 'LEGACY_100G', null, ?)",
+                droneId);
+    }
+
+    private static Drone drone(String serialNumber) {
+        Drone drone = new Drone();
+        drone.setSerialNumber(serialNumber);
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(1000);
+        drone.setBatteryCapacity(90);
+        drone.setState(Drone.DroneState.LOADING);
+        return drone;
+    }
+}
@@ -0,0 +1,29 @@
+package com.hitachi.drone.repository;
+
+import com.hitachi.drone.model.Medication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+* Starts on an empty database: aligning the sequence must not use up ids, or the seeded
+* medications land on the same row.*/
+@SpringBootTest(properties = "drone.test.database=medication-id-sequence-test")
+@ActiveProfiles("test")
+class MedicationIdSequenceTest {
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Test
+    void align_shouldKeepEverySeededMedicationOnAnEmptyDatabase() {
+        List<String> codes = medicationRepository.findAll().stream().map(Medication::getCode).sorted().toList();
+
+        assertEquals(List.of("MED01", "MED02"), codes);
+    }
+}
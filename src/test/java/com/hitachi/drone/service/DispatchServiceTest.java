@@ -0,0 +1,146 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.dto.DispatchResult;
+import com.hitachi.drone.dto.DroneAssignment;
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "drone.test.database=dispatch-test")
+@ActiveProfiles("test")
+class DispatchServiceTest {
+
+    @Autowired
+    private DispatchService dispatchService;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private FleetStateRegistry fleetStateRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void dispatch_shouldPackHeaviestOrdersIntoTightestDronesInOneCommit() {
+        long roomy = register("DISPATCH-A", 300);
+        long tight = register("DISPATCH-B", 250);
+        Long biogesic = catalogId("MED01");
+        Long alaxan = catalogId("MED02");
+
+        List<LoadItem> orders = List.of(
+                new LoadItem(biogesic, 1), new LoadItem(alaxan, 2), new LoadItem(biogesic, 5),
+                new LoadItem(alaxan, 1), new LoadItem(biogesic, 1));
+
+        DispatchResult result = dispatchService.dispatch(orders);
+
+        // 500 g fits nowhere, 300 g fills A, 150 g and 100 g fill B, the last 100 g is left over
+        assertEquals(2, result.getAssignments().size());
+        DroneAssignment first = result.getAssignments().get(0);
+        DroneAssignment second = result.getAssignments().get(1);
+        assertEquals(roomy, first.getDroneId());
+        assertEquals(List.of(new LoadItem(alaxan, 2)), first.getItems());
+        assertEquals(tight, second.getDroneId());
+        assertEquals(250, second.getPayloadWeight());
+        assertEquals(List.of(new LoadItem(biogesic, 5), new LoadItem(biogesic, 1)), result.getUnassigned());
+
+        Drone a = droneRepository.findById(roomy).orElseThrow();
+        Drone b = droneRepository.findById(tight).orElseThrow();
+        assertEquals(Drone.DroneState.LOADING, a.getState());
+        assertEquals(300, a.getPayloadWeight());
+        assertEquals(250, b.getPayloadWeight());
+        assertEquals(2, b.getPayloadItemCount());
+    }
+
+    @Test
+    void dispatch_shouldPlanAgainWithoutADroneThatChangedBehindTheRegistry() {
+        long fresh = register("DISPATCH-C", 300);
+        long stale = register("DISPATCH-D", 300);
+        jdbcTemplate.update("update drone set state = 'DELIVERING' where id = ?", stale);
+        Long alaxan = catalogId("MED02");
+
+        DispatchResult result = dispatchService.dispatch(List.of(new LoadItem(alaxan, 2), new LoadItem(alaxan, 2)));
+
+        // the first plan used both drones and was rolled back; the second one knows D is out delivering
+        assertEquals(1, result.getAssignments().size());
+        assertEquals(fresh, result.getAssignments().get(0).getDroneId());
+        assertEquals(List.of(new LoadItem(alaxan, 2)), result.getUnassigned());
+        assertEquals(Drone.DroneState.DELIVERING, fleetStateRegistry.getState(stale));
+
+        Drone skipped = droneRepository.findById(stale).orElseThrow();
+        assertEquals(Drone.DroneState.DELIVERING, skipped.getState());
+        assertEquals(0, skipped.getPayloadWeight());
+        assertEquals(300, droneRepository.findById(fresh).orElseThrow().getPayloadWeight());
+    }
+
+    @Test
+    void dispatch_shouldRejectUnknownMedication() {
+        assertThrows(IllegalArgumentException.class,
+                () -> dispatchService.dispatch(List.of(new LoadItem(Long.MAX_VALUE, 1))));
+    }
+
+    @Test
+    void pack_shouldPlaceEveryOrderExactlyOnceAcrossParallelShards() {
+        List<DispatchService.Bin> bins = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            bins.add(new DispatchService.Bin(i, 100 + i * 10, i % 3 * 20));
+        }
+        List<DispatchService.Order> orders = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            orders.add(new DispatchService.Order(i, new LoadItem((long) i, 1), 1 + i % 37));
+        }
+        orders.sort((x, y) -> Double.compare(y.weight(), x.weight()));
+
+        DispatchService.Packing packing = DispatchService.pack(orders, bins, 1, new ForkJoinPool(4));
+
+        Set<Integer> seen = new HashSet<>();
+        for (DispatchService.Bin bin : packing.bins()) {
+            assertTrue(bin.room() >= 0);
+            bin.items().forEach(item -> assertTrue(seen.add(item.getMedicationId().intValue())));
+        }
+        packing.unassigned().forEach(order -> assertTrue(seen.add(order.index())));
+        assertEquals(orders.size(), seen.size());
+        // what is left over is too heavy for any drone's remaining room
+        for (DispatchService.Order order : packing.unassigned()) {
+            assertTrue(packing.bins().stream().noneMatch(bin -> bin.fits(order.weight())));
+        }
+    }
+
+    private long register(String serialNumber, double weightLimit) {
+        Drone drone = new Drone();
+        drone.setSerialNumber(serialNumber);
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(weightLimit);
+        drone.setBatteryCapacity(90);
+        drone.setState(Drone.DroneState.IDLE);
+        return droneRepository.save(drone).getId();
+    }
+
+    private Long catalogId(String code) {
+        return medicationRepository.findAll().stream()
+                .filter(medication -> code.equals(medication.getCode()))
+                .map(Medication::getId)
+                .min(Long::compare)
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,77 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.dto.MedicationView;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "drone.test.database=bulk-load-test")
+@ActiveProfiles("test")
+class DroneServiceBulkLoadTest {
+
+    @Autowired
+    private DroneService droneService;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private PayloadItemRepository payloadItemRepository;
+
+    @Test
+    void bulkLoad_shouldKeepOneLinePerMedication() throws Exception {
+        Drone drone = new Drone();
+        drone.setSerialNumber("BULK-1");
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(1000);
+        drone.setBatteryCapacity(90);
+        drone.setState(Drone.DroneState.IDLE);
+        String droneId = String.valueOf(droneRepository.save(drone).getId());
+        Medication catalogEntry = catalogEntry("BULK_20G", 20);
+        long catalogSize = medicationRepository.count();
+        long linesBefore = payloadItemRepository.count();
+
+        List<LoadItem> items = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            items.add(new LoadItem(catalogEntry.getId(), 1));
+        }
+        double expectedWeight = 600;
+
+        long versionBefore = droneService.droneVersion(droneId).orElseThrow();
+        Drone loaded = droneService.loadDrone(droneId, items).orElseThrow();
+
+        assertEquals(expectedWeight, loaded.getPayloadWeight());
+        assertEquals(1, loaded.getPayloadItemCount());
+        assertEquals(catalogSize, medicationRepository.count());
+        assertEquals(linesBefore + 1, payloadItemRepository.count());
+        assertEquals(Drone.DroneState.LOADING, droneRepository.findById(Long.valueOf(droneId)).orElseThrow().getState());
+
+        List<MedicationView> lines = droneService.viewDroneLoadMedication(droneId);
+        assertEquals(1, lines.size());
+        assertEquals(catalogEntry.getId(), lines.get(0).getId());
+        assertEquals(catalogEntry.getCode(), lines.get(0).getCode());
+        assertEquals(30, lines.get(0).getQuantity());
+        assertEquals(expectedWeight, lines.get(0).getWeight());
+        assertTrue(droneService.droneVersion(droneId).orElseThrow() > versionBefore);
+    }
+
+    // a catalog entry of this test's own, so the assertions do not depend on the seeded catalog
+    private Medication catalogEntry(String code, double weight) {
+        return medicationRepository.save(new Medication(null, code, weight, 1, code, null));
+    }
+}
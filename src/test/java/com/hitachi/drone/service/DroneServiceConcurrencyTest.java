@@ -0,0 +1,140 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.dto.MedicationView;
+import com.hitachi.drone.exception.BatterLevelLowException;
+import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+* Hammers loadDrone from many threads against a real (in-memory) database and checks that
+* no drone ends up above its weight limit.*/
+@SpringBootTest(properties = "drone.test.database=concurrency-test")
+@ActiveProfiles("test")
+class DroneServiceConcurrencyTest {
+    private static final Logger logger = LoggerFactory.getLogger(DroneServiceConcurrencyTest.class);
+
+    private static final int DRONES = 8;
+    private static final int THREADS = 16;
+    private static final int LOADS_PER_THREAD = 40;
+
+    @Autowired
+    private DroneService droneService;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private PayloadItemRepository payloadItemRepository;
+
+    @Test
+    void concurrentLoads_shouldNeverOverloadADrone() throws Exception {
+        List<String> droneIds = new ArrayList<>();
+        for (int i = 0; i < DRONES; i++) {
+            Drone drone = new Drone();
+            drone.setSerialNumber("CONCURRENT-" + i);
+            drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+            drone.setWeightLimit(1000);
+            drone.setBatteryCapacity(100);
+            drone.setState(Drone.DroneState.IDLE);
+            droneIds.add(String.valueOf(droneRepository.save(drone).getId()));
+        }
+        String medicationId = String.valueOf(catalogEntry("CONCURRENT_100G", 100).getId());
+
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < LOADS_PER_THREAD; i++) {
+                    String droneId = droneIds.get((offset + i) % DRONES);
+                    try {
+                        droneService.loadDrone(droneId, medicationId);
+                        accepted.incrementAndGet();
+                    } catch (WeightLimitExceededException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+
+        int total = THREADS * LOADS_PER_THREAD;
+        logger.info("{} concurrent loads on {} drones with {} threads: {} accepted, {} rejected, {} loads/s",
+                total, DRONES, THREADS, accepted.get(), rejected.get(), String.format("%.0f", total / seconds));
+
+        int itemsOnDrones = 0;
+        for (String droneId : droneIds) {
+            Drone drone = droneRepository.findById(Long.valueOf(droneId)).orElseThrow();
+            assertTrue(drone.getPayloadWeight() <= drone.getWeightLimit(),
+                    "Drone " + droneId + " overloaded: " + drone.getPayloadWeight());
+            // the same medication every time: one line per loaded drone, its quantity counts the loads
+            List<MedicationView> lines = payloadItemRepository.findViewsByDroneId(drone.getId());
+            assertEquals(lines.size(), drone.getPayloadItemCount());
+            assertTrue(lines.size() <= 1);
+            itemsOnDrones += lines.stream().mapToInt(MedicationView::getQuantity).sum();
+        }
+        assertEquals(total, accepted.get() + rejected.get());
+        assertEquals(accepted.get(), itemsOnDrones);
+        assertTrue(rejected.get() > 0);
+    }
+
+    @Test
+    void loadDrone_shouldNotPersistAnythingWhenBatteryIsLow() {
+        Drone drone = new Drone();
+        drone.setSerialNumber("LOW-BATTERY");
+        drone.setModel(Drone.DroneModel.LIGHTWEIGHT);
+        drone.setWeightLimit(500);
+        drone.setBatteryCapacity(10);
+        drone.setState(Drone.DroneState.IDLE);
+        String droneId = String.valueOf(droneRepository.save(drone).getId());
+        Medication medication = catalogEntry("LOW_BATTERY_100G", 100);
+
+        assertThrows(BatterLevelLowException.class,
+                () -> droneService.loadDrone(droneId, String.valueOf(medication.getId())));
+
+        Drone reloaded = droneRepository.findById(Long.valueOf(droneId)).orElseThrow();
+        assertEquals(0, reloaded.getPayloadItemCount());
+        assertEquals(Drone.DroneState.IDLE, reloaded.getState());
+    }
+
+    // a catalog entry of this test's own, so the assertions do not depend on the seeded catalog
+    private Medication catalogEntry(String code, double weight) {
+        return medicationRepository.save(new Medication(null, code, weight, 1, code, null));
+    }
+}
@@ -0,0 +1,147 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.dto.DroneFilter;
+import com.hitachi.drone.dto.DronePage;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "drone.test.database=fleet-view-test")
+@ActiveProfiles("test")
+class DroneServiceFleetViewTest {
+
+    // the tests of this class share its database, so serial numbers are unique across them
+    private static final AtomicInteger serials = new AtomicInteger();
+
+    @Autowired
+    private DroneService droneService;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Test
+    void viewDrones_shouldWalkWholeFleetWithKeysetCursor() {
+        saveDrones(7);
+        long fleetSize = droneRepository.count();
+
+        Set<Long> seen = new HashSet<>();
+        Long cursor = null;
+        int pages = 0;
+        do {
+            DronePage page = droneService.viewDrones(cursor, 3);
+            assertTrue(page.getDrones().size() <= 3);
+            page.getDrones().forEach(drone -> assertTrue(seen.add(drone.getId()), "drone returned twice"));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(fleetSize, seen.size());
+        assertTrue(pages >= 3);
+    }
+
+    @Test
+    void streamDrones_shouldEmitEachDroneOnceWithItsMedications() {
+        Drone loaded = saveDrones(1).get(0);
+        Medication catalogEntry = catalogEntry("VIEW_50G", 50);
+        loaded.addItem(catalogEntry.getId(), catalogEntry.getWeight(), 2);
+        droneRepository.save(loaded);
+
+        List<Drone> streamed = new ArrayList<>();
+        droneService.streamDrones(streamed::add);
+
+        assertEquals(droneRepository.count(), streamed.size());
+        assertEquals(streamed.size(), streamed.stream().map(Drone::getId).distinct().count());
+        Drone streamedLoaded = streamed.stream().filter(d -> d.getId().equals(loaded.getId())).findFirst().orElseThrow();
+        assertEquals(1, streamedLoaded.getPayloadItems().size());
+        assertEquals(catalogEntry.getId(), streamedLoaded.getPayloadItems().get(0).getMedicationId());
+        assertEquals(2, streamedLoaded.getPayloadItems().get(0).getQuantity());
+    }
+
+    @Test
+    void viewDrones_shouldReturnOnlyDronesMatchingEveryFilter() {
+        Drone match = saveDrone(Drone.DroneModel.HEAVYWEIGHT, Drone.DroneState.IDLE, 30);
+        Drone charged = saveDrone(Drone.DroneModel.HEAVYWEIGHT, Drone.DroneState.IDLE, 95);
+        saveDrone(Drone.DroneModel.HEAVYWEIGHT, Drone.DroneState.IDLE, 29);
+        saveDrone(Drone.DroneModel.HEAVYWEIGHT, Drone.DroneState.LOADING, 90);
+        saveDrone(Drone.DroneModel.LIGHTWEIGHT, Drone.DroneState.IDLE, 90);
+
+        List<Drone> drones = droneService.viewDrones(
+                new DroneFilter(Drone.DroneState.IDLE, 30, Drone.DroneModel.HEAVYWEIGHT, null));
+
+        assertEquals(List.of(match.getId(), charged.getId()), drones.stream().map(Drone::getId).toList());
+        assertEquals(List.of(charged.getId()), droneService.viewDrones(
+                new DroneFilter(null, null, null, charged.getSerialNumber())).stream().map(Drone::getId).toList());
+    }
+
+    @Test
+    void viewDrones_shouldPageThroughFilteredDrones() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(saveDrone(Drone.DroneModel.CRUISERWEIGHT, Drone.DroneState.RETURNING, 50).getId());
+            saveDrone(Drone.DroneModel.CRUISERWEIGHT, Drone.DroneState.DELIVERED, 50);
+        }
+        DroneFilter filter = new DroneFilter(Drone.DroneState.RETURNING, null, Drone.DroneModel.CRUISERWEIGHT, null);
+
+        List<Long> seen = new ArrayList<>();
+        Long cursor = null;
+        do {
+            DronePage page = droneService.viewDrones(filter, cursor, 2);
+            page.getDrones().forEach(drone -> seen.add(drone.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void registerDrone_shouldRejectDuplicateSerialNumber() {
+        Drone first = saveDrone(Drone.DroneModel.LIGHTWEIGHT, Drone.DroneState.IDLE, 80);
+        Drone duplicate = new Drone();
+        duplicate.setSerialNumber(first.getSerialNumber());
+        duplicate.setModel(Drone.DroneModel.LIGHTWEIGHT);
+        duplicate.setWeightLimit(500);
+        duplicate.setBatteryCapacity(80);
+
+        assertThrows(IllegalArgumentException.class, () -> droneService.registerDrone(duplicate));
+        assertTrue(droneRepository.existsBySerialNumber(first.getSerialNumber()));
+    }
+
+    private List<Drone> saveDrones(int count) {
+        List<Drone> drones = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            drones.add(saveDrone(Drone.DroneModel.MIDDLEWEIGHT, Drone.DroneState.IDLE, 80));
+        }
+        return drones;
+    }
+
+    private Drone saveDrone(Drone.DroneModel model, Drone.DroneState state, int battery) {
+        Drone drone = new Drone();
+        drone.setSerialNumber("VIEW-" + serials.incrementAndGet());
+        drone.setModel(model);
+        drone.setWeightLimit(500);
+        drone.setBatteryCapacity(battery);
+        drone.setState(state);
+        return droneRepository.save(drone);
+    }
+
+    // a catalog entry of this test's own, so the assertions do not depend on the seeded catalog
+    private Medication catalogEntry(String code, double weight) {
+        return medicationRepository.save(new Medication(null, code, weight, 1, code, null));
+    }
+}
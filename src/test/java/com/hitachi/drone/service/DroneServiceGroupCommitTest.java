@@ -0,0 +1,144 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.dto.MedicationView;
+import com.hitachi.drone.exception.BatterLevelLowException;
+import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+* The concurrency test again with drone.concurrency.mode=GROUP_COMMIT: loads from many threads are
+* committed in shared transactions, and every caller still gets its own outcome.*/
+@SpringBootTest(properties = {
+        "drone.test.database=group-commit-test",
+        "drone.concurrency.mode=GROUP_COMMIT",
+        "drone.concurrency.group-commit.window=PT0.005S"
+})
+@ActiveProfiles("test")
+class DroneServiceGroupCommitTest {
+    private static final Logger logger = LoggerFactory.getLogger(DroneServiceGroupCommitTest.class);
+
+    private static final int DRONES = 8;
+    private static final int THREADS = 16;
+    private static final int LOADS_PER_THREAD = 40;
+
+    @Autowired
+    private DroneService droneService;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private PayloadItemRepository payloadItemRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void concurrentLoads_shouldBeBatchedWithoutOverloadingADrone() throws Exception {
+        List<String> droneIds = new ArrayList<>();
+        for (int i = 0; i < DRONES; i++) {
+            droneIds.add(String.valueOf(droneRepository.save(drone("GROUP-" + i, 1000, 100)).getId()));
+        }
+        String medicationId = String.valueOf(catalogEntry("GROUP_100G", 100).getId());
+
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < LOADS_PER_THREAD; i++) {
+                    String droneId = droneIds.get((offset + i) % DRONES);
+                    try {
+                        droneService.loadDrone(droneId, medicationId);
+                        accepted.incrementAndGet();
+                    } catch (WeightLimitExceededException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+
+        int total = THREADS * LOADS_PER_THREAD;
+        logger.info("{} grouped loads on {} drones with {} threads: {} accepted, {} rejected, {} loads/s",
+                total, DRONES, THREADS, accepted.get(), rejected.get(), String.format("%.0f", total / seconds));
+
+        int itemsOnDrones = 0;
+        for (String droneId : droneIds) {
+            Drone drone = droneRepository.findById(Long.valueOf(droneId)).orElseThrow();
+            assertTrue(drone.getPayloadWeight() <= drone.getWeightLimit(),
+                    "Drone " + droneId + " overloaded: " + drone.getPayloadWeight());
+            List<MedicationView> lines = payloadItemRepository.findViewsByDroneId(drone.getId());
+            assertEquals(lines.size(), drone.getPayloadItemCount());
+            itemsOnDrones += lines.stream().mapToInt(MedicationView::getQuantity).sum();
+        }
+        assertEquals(total, accepted.get() + rejected.get());
+        assertEquals(accepted.get(), itemsOnDrones);
+        assertTrue(rejected.get() > 0);
+        assertTrue(meterRegistry.get("drone.loads.batch.size").summary().max() > 1);
+    }
+
+    @Test
+    void loadDrone_shouldNotPersistAnythingWhenBatteryIsLow() {
+        String droneId = String.valueOf(droneRepository.save(drone("GROUP-LOW", 500, 10)).getId());
+        String medicationId = String.valueOf(catalogEntry("GROUP_LOW_100G", 100).getId());
+
+        assertThrows(BatterLevelLowException.class, () -> droneService.loadDrone(droneId, medicationId));
+
+        Drone reloaded = droneRepository.findById(Long.valueOf(droneId)).orElseThrow();
+        assertEquals(0, reloaded.getPayloadItemCount());
+        assertEquals(Drone.DroneState.IDLE, reloaded.getState());
+    }
+
+    private static Drone drone(String serialNumber, double weightLimit, int batteryCapacity) {
+        Drone drone = new Drone();
+        drone.setSerialNumber(serialNumber);
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(weightLimit);
+        drone.setBatteryCapacity(batteryCapacity);
+        drone.setState(Drone.DroneState.IDLE);
+        return drone;
+    }
+
+    // a catalog entry of this test's own, so the assertions do not depend on the seeded catalog
+    private Medication catalogEntry(String code, double weight) {
+        return medicationRepository.save(new Medication(null, code, weight, 1, code, null));
+    }
+}
@@ -1,20 +1,35 @@
 package com.hitachi.drone.service;
 
+import com.hitachi.drone.catalog.MedicationCatalogCache;
+import com.hitachi.drone.dto.DroneCandidate;
+import com.hitachi.drone.dto.DroneStatusView;
+import com.hitachi.drone.dto.LoadItem;
+import com.hitachi.drone.dto.MedicationView;
 import com.hitachi.drone.exception.BatterLevelLowException;
 import com.hitachi.drone.exception.WeightLimitExceededException;
+import com.hitachi.drone.metrics.DroneMetrics;
 import com.hitachi.drone.model.Drone;
 import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.model.PayloadItem;
+import com.hitachi.drone.registry.FleetStateRegistry;
 import com.hitachi.drone.repository.DroneRepository;
 import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+import com.hitachi.drone.writebehind.DroneWriteBehind;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,6 +45,27 @@ class DroneServiceImplTest {
     @Mock
     private MedicationRepository medicationRepository;
 
+    @Mock
+    private PayloadItemRepository payloadItemRepository;
+
+    @Spy
+    private MedicationCatalogCache medicationCatalogCache = new MedicationCatalogCache();
+
+    @Spy
+    private FleetStateRegistry fleetStateRegistry = new FleetStateRegistry();
+
+    @Spy
+    private DroneMutationLocks droneMutationLocks = new DroneMutationLocks(16);
+
+    @Mock
+    private DroneMetrics droneMetrics;
+
+    @Mock
+    private DroneWriteBehind droneWriteBehind;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private Drone drone;
     private Medication medication;
 
@@ -39,13 +75,15 @@ class DroneServiceImplTest {
 
         // Initialize test objects
         drone = new Drone();
+        drone.setId(1L);
         drone.setSerialNumber("DRONE001");
         drone.setWeightLimit(1000);
         drone.setBatteryCapacity(50);
         drone.setState(Drone.DroneState.IDLE); // Ensure the state is initialized
-        drone.setMedications(new ArrayList<>());
+        drone.setPayloadItems(new ArrayList<>());
 
         medication = new Medication();
+        medication.setId(1L);
         medication.setCode("MED001");
         medication.setName("Pain Reliever");
         medication.setWeight(200);
@@ -54,7 +92,7 @@ class DroneServiceImplTest {
 
     @Test
     void registerDrone_shouldRegisterNewDrone() {
-        when(droneRepository.existsById(drone.getSerialNumber())).thenReturn(false);
+        when(droneRepository.existsBySerialNumber(drone.getSerialNumber())).thenReturn(false);
         when(droneRepository.save(drone)).thenReturn(drone);
 
         Drone savedDrone = droneService.registerDrone(drone);
@@ -66,7 +104,7 @@ class DroneServiceImplTest {
 
     @Test
     void registerDrone_shouldThrowExceptionWhenDroneExists() {
-        when(droneRepository.existsById(drone.getSerialNumber())).thenReturn(true);
+        when(droneRepository.existsBySerialNumber(drone.getSerialNumber())).thenReturn(true);
 
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
             droneService.registerDrone(drone);
@@ -76,64 +114,249 @@ class DroneServiceImplTest {
         verify(droneRepository, never()).save(drone);
     }
 
+    @Test
+    void registerDrone_shouldPassOnFailedSave() {
+        when(droneRepository.existsBySerialNumber(drone.getSerialNumber())).thenReturn(false);
+        when(droneRepository.save(drone)).thenThrow(new QueryTimeoutException("timed out"));
+
+        assertThrows(QueryTimeoutException.class, () -> droneService.registerDrone(drone));
+    }
+
+    @Test
+    void commitLoads_shouldHandEveryCallerItsOwnSnapshot() throws Exception {
+        when(droneRepository.findAllById(List.of(1L))).thenReturn(List.of(drone));
+        LoadBatcher.PendingLoad first = new LoadBatcher.PendingLoad(1L, loadOf(100), new CompletableFuture<>());
+        LoadBatcher.PendingLoad second = new LoadBatcher.PendingLoad(1L, loadOf(150), new CompletableFuture<>());
+
+        droneService.commitLoads(List.of(first, second));
+
+        Drone forFirst = first.result().get().orElseThrow();
+        Drone forSecond = second.result().get().orElseThrow();
+        assertNotSame(drone, forFirst);
+        assertNotSame(forFirst, forSecond);
+        assertEquals(250, forFirst.getPayloadWeight());
+        assertEquals(1, forFirst.getPayloadItems().size());
+        // a caller changing its copy leaves the others alone
+        forFirst.getPayloadItems().clear();
+        assertEquals(1, forSecond.getPayloadItems().size());
+        verify(droneRepository).saveAll(any());
+    }
+
     @Test
     void loadDrone_shouldLoadMedication() throws WeightLimitExceededException, BatterLevelLowException {
-        when(droneRepository.findById(drone.getSerialNumber())).thenReturn(Optional.of(drone));
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
         when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
 
-        Drone updatedDrone = droneService.loadDrone(drone.getSerialNumber(), "1").orElse(null);
+        Drone updatedDrone = droneService.loadDrone("1", "1").orElse(null);
 
         assertNotNull(updatedDrone);
-        assertEquals(1, updatedDrone.getMedications().size());
-        assertEquals(medication.getName(), updatedDrone.getMedications().get(0).getName());
+        assertEquals(1, updatedDrone.getPayloadItems().size());
+        PayloadItem line = updatedDrone.getPayloadItems().get(0);
+        assertEquals(1L, line.getMedicationId());
+        assertEquals(1, line.getQuantity());
+        assertEquals(200, line.getWeight());
         verify(droneRepository).save(updatedDrone);
     }
 
+    @Test
+    void loadDrone_shouldLockTheSameStripeForEverySpellingOfAnId() throws WeightLimitExceededException, BatterLevelLowException {
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
+
+        droneService.loadDrone("1", "1");
+        droneService.loadDrone("01", "1");
+        droneService.loadDrone("+1", "1");
+
+        verify(droneMutationLocks, times(3)).lockFor(1L);
+    }
+
     @Test
     void loadDrone_shouldThrowExceptionWhenWeightLimitExceeded() {
         medication.setWeight(900); // Setting weight to exceed the limit
-        drone.getMedications().add(medication); // Load existing medication
-        when(droneRepository.findById(drone.getSerialNumber())).thenReturn(Optional.of(drone));
+        drone.addItem(1L, 900, 1); // Load existing medication
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
         when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
 
         Exception exception = assertThrows(WeightLimitExceededException.class, () -> {
-            droneService.loadDrone(drone.getSerialNumber(), "1");
+            droneService.loadDrone("1", "1");
         });
 
         assertEquals("Total weight exceeds the drone's weight limit.", exception.getMessage());
+        verify(droneMetrics).weightLimitExceeded();
+        verify(droneMetrics, never()).loadSucceeded();
     }
 
     @Test
     void loadDrone_shouldThrowExceptionWhenBatteryLow() {
         drone.setBatteryCapacity(20); // Set battery capacity low
-        when(droneRepository.findById(drone.getSerialNumber())).thenReturn(Optional.of(drone));
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
         when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
 
         Exception exception = assertThrows(BatterLevelLowException.class, () -> {
-            droneService.loadDrone(drone.getSerialNumber(), "1");
+            droneService.loadDrone("1", "1");
         });
 
         assertEquals("Battery is below 25% cannot enter LOADING State. ", exception.getMessage());
+        assertTrue(drone.getPayloadItems().isEmpty());
+        assertEquals(0, drone.getTotalMedicationWeight());
+        verify(droneMetrics).batteryLow();
     }
 
     @Test
-    void viewDroneLoadMedication_shouldReturnMedications() {
-        drone.getMedications().add(medication);
-        when(droneRepository.findById(drone.getSerialNumber())).thenReturn(Optional.of(drone));
+    void loadDrone_shouldGrowTheLineOfAMedicationLoadedAgain() throws WeightLimitExceededException, BatterLevelLowException {
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
 
-        List<Medication> medications = droneService.viewDroneLoadMedication(drone.getSerialNumber());
+        droneService.loadDrone("1", "1");
+        droneService.loadDrone("1", "1");
 
-        assertEquals(1, medications.size());
-        assertEquals(medication.getName(), medications.get(0).getName());
+        assertEquals(400, drone.getPayloadWeight());
+        assertEquals(1, drone.getPayloadItemCount());
+        assertEquals(1, drone.getPayloadItems().size());
+        assertEquals(2, drone.getPayloadItems().get(0).getQuantity());
+        assertEquals(400, drone.getPayloadItems().get(0).getWeight());
+        assertEquals(Drone.DroneState.LOADING, drone.getState());
     }
 
     @Test
-    void viewDroneStatus_shouldReturnTrueIfUnderWeightLimit() {
-        when(droneRepository.findById(drone.getSerialNumber())).thenReturn(Optional.of(drone));
+    void loadDrone_shouldRollBackWhenRejected() {
+        drone.setBatteryCapacity(20);
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
+
+        assertThrows(BatterLevelLowException.class, () -> droneService.loadDrone("1", "1"));
 
-        boolean status = droneService.viewDroneStatus(drone.getSerialNumber());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
 
-        assertTrue(status);
+    @Test
+    void loadDrone_shouldRetryOnConcurrentUpdate() throws WeightLimitExceededException, BatterLevelLowException {
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
+        doThrow(new OptimisticLockingFailureException("stale drone"))
+                .doNothing()
+                .when(transactionManager).commit(any());
+
+        Drone updatedDrone = droneService.loadDrone("1", "1").orElse(null);
+
+        assertNotNull(updatedDrone);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void loadDrone_shouldReadCatalogThroughCache() throws WeightLimitExceededException, BatterLevelLowException {
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
+
+        droneService.loadDrone("1", "1");
+        droneService.loadDrone("1", "1");
+
+        verify(medicationRepository, times(1)).findById(1L);
+        assertEquals(1, medicationCatalogCache.hitCount());
+        assertEquals(1L, drone.getPayloadItems().get(0).getMedicationId());
+    }
+
+    @Test
+    void loadDroneBulk_shouldValidateOnceAndSaveAllLines() throws WeightLimitExceededException, BatterLevelLowException {
+        medication.setId(1L);
+        Medication other = new Medication(2L, "Antibiotic", 50, 1, "MED002", null);
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(medication, other));
+
+        Drone updatedDrone = droneService.loadDrone("1",
+                List.of(new LoadItem(1L, 3), new LoadItem(2L, 2))).orElse(null);
+
+        assertNotNull(updatedDrone);
+        assertEquals(700, updatedDrone.getPayloadWeight());
+        assertEquals(2, updatedDrone.getPayloadItems().size());
+        assertEquals(3, updatedDrone.getPayloadItems().get(0).getQuantity());
+        assertEquals(Drone.DroneState.LOADING, updatedDrone.getState());
+        verify(payloadItemRepository).saveAll(anyList());
+        verify(droneRepository).save(drone);
+    }
+
+    @Test
+    void loadDroneBulk_shouldFoldRepeatedMedicationIntoOneLine() throws WeightLimitExceededException, BatterLevelLowException {
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findAllById(anyList())).thenReturn(List.of(medication));
+
+        droneService.loadDrone("1", List.of(new LoadItem(1L, 1), new LoadItem(1L, 2)));
+
+        assertEquals(1, drone.getPayloadItems().size());
+        assertEquals(3, drone.getPayloadItems().get(0).getQuantity());
+        assertEquals(600, drone.getPayloadWeight());
+        assertEquals(1, drone.getPayloadItemCount());
+        verify(payloadItemRepository).saveAll(List.of(drone.getPayloadItems().get(0)));
+    }
+
+    @Test
+    void loadDroneBulk_shouldRejectWholePayloadWhenOverWeightLimit() {
+        medication.setId(1L);
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findAllById(List.of(1L))).thenReturn(List.of(medication));
+
+        assertThrows(WeightLimitExceededException.class, () ->
+                droneService.loadDrone("1", List.of(new LoadItem(1L, 6))));
+
+        assertTrue(drone.getPayloadItems().isEmpty());
+        verify(payloadItemRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void loadDroneBulk_shouldRejectUnknownMedication() {
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone));
+        when(medicationRepository.findAllById(List.of(42L))).thenReturn(List.of());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                droneService.loadDrone("1", List.of(new LoadItem(42L, 1))));
+        assertThrows(IllegalArgumentException.class, () ->
+                droneService.loadDrone("1", List.of(new LoadItem(1L, 0))));
+    }
+
+    @Test
+    void viewDroneLoadMedication_shouldReturnProjectedLines() {
+        List<MedicationView> lines = List.of(new MedicationView(1L, "Biogesic", 100, 1, "MED01", null));
+        when(payloadItemRepository.findViewsByDroneId(9L)).thenReturn(lines);
+
+        List<MedicationView> medications = droneService.viewDroneLoadMedication("9");
+
+        assertEquals(lines, medications);
+        verify(droneRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void droneVersion_shouldBeEmptyForUnknownOrMalformedIds() {
+        when(droneRepository.findVersionById(9L)).thenReturn(Optional.of(4L));
+
+        assertEquals(Optional.of(4L), droneService.droneVersion("9"));
+        assertEquals(Optional.empty(), droneService.droneVersion("10"));
+        assertEquals(Optional.empty(), droneService.droneVersion("DRONE001"));
+    }
+
+    @Test
+    void viewDroneStatus_shouldBeServedFromRegistryWithoutDatabase() {
+        fleetStateRegistry.put(7L, Drone.DroneState.LOADING, 80, 500, 650);
+
+        boolean status = droneService.viewDroneStatus("7");
+
+        assertFalse(status);
+        verify(droneRepository, never()).findStatusById(anyLong());
+    }
+
+    @Test
+    void viewDroneStatus_shouldFallBackToProjectionAndRegisterDrone() {
+        when(droneRepository.findStatusById(9L)).thenReturn(
+                Optional.of(new DroneStatusView(9L, Drone.DroneState.IDLE, 50, 1000, 100)));
+
+        assertTrue(droneService.viewDroneStatus("9"));
+        assertTrue(fleetStateRegistry.contains(9L));
+        verify(droneRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void viewDroneStatus_shouldBeFalseForUnknownDrone() {
+        assertFalse(droneService.viewDroneStatus("11"));
     }
 
     @Test
@@ -147,4 +370,29 @@ class DroneServiceImplTest {
         assertEquals(1, result.size());
         assertEquals(drone.getSerialNumber(), result.get(0).getSerialNumber());
     }
+
+    @Test
+    void findCandidates_shouldComeFromRegistryAndRejectBadWeights() {
+        fleetStateRegistry.put(3L, Drone.DroneState.IDLE, 80, 500, 100);
+        fleetStateRegistry.put(4L, Drone.DroneState.LOADING, 80, 500, 450);
+
+        List<DroneCandidate> candidates = droneService.findCandidates(200, 10, FleetStateRegistry.Fit.BEST);
+
+        assertEquals(1, candidates.size());
+        assertEquals(3L, candidates.get(0).getDroneId());
+        assertEquals(400, candidates.get(0).getRemainingCapacity());
+        assertEquals(1, droneService.findCandidates(0, 0, FleetStateRegistry.Fit.FIRST).size());
+        assertThrows(IllegalArgumentException.class,
+                () -> droneService.findCandidates(-1, 10, FleetStateRegistry.Fit.BEST));
+        assertThrows(IllegalArgumentException.class,
+                () -> droneService.findCandidates(Double.NaN, 10, FleetStateRegistry.Fit.BEST));
+        verifyNoInteractions(droneRepository);
+    }
+
+    private static LoadBatcher.BatchedLoad loadOf(double weight) {
+        return target -> {
+            target.addItem(1L, weight, 1);
+            return Optional.of(target);
+        };
+    }
 }
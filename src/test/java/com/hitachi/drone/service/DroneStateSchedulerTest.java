@@ -1,20 +1,34 @@
 package com.hitachi.drone.service;
 
+import com.hitachi.drone.lease.ShardLeases;
+import com.hitachi.drone.metrics.DroneMetrics;
 import com.hitachi.drone.model.Drone;
 import com.hitachi.drone.model.Drone.DroneState;
+import com.hitachi.drone.registry.FleetStateRegistry;
 import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.PayloadItemRepository;
+import com.hitachi.drone.writebehind.DroneWriteBehind;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
 
 class DroneStateSchedulerTest {
 
@@ -24,6 +38,24 @@ class DroneStateSchedulerTest {
     @Mock
     private DroneRepository droneRepository;
 
+    @Mock
+    private PayloadItemRepository payloadItemRepository;
+
+    @Mock
+    private FleetStateRegistry fleetStateRegistry;
+
+    @Mock
+    private DroneMetrics droneMetrics;
+
+    @Mock
+    private DroneWriteBehind droneWriteBehind;
+
+    @Mock
+    private ShardLeases shardLeases;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private Drone drone1;
     private Drone drone2;
 
@@ -86,6 +118,20 @@ class DroneStateSchedulerTest {
         assertEquals(0, drone2.getBatteryCapacity()); // Check battery doesn't go below zero
     }
 
+    @Test
+    void updateDroneStates_shouldClearPayloadWhenDelivered() {
+        drone2.setId(2L);
+        drone2.addItem(1L, 300, 1);
+        when(droneRepository.findAll()).thenReturn(List.of(drone2));
+
+        droneStateScheduler.updateDroneStates();
+
+        assertEquals(0, drone2.getPayloadWeight());
+        assertEquals(0, drone2.getPayloadItemCount());
+        verify(payloadItemRepository).deleteByDroneId(2L);
+        verify(transactionManager).commit(any());
+    }
+
     @Test
     void updateDroneStates_shouldHandleDeliveredToReturning() {
         drone1.setState(DroneState.DELIVERED);
@@ -108,4 +154,170 @@ class DroneStateSchedulerTest {
         assertEquals(DroneState.IDLE, drone1.getState());
     }
 
+    @Test
+    void updateDroneStates_bulkMode_shouldAdvanceEachStateGroupOncePerChunk() {
+        ReflectionTestUtils.setField(droneStateScheduler, "mode", DroneStateScheduler.Mode.BULK);
+        ReflectionTestUtils.setField(droneStateScheduler, "chunkSize", 10);
+        when(droneRepository.findMinId()).thenReturn(1L);
+        when(droneRepository.findMaxId()).thenReturn(25L);
+        when(droneRepository.transitionState(any(), any(), anyLong(), anyLong())).thenReturn(1);
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(droneRepository).transitionState(DroneState.LOADING, DroneState.LOADED, 1L, 10L);
+        verify(droneRepository).transitionState(DroneState.LOADING, DroneState.LOADED, 11L, 20L);
+        verify(droneRepository).transitionState(DroneState.LOADING, DroneState.LOADED, 21L, 25L);
+        verify(droneRepository, times(3)).completeDeliveries(eq(DroneStateScheduler.DELIVERY_BATTERY_DRAIN),
+                anyLong(), anyLong());
+        verify(droneRepository, never()).findAll();
+        verify(droneRepository, never()).save(any());
+        verify(fleetStateRegistry).applyTransition(DroneState.DELIVERING, DroneState.DELIVERED,
+                DroneStateScheduler.DELIVERY_BATTERY_DRAIN, true, 21L, 25L);
+    }
+
+    @Test
+    void updateDroneStates_bulkMode_shouldDoNothingForEmptyFleet() {
+        ReflectionTestUtils.setField(droneStateScheduler, "mode", DroneStateScheduler.Mode.BULK);
+        when(droneRepository.findMinId()).thenReturn(null);
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(droneRepository, never()).transitionState(any(), any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void updateDroneStates_shouldRecordTickMetrics() {
+        drone1.setState(DroneState.LOADING);
+        when(droneRepository.findAll()).thenReturn(List.of(drone1, drone2));
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(droneMetrics).schedulerTick(anyLong(), eq(2), eq(0L));
+    }
+
+    @Test
+    void updateDroneStates_virtualThreads_shouldSaveEveryDroneAndCountChanges() {
+        ReflectionTestUtils.setField(droneStateScheduler, "virtualThreads", true);
+        drone1.setState(DroneState.LOADING);
+        when(droneRepository.findAll()).thenReturn(List.of(drone1, drone2));
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(droneRepository).save(drone1);
+        verify(droneRepository).save(drone2);
+        assertEquals(DroneState.LOADED, drone1.getState());
+        assertEquals(DroneState.DELIVERED, drone2.getState());
+        verify(droneMetrics).schedulerTick(anyLong(), eq(2), eq(0L));
+    }
+
+    @Test
+    void updateDroneStates_virtualThreads_shouldKeepAtMostMaxConcurrencyDronesInFlight() {
+        ReflectionTestUtils.setField(droneStateScheduler, "virtualThreads", true);
+        ReflectionTestUtils.setField(droneStateScheduler, "maxConcurrency", 2);
+        List<Drone> drones = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Drone drone = new Drone();
+            drone.setBatteryCapacity(80);
+            drone.setState(DroneState.LOADING);
+            drones.add(drone);
+        }
+        when(droneRepository.findAll()).thenReturn(drones);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(droneRepository.save(any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return invocation.getArgument(0);
+        });
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(droneRepository, times(20)).save(any());
+        assertTrue(maxInFlight.get() <= 2);
+        verify(droneMetrics).schedulerTick(anyLong(), eq(20), eq(0L));
+    }
+
+    @Test
+    void updateDroneStates_bulkModeWithVirtualThreads_shouldAdvanceEveryChunk() {
+        ReflectionTestUtils.setField(droneStateScheduler, "mode", DroneStateScheduler.Mode.BULK);
+        ReflectionTestUtils.setField(droneStateScheduler, "chunkSize", 10);
+        ReflectionTestUtils.setField(droneStateScheduler, "virtualThreads", true);
+        when(droneRepository.findMinId()).thenReturn(1L);
+        when(droneRepository.findMaxId()).thenReturn(25L);
+        when(droneRepository.transitionState(any(), any(), anyLong(), anyLong())).thenReturn(1);
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(droneRepository, times(3)).completeDeliveries(eq(DroneStateScheduler.DELIVERY_BATTERY_DRAIN),
+                anyLong(), anyLong());
+        verify(droneMetrics).schedulerTick(anyLong(), eq(12), eq(0L));
+    }
+
+    @Test
+    void updateDroneStates_writeBehindMode_shouldRecordRegistryTransitionsWithoutTouchingTheDatabase() {
+        ReflectionTestUtils.setField(droneStateScheduler, "mode", DroneStateScheduler.Mode.WRITE_BEHIND);
+        when(fleetStateRegistry.applyTransition(eq(DroneState.DELIVERING), eq(DroneState.DELIVERED),
+                eq(DroneStateScheduler.DELIVERY_BATTERY_DRAIN), eq(true), eq(0L), eq(Long.MAX_VALUE), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<FleetStateRegistry.TransitionSink>getArgument(6).changed(3L, 40);
+                    return 1;
+                });
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(droneWriteBehind).record(eq(3L), eq(DroneState.DELIVERING), eq(DroneState.DELIVERED), eq(40), eq(true),
+                anyLong());
+        verify(droneWriteBehind).sync();
+        verify(fleetStateRegistry, times(5)).applyTransition(any(), any(), anyInt(), anyBoolean(), eq(0L),
+                eq(Long.MAX_VALUE), any());
+        verifyNoInteractions(droneRepository);
+        verify(droneMetrics).schedulerTick(anyLong(), eq(1), eq(0L));
+    }
+
+    @Test
+    void validate_shouldRejectChunkSizeBelowOne() {
+        ReflectionTestUtils.setField(droneStateScheduler, "chunkSize", 0);
+
+        assertThrows(IllegalStateException.class, () -> droneStateScheduler.validate());
+    }
+
+    @Test
+    void updateDroneStates_bulkModeWithShardLeases_shouldOnlyAdvanceOwnedChunks() {
+        ReflectionTestUtils.setField(droneStateScheduler, "mode", DroneStateScheduler.Mode.BULK);
+        ReflectionTestUtils.setField(droneStateScheduler, "chunkSize", 10);
+        when(shardLeases.isEnabled()).thenReturn(true);
+        when(shardLeases.ownsChunk(0L)).thenReturn(false);
+        when(shardLeases.ownsChunk(1L)).thenReturn(true);
+        when(shardLeases.ownsChunk(2L)).thenReturn(true);
+        when(droneRepository.findMinId()).thenReturn(5L);
+        when(droneRepository.findMaxId()).thenReturn(25L);
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(shardLeases).renew();
+        verify(droneRepository).transitionState(DroneState.LOADING, DroneState.LOADED, 10L, 19L);
+        verify(droneRepository).transitionState(DroneState.LOADING, DroneState.LOADED, 20L, 25L);
+        verify(droneRepository, times(2)).completeDeliveries(eq(DroneStateScheduler.DELIVERY_BATTERY_DRAIN),
+                anyLong(), anyLong());
+    }
+
+    @Test
+    void updateDroneStates_entityModeWithShardLeases_shouldOnlyLoadOwnedChunks() {
+        ReflectionTestUtils.setField(droneStateScheduler, "chunkSize", 10);
+        drone1.setState(DroneState.LOADING);
+        when(shardLeases.isEnabled()).thenReturn(true);
+        when(shardLeases.ownsChunk(0L)).thenReturn(true);
+        when(droneRepository.findMinId()).thenReturn(1L);
+        when(droneRepository.findMaxId()).thenReturn(15L);
+        when(droneRepository.findByIdBetween(1L, 9L)).thenReturn(List.of(drone1));
+
+        droneStateScheduler.updateDroneStates();
+
+        verify(droneRepository, never()).findAll();
+        verify(droneRepository).findByIdBetween(1L, 9L);
+        verify(droneRepository, never()).findByIdBetween(10L, 15L);
+        assertEquals(DroneState.LOADED, drone1.getState());
+    }
+
 }
@@ -0,0 +1,61 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "drone.test.database=timers-flow-test",
+        "drone.scheduler.mode=TIMERS",
+        "drone.scheduler.dwell-ms=50"
+})
+@ActiveProfiles("test")
+class DroneTransitionTimersFlowTest {
+
+    @Autowired
+    private DroneService droneService;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Test
+    void loadedDrone_shouldRunThroughTheWholeCycleOnItsOwnTimers() throws Exception {
+        Drone drone = new Drone();
+        drone.setSerialNumber("TIMED-1");
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(1000);
+        drone.setBatteryCapacity(90);
+        drone.setState(Drone.DroneState.IDLE);
+        String droneId = String.valueOf(droneRepository.save(drone).getId());
+
+        droneService.loadDrone(droneId, String.valueOf(catalogEntry("TIMED_100G", 100).getId())).orElseThrow();
+
+        Drone cycled = null;
+        for (int i = 0; i < 100; i++) {
+            Thread.sleep(50);
+            cycled = droneRepository.findById(Long.valueOf(droneId)).orElseThrow();
+            if (cycled.getState() == Drone.DroneState.IDLE) {
+                break;
+            }
+        }
+        assertEquals(Drone.DroneState.IDLE, cycled.getState());
+        assertEquals(90 - DroneStateScheduler.DELIVERY_BATTERY_DRAIN, cycled.getBatteryCapacity());
+        assertEquals(0, cycled.getPayloadWeight());
+        assertNotNull(cycled.getStateChangedAt());
+    }
+
+    // a catalog entry of this test's own, so the assertions do not depend on the seeded catalog
+    private Medication catalogEntry(String code, double weight) {
+        return medicationRepository.save(new Medication(null, code, weight, 1, code, null));
+    }
+}
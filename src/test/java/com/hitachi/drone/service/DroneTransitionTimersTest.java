@@ -0,0 +1,104 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Drone.DroneState;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.repository.DroneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DroneTransitionTimersTest {
+
+    @InjectMocks
+    private DroneTransitionTimers timers;
+
+    @Mock
+    private DroneRepository droneRepository;
+
+    @Mock
+    private DroneStateScheduler droneStateScheduler;
+
+    @Mock
+    private FleetStateRegistry fleetStateRegistry;
+
+    private Drone drone;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        drone = new Drone();
+        drone.setId(7L);
+        drone.setSerialNumber("TIMED-7");
+        drone.setState(DroneState.LOADING);
+        when(droneRepository.findById(7L)).thenReturn(Optional.of(drone));
+    }
+
+    @Test
+    void fireDue_shouldOnlyAdvanceDronesThatAreDue() {
+        when(droneStateScheduler.advanceAndSave(drone)).thenReturn(1);
+        timers.schedule(7L, DroneState.LOADING, System.currentTimeMillis() - 1);
+        timers.schedule(8L, DroneState.LOADED, System.currentTimeMillis() + 60_000);
+
+        int fired = timers.fireDue();
+
+        assertEquals(1, fired);
+        verify(droneStateScheduler).advanceAndSave(drone);
+        verify(droneRepository, never()).findById(8L);
+        assertEquals(1, timers.pendingCount());
+    }
+
+    @Test
+    void stateChanged_shouldReplaceTheDronesTimer() {
+        timers.schedule(7L, DroneState.LOADING, System.currentTimeMillis() - 1);
+
+        timers.stateChanged(7L, DroneState.LOADING, DroneState.IDLE, 80);
+
+        assertEquals(0, timers.fireDue());
+        assertEquals(0, timers.pendingCount());
+        verify(droneStateScheduler, never()).advanceAndSave(any());
+    }
+
+    @Test
+    void fireDue_shouldSkipDroneThatAlreadyLeftTheState() {
+        drone.setState(DroneState.LOADED);
+        timers.schedule(7L, DroneState.LOADING, System.currentTimeMillis() - 1);
+
+        assertEquals(0, timers.fireDue());
+        verify(droneStateScheduler, never()).advanceAndSave(any());
+    }
+
+    @Test
+    void fireDue_shouldRetryWhenTheTransitionLost() {
+        when(droneStateScheduler.advanceAndSave(drone)).thenReturn(0);
+        timers.schedule(7L, DroneState.LOADING, System.currentTimeMillis() - 1);
+
+        assertEquals(0, timers.fireDue());
+        assertEquals(1, timers.pendingCount());
+    }
+
+    @Test
+    void rebuild_shouldArmTimersFromPersistedState() {
+        when(droneRepository.findStateTimestamps(any())).thenReturn(List.of(
+                new Object[]{7L, DroneState.LOADING, Instant.now().minusSeconds(3600)},
+                new Object[]{8L, DroneState.DELIVERING, null}));
+        when(droneStateScheduler.advanceAndSave(drone)).thenReturn(1);
+
+        timers.rebuild();
+
+        assertEquals(2, timers.pendingCount());
+        assertEquals(1, timers.fireDue());
+        verify(droneStateScheduler).advanceAndSave(drone);
+    }
+}
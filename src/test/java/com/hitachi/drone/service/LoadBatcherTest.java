@@ -0,0 +1,131 @@
+package com.hitachi.drone.service;
+
+import com.hitachi.drone.model.Drone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBatcherTest {
+
+    private final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+    private LoadBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    void submit_shouldCommitLoadsWithinTheWindowTogetherInArrivalOrder() throws Exception {
+        batcher = new LoadBatcher(64, Duration.ofMillis(200), this::completeAll);
+        batcher.start();
+
+        List<CompletableFuture<Optional<Drone>>> results = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            results.add(batcher.submit(id, Optional::of));
+        }
+        for (CompletableFuture<Optional<Drone>> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS).isPresent());
+        }
+
+        assertEquals(List.of(List.of(1L, 2L, 3L, 4L, 5L)), batches);
+    }
+
+    @Test
+    void submit_shouldCutBatchesAtMaxBatchSize() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        batcher = new LoadBatcher(3, Duration.ofSeconds(5), batch -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            completeAll(batch);
+        });
+        batcher.start();
+
+        List<CompletableFuture<Optional<Drone>>> results = new ArrayList<>();
+        for (long id = 1; id <= 6; id++) {
+            results.add(batcher.submit(id, Optional::of));
+        }
+        release.countDown();
+        for (CompletableFuture<Optional<Drone>> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of(List.of(1L, 2L, 3L), List.of(4L, 5L, 6L)), batches);
+    }
+
+    @Test
+    void submit_shouldFailTheBatchWhenTheCommitterThrows() {
+        batcher = new LoadBatcher(8, Duration.ofMillis(1), batch -> {
+            throw new IllegalStateException("boom");
+        });
+        batcher.start();
+
+        CompletableFuture<Optional<Drone>> result = batcher.submit(1, Optional::of);
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertEquals("boom", thrown.getCause().getMessage());
+    }
+
+    @Test
+    void stop_shouldFailLoadsNotYetCommitted() {
+        batcher = new LoadBatcher(8, Duration.ofMillis(1), this::completeAll);
+        batcher.stop();
+
+        CompletableFuture<Optional<Drone>> result = batcher.submit(1, Optional::of);
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+    }
+
+    @Test
+    void stop_shouldCompleteEveryLoadSubmittedWhileStopping() throws Exception {
+        // the window between a submit's check and its enqueue is narrow, so stop many batchers mid-submit
+        for (int round = 0; round < 200; round++) {
+            LoadBatcher stopping = new LoadBatcher(8, Duration.ofMillis(1), this::completeAll);
+            stopping.start();
+            List<CompletableFuture<Optional<Drone>>> results = new CopyOnWriteArrayList<>();
+            CountDownLatch submitting = new CountDownLatch(4);
+            List<Thread> submitters = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                submitters.add(Thread.ofPlatform().start(() -> {
+                    submitting.countDown();
+                    for (long id = 0; id < 500; id++) {
+                        results.add(stopping.submit(id, Optional::of));
+                    }
+                }));
+            }
+
+            submitting.await(5, TimeUnit.SECONDS);
+            stopping.stop();
+            for (Thread submitter : submitters) {
+                submitter.join(TimeUnit.SECONDS.toMillis(5));
+            }
+
+            // committed or failed, but never left waiting
+            for (CompletableFuture<Optional<Drone>> result : results) {
+                assertTrue(result.handle((loaded, failure) -> true).get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    private void completeAll(List<LoadBatcher.PendingLoad> batch) {
+        batches.add(batch.stream().map(LoadBatcher.PendingLoad::droneId).toList());
+        batch.forEach(pending -> pending.result().complete(Optional.of(new Drone())));
+    }
+}
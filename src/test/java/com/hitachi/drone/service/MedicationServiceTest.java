@@ -1,5 +1,6 @@
 package com.hitachi.drone.service;
 
+import com.hitachi.drone.catalog.MedicationCatalogCache;
 import com.hitachi.drone.model.Drone;
 import com.hitachi.drone.model.Medication;
 import com.hitachi.drone.repository.DroneRepository;
@@ -9,8 +10,13 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 class MedicationServiceTest {
@@ -24,6 +30,9 @@ class MedicationServiceTest {
     @Mock
     private DroneRepository droneRepository;
 
+    @Spy
+    private MedicationCatalogCache medicationCatalogCache = new MedicationCatalogCache();
+
     private Drone testDrone;
     private Medication medication1;
     private Medication medication2;
@@ -47,7 +56,6 @@ class MedicationServiceTest {
         medication1.setCode("MED01");
         medication1.setImage("images/pain_relief.png");
         medication1.setQuantity(1);
-        medication1.setDrone(testDrone);
 
         medication2 = new Medication();
         medication2.setId(2L);
@@ -56,7 +64,6 @@ class MedicationServiceTest {
         medication2.setCode("MED02");
         medication2.setImage("images/antibiotic.png");
         medication2.setQuantity(1);
-        medication2.setDrone(testDrone);
     }
 
     @Test
@@ -105,4 +112,38 @@ class MedicationServiceTest {
         assertEquals("MED02", medication2.getCode());
         assertEquals("images/antibiotic.png", medication2.getImage());
     }
+
+    @Test
+    void init_shouldWarmCatalogCacheWithSavedMedications() {
+        when(medicationRepository.save(medication1)).thenReturn(medication1);
+        when(medicationRepository.save(medication2)).thenReturn(medication2);
+
+        medicationService.init();
+
+        assertEquals(2, medicationCatalogCache.size());
+        assertEquals("Alaxan", medicationCatalogCache.get(2L, id -> Optional.empty()).get().name());
+        assertEquals(1, medicationCatalogCache.hitCount());
+    }
+
+    @Test
+    void init_shouldNotSeedTwice() {
+        when(droneRepository.existsBySerialNumber("001")).thenReturn(true);
+
+        medicationService.init();
+
+        verify(droneRepository, never()).save(any());
+        verify(medicationRepository, never()).save(any());
+    }
+
+    @Test
+    void init_shouldWarmCatalogCacheOnRestart() {
+        when(droneRepository.existsBySerialNumber("001")).thenReturn(true);
+        when(medicationRepository.findAll()).thenReturn(List.of(medication1, medication2));
+
+        medicationService.init();
+
+        assertEquals(2, medicationCatalogCache.size());
+        assertEquals("Biogesic", medicationCatalogCache.get(1L, id -> Optional.empty()).get().name());
+        assertEquals(1, medicationCatalogCache.hitCount());
+    }
 }
@@ -0,0 +1,134 @@
+package com.hitachi.drone.telemetry;
+
+import com.hitachi.drone.dto.BatteryReading;
+import com.hitachi.drone.dto.BatterySample;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class BatteryTelemetryTest {
+
+    private static final Instant BASE = Instant.parse("2025-10-18T10:00:00Z");
+
+    private final FleetStateRegistry registry = new FleetStateRegistry();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private BatteryTelemetry telemetry;
+
+    @BeforeEach
+    void setUp() {
+        registry.put(1L, Drone.DroneState.IDLE, 90, 500, 0);
+        registry.put(2L, Drone.DroneState.IDLE, 90, 500, 0);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<?> rows = invocation.getArgument(1);
+            return new int[rows.size()];
+        });
+        telemetry = new BatteryTelemetry(registry, jdbcTemplate);
+        ReflectionTestUtils.setField(telemetry, "bufferSize", 4);
+        ReflectionTestUtils.setField(telemetry, "applyMillis", Duration.ofHours(1).toMillis());
+        telemetry.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        telemetry.stop();
+    }
+
+    @Test
+    void apply_shouldWriteOnlyTheNewestLevelPerDrone() {
+        assertTrue(telemetry.accept(List.of(
+                new BatteryReading(1L, 80, BASE),
+                new BatteryReading(1L, 60, BASE.plusSeconds(2)),
+                new BatteryReading(1L, 70, BASE.plusSeconds(1)),
+                new BatteryReading(2L, 50, BASE))));
+
+        telemetry.apply();
+
+        assertEquals(60, registry.getBatteryCapacity(1L));
+        assertEquals(50, registry.getBatteryCapacity(2L));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertEquals(0, telemetry.queuedCount());
+    }
+
+    @Test
+    void apply_shouldIgnoreReadingsOlderThanTheAppliedLevel() {
+        telemetry.accept(List.of(new BatteryReading(1L, 60, BASE.plusSeconds(5))));
+        telemetry.apply();
+        telemetry.accept(List.of(new BatteryReading(1L, 95, BASE)));
+        telemetry.apply();
+
+        assertEquals(60, registry.getBatteryCapacity(1L));
+    }
+
+    @Test
+    void apply_shouldTakeAReadingFromTheFutureAsMeasuredOnArrival() {
+        Instant arrival = Instant.now();
+        telemetry.accept(List.of(new BatteryReading(1L, 60, arrival.plus(Duration.ofDays(1)))));
+        telemetry.apply();
+        telemetry.accept(List.of(new BatteryReading(1L, 55, Instant.now().plusSeconds(1))));
+        telemetry.apply();
+
+        // the day-ahead stamp did not keep the later report out
+        assertEquals(55, registry.getBatteryCapacity(1L));
+        assertFalse(telemetry.history(1L).get(0).getFrom().isAfter(Instant.now()));
+    }
+
+    @Test
+    void accept_shouldTurnBatchesAwayWholeWhenBufferIsFull() {
+        assertTrue(telemetry.accept(List.of(new BatteryReading(1L, 80, BASE), new BatteryReading(1L, 79, BASE),
+                new BatteryReading(1L, 78, BASE))));
+
+        assertFalse(telemetry.accept(List.of(new BatteryReading(2L, 80, BASE), new BatteryReading(2L, 79, BASE))));
+        assertEquals(3, telemetry.queuedCount());
+
+        telemetry.apply();
+        assertTrue(telemetry.accept(List.of(new BatteryReading(2L, 80, BASE), new BatteryReading(2L, 79, BASE))));
+    }
+
+    @Test
+    void accept_shouldRejectInvalidReadings() {
+        assertThrows(IllegalArgumentException.class, () -> telemetry.accept(List.of(new BatteryReading(null, 50, BASE))));
+        assertThrows(IllegalArgumentException.class, () -> telemetry.accept(List.of(new BatteryReading(1L, 101, BASE))));
+        assertEquals(0, telemetry.queuedCount());
+    }
+
+    @Test
+    void apply_shouldDropReadingsOfUnknownDrones() {
+        telemetry.accept(List.of(new BatteryReading(99L, 40, BASE)));
+
+        assertEquals(0, telemetry.apply());
+        assertTrue(telemetry.history(99L).isEmpty());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void history_shouldKeepMinMaxAndAveragePerBucket() {
+        telemetry.accept(List.of(new BatteryReading(1L, 80, BASE), new BatteryReading(1L, 70, BASE.plusSeconds(30)),
+                new BatteryReading(1L, 60, BASE.plusSeconds(70))));
+        telemetry.apply();
+        telemetry.accept(List.of(new BatteryReading(1L, 75, BASE.plusSeconds(59))));
+        telemetry.apply();
+
+        List<BatterySample> history = telemetry.history(1L);
+
+        assertEquals(2, history.size());
+        assertEquals(new BatterySample(BASE, 70, 80, 75, 3), history.get(0));
+        assertEquals(new BatterySample(BASE.plusSeconds(60), 60, 60, 60, 1), history.get(1));
+    }
+}
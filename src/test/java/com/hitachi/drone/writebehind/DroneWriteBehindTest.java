@@ -0,0 +1,254 @@
+package com.hitachi.drone.writebehind;
+
+import com.hitachi.drone.dto.DroneTransition;
+import com.hitachi.drone.journal.TransitionJournal;
+import com.hitachi.drone.model.Drone;
+import com.hitachi.drone.model.Medication;
+import com.hitachi.drone.registry.FleetStateRegistry;
+import com.hitachi.drone.repository.DroneRepository;
+import com.hitachi.drone.repository.MedicationRepository;
+import com.hitachi.drone.service.DroneService;
+import com.hitachi.drone.service.DroneStateScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "drone.test.database=write-behind-test",
+        "drone.scheduler.mode=WRITE_BEHIND",
+        "drone.scheduler.period-ms=3600000",
+        "drone.write-behind.flush-ms=3600000",
+        "drone.write-behind.log-dir=" + DroneWriteBehindTest.LOG_DIR
+})
+@ActiveProfiles("test")
+class DroneWriteBehindTest {
+
+    static final String LOG_DIR = "target/write-behind-test-wal";
+
+    @Autowired
+    private DroneStateScheduler droneStateScheduler;
+
+    @Autowired
+    private DroneWriteBehind droneWriteBehind;
+
+    @Autowired
+    private DroneService droneService;
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private FleetStateRegistry fleetStateRegistry;
+
+    @Autowired
+    private TransitionJournal transitionJournal;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long medicationId;
+
+    @BeforeEach
+    void setUp() {
+        medicationId = catalogEntry("WB_100G", 100).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        droneWriteBehind.flush();
+    }
+
+    @Test
+    void tick_shouldChangeRegistryAtOnceAndDatabaseOnFlush() throws IOException {
+        Drone drone = saveDrone("WB-1", Drone.DroneState.DELIVERING);
+
+        droneStateScheduler.updateDroneStates();
+
+        assertEquals(Drone.DroneState.DELIVERED, fleetStateRegistry.getState(drone.getId()));
+        assertEquals(Drone.DroneState.DELIVERING, droneRepository.findById(drone.getId()).orElseThrow().getState());
+        assertFalse(TransitionLog.segments(Path.of(LOG_DIR)).isEmpty());
+
+        droneStateScheduler.updateDroneStates();
+        // other tests in this context leave drones of their own in the cycle
+        assertTrue(droneWriteBehind.flush() >= 1);
+
+        Drone flushed = droneRepository.findById(drone.getId()).orElseThrow();
+        assertEquals(Drone.DroneState.RETURNING, flushed.getState());
+        assertEquals(90 - 10, flushed.getBatteryCapacity());
+        assertEquals(0, flushed.getPayloadWeight());
+        assertEquals(0, flushed.getPayloadItemCount());
+        assertEquals(0, payloadLines(drone.getId()));
+        assertNotNull(flushed.getStateChangedAt());
+        assertEquals(1, TransitionLog.segments(Path.of(LOG_DIR)).size());
+    }
+
+    @Test
+    void flush_shouldDropTransitionOfRowChangedElsewhere() {
+        Drone drone = saveDrone("WB-2", Drone.DroneState.RETURNING);
+
+        droneStateScheduler.updateDroneStates();
+        jdbcTemplate.update("update drone set state = 'LOADING' where id = ?", drone.getId());
+
+        // other tests in this context leave drones of their own in the cycle, so only this drone is checked
+        droneWriteBehind.flush();
+        assertEquals(Drone.DroneState.LOADING, droneRepository.findById(drone.getId()).orElseThrow().getState());
+        assertEquals(Drone.DroneState.LOADING, fleetStateRegistry.getState(drone.getId()));
+    }
+
+    @Test
+    void flush_shouldNotJournalTheRowItFallsBackTo() {
+        Drone drone = saveDrone("WB-8", Drone.DroneState.RETURNING);
+
+        droneStateScheduler.updateDroneStates();
+        jdbcTemplate.update("update drone set state = 'LOADING' where id = ?", drone.getId());
+        droneWriteBehind.flush();
+
+        // the tick is the only transition; the registry going back to the row's LOADING is not one
+        List<DroneTransition> history = transitionJournal.history(drone.getId(), null, null, 10);
+        assertEquals(1, history.size());
+        assertEquals(Drone.DroneState.RETURNING, history.get(0).getFrom());
+        assertEquals(Drone.DroneState.IDLE, history.get(0).getTo());
+        assertEquals(Drone.DroneState.LOADING, fleetStateRegistry.getState(drone.getId()));
+    }
+
+    @Test
+    void load_shouldSeeTheTransitionTickedBeforeTheFlush() throws Exception {
+        Drone drone = saveDrone("WB-5", Drone.DroneState.LOADING);
+
+        droneStateScheduler.updateDroneStates();
+        assertEquals(Drone.DroneState.LOADED, fleetStateRegistry.getState(drone.getId()));
+        assertEquals(Drone.DroneState.LOADING, droneRepository.findById(drone.getId()).orElseThrow().getState());
+
+        // the drone has already left LOADING, so the load is turned away instead of committing on the old row
+        assertTrue(droneService.loadDrone(String.valueOf(drone.getId()), String.valueOf(medicationId)).isEmpty());
+
+        Drone reloaded = droneRepository.findById(drone.getId()).orElseThrow();
+        assertEquals(Drone.DroneState.LOADED, reloaded.getState());
+        assertEquals(1, reloaded.getPayloadItemCount());
+        assertEquals(1, payloadLines(drone.getId()));
+        assertEquals(Drone.DroneState.LOADED, fleetStateRegistry.getState(drone.getId()));
+    }
+
+    @Test
+    void flush_shouldPutTheWrittenStateBackIntoTheRegistry() {
+        Drone drone = saveDrone("WB-6", Drone.DroneState.LOADING);
+
+        droneStateScheduler.updateDroneStates();
+        // as a load committed on the row before the flush would
+        fleetStateRegistry.put(droneRepository.findById(drone.getId()).orElseThrow());
+
+        droneWriteBehind.flush();
+
+        assertEquals(Drone.DroneState.LOADED, droneRepository.findById(drone.getId()).orElseThrow().getState());
+        assertEquals(Drone.DroneState.LOADED, fleetStateRegistry.getState(drone.getId()));
+    }
+
+    @Test
+    void flush_shouldKeepTheDeliveryWhenItsPayloadCannotBeCleared() {
+        Drone drone = saveDrone("WB-7", Drone.DroneState.DELIVERING);
+
+        droneStateScheduler.updateDroneStates();
+        jdbcTemplate.execute("alter table payload_item rename to payload_item_away");
+        try {
+            assertThrows(DataAccessException.class, () -> droneWriteBehind.flush());
+        } finally {
+            jdbcTemplate.execute("alter table payload_item_away rename to payload_item");
+        }
+        // the state update went back with the failed delete, so the requeued write still finds its row
+        assertEquals(Drone.DroneState.DELIVERING, droneRepository.findById(drone.getId()).orElseThrow().getState());
+        assertEquals(1, payloadLines(drone.getId()));
+
+        droneWriteBehind.flush();
+        assertEquals(Drone.DroneState.DELIVERED, droneRepository.findById(drone.getId()).orElseThrow().getState());
+        assertEquals(0, payloadLines(drone.getId()));
+    }
+
+    @Test
+    void start_shouldReplayLoggedTransitionsAfterCrash() throws IOException {
+        Drone drone = saveDrone("WB-3", Drone.DroneState.LOADED);
+        Path crashed = Path.of("target/write-behind-test-crashed");
+        TransitionLog.delete(TransitionLog.segments(crashed));
+        try (TransitionLog log = TransitionLog.open(crashed, true)) {
+            log.append(drone.getId(), Drone.DroneState.DELIVERING, false, 90, 1000L);
+            log.append(drone.getId(), Drone.DroneState.DELIVERED, true, 80, 2000L);
+        }
+
+        DroneWriteBehind restarted = new DroneWriteBehind(jdbcTemplate, droneRepository, fleetStateRegistry, transactionManager);
+        ReflectionTestUtils.setField(restarted, "schedulerMode", "WRITE_BEHIND");
+        ReflectionTestUtils.setField(restarted, "logDir", crashed.toString());
+        restarted.start();
+        restarted.stop();
+
+        Drone replayed = droneRepository.findById(drone.getId()).orElseThrow();
+        assertEquals(Drone.DroneState.DELIVERED, replayed.getState());
+        assertEquals(80, replayed.getBatteryCapacity());
+        assertEquals(0, replayed.getPayloadWeight());
+        assertEquals(0, payloadLines(drone.getId()));
+        // replayed segments are deleted; the restarted log starts out empty
+        List<Long> left = new ArrayList<>();
+        TransitionLog.read(TransitionLog.segments(crashed), (droneId, state, clearPayload, battery, at) -> left.add(droneId));
+        assertTrue(left.isEmpty());
+    }
+
+    @Test
+    void start_shouldLeaveTheLogAloneOutsideWriteBehindMode() throws IOException {
+        Drone drone = saveDrone("WB-4", Drone.DroneState.LOADED);
+        Path foreign = Path.of("target/write-behind-test-foreign");
+        TransitionLog.delete(TransitionLog.segments(foreign));
+        try (TransitionLog log = TransitionLog.open(foreign, true)) {
+            log.append(drone.getId(), Drone.DroneState.DELIVERING, false, 90, 1000L);
+        }
+
+        DroneWriteBehind other = new DroneWriteBehind(jdbcTemplate, droneRepository, fleetStateRegistry, transactionManager);
+        ReflectionTestUtils.setField(other, "schedulerMode", "ENTITY");
+        ReflectionTestUtils.setField(other, "logDir", foreign.toString());
+        other.start();
+
+        assertEquals(Drone.DroneState.LOADED, droneRepository.findById(drone.getId()).orElseThrow().getState());
+        assertEquals(1, TransitionLog.segments(foreign).size());
+    }
+
+    private Drone saveDrone(String serialNumber, Drone.DroneState state) {
+        Drone drone = new Drone();
+        drone.setSerialNumber(serialNumber);
+        drone.setModel(Drone.DroneModel.HEAVYWEIGHT);
+        drone.setWeightLimit(1000);
+        drone.setBatteryCapacity(90);
+        drone.setState(state);
+        drone.addItem(medicationId, 100, 1);
+        Drone saved = droneRepository.save(drone);
+        assertEquals(1, payloadLines(saved.getId()));
+        return saved;
+    }
+
+    private int payloadLines(long droneId) {
+        Integer lines = jdbcTemplate.queryForObject("select count(*) from payload_item where drone_id = ?",
+                Integer.class, droneId);
+        return lines == null ? 0 : lines;
+    }
+
+    // a catalog entry of this test's own, so the assertions do not depend on the seeded catalog
+    private Medication catalogEntry(String code, double weight) {
+        return medicationRepository.save(new Medication(null, code, weight, 1, code, null));
+    }
+}
@@ -0,0 +1,70 @@
+package com.hitachi.drone.writebehind;
+
+import com.hitachi.drone.model.Drone.DroneState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransitionLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void read_shouldReturnRecordsInAppendOrderAcrossSegments() throws IOException {
+        try (TransitionLog log = TransitionLog.open(directory, false)) {
+            log.append(1L, DroneState.LOADED, false, 90, 1000L);
+            log.rotate();
+            log.append(2L, DroneState.DELIVERED, true, 80, 2000L);
+        }
+
+        List<Path> segments = TransitionLog.segments(directory);
+        List<String> records = read(segments);
+
+        assertEquals(2, segments.size());
+        assertEquals(List.of("1:LOADED:false:90:1000", "2:DELIVERED:true:80:2000"), records);
+    }
+
+    @Test
+    void open_shouldContinueAfterExistingSegments() throws IOException {
+        try (TransitionLog log = TransitionLog.open(directory, false)) {
+            log.append(1L, DroneState.LOADED, false, 90, 1000L);
+        }
+        try (TransitionLog log = TransitionLog.open(directory, false)) {
+            log.append(1L, DroneState.DELIVERING, false, 90, 2000L);
+        }
+
+        assertEquals(List.of("1:LOADED:false:90:1000", "1:DELIVERING:false:90:2000"),
+                read(TransitionLog.segments(directory)));
+    }
+
+    @Test
+    void read_shouldStopAtTornOrCorruptRecord() throws IOException {
+        try (TransitionLog log = TransitionLog.open(directory, true)) {
+            log.append(1L, DroneState.LOADED, false, 90, 1000L);
+            log.append(2L, DroneState.LOADED, false, 90, 1000L);
+        }
+        Path segment = TransitionLog.segments(directory).get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[TransitionLog.RECORD_SIZE + 3] ^= 1;
+        Files.write(segment, bytes);
+        Files.write(segment, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("1:LOADED:false:90:1000"), read(List.of(segment)));
+    }
+
+    private static List<String> read(List<Path> segments) throws IOException {
+        List<String> records = new ArrayList<>();
+        TransitionLog.read(segments, (droneId, state, clearPayload, batteryCapacity, changedAtMillis) ->
+                records.add(droneId + ":" + state + ":" + clearPayload + ":" + batteryCapacity + ":" + changedAtMillis));
+        return records;
+    }
+}